@@ -0,0 +1,41 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+/**
+ * The strategies to abbreviate commit ids.
+ * Refer to {@link GitCommitIdPluginGitSettingsExtension#getAbbreviationMode()}.
+ */
+public enum AbbreviationMode {
+    /**
+     * Probe the whole object database (including all packs and loose objects) to find
+     * an abbreviation that is unique, as the core does by default.
+     */
+    OBJECT_DATABASE,
+    /**
+     * Find an abbreviation that is unique by looking up the neighbours of the commit in the
+     * sorted tables of the pack indexes and the loose objects that share the first byte.
+     * Results are cached per commit id.
+     */
+    PACK_INDEX,
+    /**
+     * Simply cut the commit id to the configured length, without checking whether the
+     * abbreviation is unique.
+     */
+    UNCHECKED
+}
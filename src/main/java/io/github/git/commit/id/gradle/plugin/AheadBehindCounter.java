@@ -0,0 +1,169 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.BranchConfig;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Counts how many commits the current branch is ahead or behind its upstream.
+ *
+ * <p>Unlike the core this never contacts the remote: the upstream is whatever the local
+ * remote-tracking ref (e.g. {@code refs/remotes/origin/main}) currently points to.
+ * The walk between both commits is bounded: once more than {@code maxDepth} commits were
+ * counted on one side the count is reported as {@code maxDepth+} (e.g. {@code 1000+})
+ * instead of walking the whole history of a long-lived branch. If the repository has a
+ * {@link CommitGraph} the generation numbers are consulted first, a side that is more than
+ * {@code maxDepth} generations away is known to exceed the bound without any walk.
+ */
+final class AheadBehindCounter {
+    /**
+     * Reported (by the core as well) if the branch has no upstream.
+     */
+    static final String NO_REMOTE = "NO_REMOTE";
+
+    /**
+     * The outcome of the count.
+     */
+    static final class AheadBehind {
+        private final String ahead;
+        private final String behind;
+
+        private AheadBehind(@Nonnull String ahead, @Nonnull String behind) {
+            this.ahead = ahead;
+            this.behind = behind;
+        }
+
+        String getAhead() {
+            return ahead;
+        }
+
+        String getBehind() {
+            return behind;
+        }
+
+        @Override
+        public String toString() {
+            return "ahead " + ahead + ", behind " + behind;
+        }
+    }
+
+    private static final AheadBehind NO_UPSTREAM = new AheadBehind(NO_REMOTE, NO_REMOTE);
+
+    private AheadBehindCounter() {
+    }
+
+    /**
+     * Counts the commits between the checked out branch and its upstream.
+     *
+     * @param repository The repository
+     * @param maxDepth The maximum number of commits that are counted per side
+     * @return The count, {@link #NO_REMOTE} if the branch has no (fetched) upstream
+     * @throws IOException if the history could not be read
+     */
+    static AheadBehind of(@Nonnull Repository repository, int maxDepth) throws IOException {
+        // Only the two refs are looked up, not the whole ref database
+        String headTarget = RefLookup.symbolicTarget(repository, Constants.HEAD);
+        ObjectId local = headTarget == null ? null : RefLookup.resolve(repository, headTarget);
+        if (local == null) {
+            // Detached or unborn
+            return NO_UPSTREAM;
+        }
+        String branch = Repository.shortenRefName(headTarget);
+        String trackingBranch =
+            new BranchConfig(repository.getConfig(), branch).getTrackingBranch();
+        if (trackingBranch == null) {
+            return NO_UPSTREAM;
+        }
+        ObjectId upstream = RefLookup.resolve(repository, trackingBranch);
+        if (upstream == null) {
+            return NO_UPSTREAM;
+        }
+        return count(repository, local, upstream, maxDepth);
+    }
+
+    /**
+     * Counts the commits that are only reachable from {@code local} (ahead) and the commits
+     * that are only reachable from {@code upstream} (behind).
+     *
+     * @param repository The repository
+     * @param local The local commit
+     * @param upstream The upstream commit
+     * @param maxDepth The maximum number of commits that are counted per side
+     * @return The count
+     * @throws IOException if the history could not be read
+     */
+    static AheadBehind count(
+            @Nonnull Repository repository,
+            @Nonnull ObjectId local,
+            @Nonnull ObjectId upstream,
+            int maxDepth) throws IOException {
+        if (local.equals(upstream)) {
+            return new AheadBehind("0", "0");
+        }
+        int localGeneration;
+        int upstreamGeneration;
+        File objectsDirectory =
+            new File(GitStateFiles.commonDirOf(repository.getDirectory()), Constants.OBJECTS);
+        try (CommitGraph commitGraph = CommitGraph.open(objectsDirectory)) {
+            localGeneration = commitGraph.generationOf(local);
+            upstreamGeneration = commitGraph.generationOf(upstream);
+        }
+        boolean generationsKnown = localGeneration != CommitGraph.GENERATION_UNKNOWN
+            && upstreamGeneration != CommitGraph.GENERATION_UNKNOWN;
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            String ahead = generationsKnown && localGeneration - upstreamGeneration > maxDepth
+                ? exceeded(maxDepth) : countOnlyReachableFrom(walk, local, upstream, maxDepth);
+            String behind = generationsKnown && upstreamGeneration - localGeneration > maxDepth
+                ? exceeded(maxDepth) : countOnlyReachableFrom(walk, upstream, local, maxDepth);
+            return new AheadBehind(ahead, behind);
+        }
+    }
+
+    private static String countOnlyReachableFrom(
+            @Nonnull RevWalk walk,
+            @Nonnull ObjectId start,
+            @Nonnull ObjectId uninteresting,
+            int maxDepth) throws IOException {
+        walk.reset();
+        walk.markStart(walk.parseCommit(start));
+        walk.markUninteresting(walk.parseCommit(uninteresting));
+        int count = 0;
+        while (walk.next() != null) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Counting the commits was interrupted");
+            }
+            if (++count > maxDepth) {
+                return exceeded(maxDepth);
+            }
+        }
+        return String.valueOf(count);
+    }
+
+    private static String exceeded(int maxDepth) {
+        return maxDepth + "+";
+    }
+}
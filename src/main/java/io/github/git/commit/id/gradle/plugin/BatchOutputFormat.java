@@ -0,0 +1,48 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+/**
+ * The formats in which {@link GitCommitIdBatchGenerationTask} can write its results.
+ */
+public enum BatchOutputFormat {
+    /**
+     * One JSON object per commit and line (refer to <a href="https://jsonlines.org/">JSON Lines</a>).
+     */
+    JSONL("jsonl"),
+    /**
+     * Comma separated values with a header line
+     * (refer to <a href="https://www.rfc-editor.org/rfc/rfc4180">RFC 4180</a>).
+     */
+    CSV("csv");
+
+    private final String fileExtension;
+
+    BatchOutputFormat(String fileExtension) {
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * The usual file extension (without the dot) of files in this format.
+     *
+     * @return The file extension
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+}
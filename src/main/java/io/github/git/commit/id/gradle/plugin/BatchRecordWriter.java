@@ -0,0 +1,164 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Writes one record per line in a {@link BatchOutputFormat}.
+ * Every record is written as soon as it is available, nothing is buffered
+ * apart from the underlying {@link BufferedWriter}.
+ */
+final class BatchRecordWriter implements Closeable {
+    private final Writer writer;
+    private final BatchOutputFormat format;
+    private final List<String> columns;
+
+    private BatchRecordWriter(
+            @Nonnull Writer writer,
+            @Nonnull BatchOutputFormat format,
+            @Nonnull List<String> columns) {
+        this.writer = writer;
+        this.format = format;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates (or truncates) the given file and writes the header if the format has one.
+     *
+     * @param file The file to write to
+     * @param format The format of the file
+     * @param columns The keys of every record in the order they should be written
+     * @return The writer
+     * @throws IOException if the file could not be written
+     */
+    static BatchRecordWriter open(
+            @Nonnull File file,
+            @Nonnull BatchOutputFormat format,
+            @Nonnull List<String> columns) throws IOException {
+        Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+        BatchRecordWriter recordWriter = new BatchRecordWriter(
+            Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8), format, columns);
+        if (format == BatchOutputFormat.CSV) {
+            recordWriter.writeCsv(columns);
+        }
+        return recordWriter;
+    }
+
+    /**
+     * Writes a single record. Columns without a value are written as empty (CSV) or
+     * omitted (JSONL).
+     *
+     * @param record The values of the record by key
+     * @throws IOException if the record could not be written
+     */
+    void write(@Nonnull Map<String, String> record) throws IOException {
+        if (format == BatchOutputFormat.CSV) {
+            String[] values = new String[columns.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = record.getOrDefault(columns.get(i), "");
+            }
+            writeCsv(Arrays.asList(values));
+        } else {
+            writeJson(record);
+        }
+    }
+
+    private void writeCsv(@Nonnull List<String> values) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String value = values.get(i);
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private void writeJson(@Nonnull Map<String, String> record) throws IOException {
+        writer.write('{');
+        boolean first = true;
+        for (String column : columns) {
+            String value = record.get(column);
+            if (value == null) {
+                continue;
+            }
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writeJsonString(column);
+            writer.write(':');
+            writeJsonString(value);
+        }
+        writer.write("}\n");
+    }
+
+    private void writeJsonString(@Nonnull String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
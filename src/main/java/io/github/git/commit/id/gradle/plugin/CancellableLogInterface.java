@@ -0,0 +1,86 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.util.concurrent.CancellationException;
+import javax.annotation.Nonnull;
+import pl.project13.core.log.LogInterface;
+
+/**
+ * A {@link LogInterface} that doubles as cooperative cancellation point.
+ *
+ * <p>The core reports its progress through the {@link LogInterface} while it gathers the
+ * properties, regardless of whether the messages end up being printed. Once
+ * {@link #cancel()} was invoked (or the calling thread got interrupted) every further
+ * call throws a {@link CancellationException}, which aborts the collection at the next
+ * progress report.
+ */
+final class CancellableLogInterface implements LogInterface {
+    private final LogInterface delegate;
+    private volatile boolean cancelled;
+
+    CancellableLogInterface(@Nonnull LogInterface delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Request the cancellation of the collection that reports to this log.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the collection should stop.
+     */
+    void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The collection of the git properties was cancelled");
+        }
+    }
+
+    @Override
+    public void debug(String msg) {
+        checkCancelled();
+        delegate.debug(msg);
+    }
+
+    @Override
+    public void info(String msg) {
+        checkCancelled();
+        delegate.info(msg);
+    }
+
+    @Override
+    public void warn(String msg) {
+        checkCancelled();
+        delegate.warn(msg);
+    }
+
+    @Override
+    public void error(String msg) {
+        checkCancelled();
+        delegate.error(msg);
+    }
+
+    @Override
+    public void error(String msg, Throwable t) {
+        checkCancelled();
+        delegate.error(msg, t);
+    }
+}
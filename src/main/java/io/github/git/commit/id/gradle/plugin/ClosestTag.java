@@ -0,0 +1,188 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.errors.InvalidPatternException;
+import org.eclipse.jgit.fnmatch.FileNameMatcher;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * The tag that is closest to a commit, as chosen by {@code git describe}.
+ *
+ * <p>The first tagged commit in commit date order is not necessarily the closest one: after
+ * a merge a newer tag on a side branch can be much farther away than an older tag on the
+ * first-parent history. Like git (and the core's {@code DescribeCommand}) the history is
+ * therefore walked until up to {@link #MAX_CANDIDATES} tagged commits were found, and the
+ * candidate with the fewest commits that are not reachable from it wins. Ties go to the
+ * candidate that was found first. Commits that are reachable from a candidate can never be
+ * closer than that candidate, so they are not searched for further candidates.
+ */
+final class ClosestTag {
+    /**
+     * The maximum number of tagged commits that are compared (the default of
+     * {@code git describe --candidates}).
+     */
+    static final int MAX_CANDIDATES = 10;
+
+    private final RevCommit commit;
+    private final String tag;
+    private final int distance;
+
+    private ClosestTag(@Nonnull RevCommit commit, @Nonnull String tag, int distance) {
+        this.commit = commit;
+        this.tag = tag;
+        this.distance = distance;
+    }
+
+    /**
+     * Finds the tag that is closest to the given commit. The walk is reset afterwards.
+     *
+     * @param walk The walk that is used to traverse the history
+     * @param start The commit that should be described
+     * @param includeStart Whether a tag on the start commit itself qualifies
+     * @param tagIndex The tags of the repository
+     * @param match The glob pattern the name of a tag must match, or {@code null}
+     * @param includeLightweightTags Whether lightweight tags should be considered as well
+     * @return The closest tag or {@code null} if no qualifying tag is reachable
+     * @throws IOException If the history could not be read or the pattern is invalid
+     */
+    @Nullable
+    static ClosestTag find(
+            @Nonnull RevWalk walk,
+            @Nonnull RevCommit start,
+            boolean includeStart,
+            @Nonnull PeeledTagIndex tagIndex,
+            @Nullable String match,
+            boolean includeLightweightTags) throws IOException {
+        if (tagIndex.size() == 0) {
+            return null;
+        }
+        FileNameMatcher matcher = matcherOf(match);
+        List<RevCommit> candidates = new ArrayList<>();
+        List<String> tags = new ArrayList<>();
+        walk.reset();
+        walk.markStart(start);
+        for (RevCommit commit : walk) {
+            if (!includeStart && commit.equals(start)) {
+                continue;
+            }
+            String tag = findTag(commit, tagIndex, matcher, includeLightweightTags);
+            if (tag == null) {
+                continue;
+            }
+            if (commit.equals(start)) {
+                walk.reset();
+                return new ClosestTag(commit, tag, 0);
+            }
+            candidates.add(commit);
+            tags.add(tag);
+            if (candidates.size() == MAX_CANDIDATES) {
+                break;
+            }
+            walk.markUninteresting(commit);
+        }
+
+        ClosestTag closest = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            walk.reset();
+            walk.markStart(start);
+            walk.markUninteresting(candidates.get(i));
+            int distance = 0;
+            while (walk.next() != null) {
+                distance++;
+                if (closest != null && distance >= closest.distance) {
+                    break;
+                }
+            }
+            if (closest == null || distance < closest.distance) {
+                closest = new ClosestTag(candidates.get(i), tags.get(i), distance);
+            }
+        }
+        walk.reset();
+        return closest;
+    }
+
+    /**
+     * The tagged commit.
+     *
+     * @return The tagged commit
+     */
+    RevCommit getCommit() {
+        return commit;
+    }
+
+    /**
+     * The name of the tag.
+     *
+     * @return The name of the tag
+     */
+    String getTag() {
+        return tag;
+    }
+
+    /**
+     * The number of commits that are reachable from the described commit but not from the
+     * tagged commit.
+     *
+     * @return The number of commits between the tag and the described commit
+     */
+    int getDistance() {
+        return distance;
+    }
+
+    @Nullable
+    private static String findTag(
+            @Nonnull RevCommit commit,
+            @Nonnull PeeledTagIndex tagIndex,
+            @Nullable FileNameMatcher matcher,
+            boolean includeLightweightTags) {
+        for (String tag : tagIndex.tagsPointingAt(commit)) {
+            if (!includeLightweightTags && !tagIndex.isAnnotated(tag)) {
+                continue;
+            }
+            if (matcher != null) {
+                matcher.reset();
+                matcher.append(tag);
+                if (!matcher.isMatch()) {
+                    continue;
+                }
+            }
+            return tag;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static FileNameMatcher matcherOf(@Nullable String pattern) throws IOException {
+        if (pattern == null || pattern.isEmpty() || "*".equals(pattern)) {
+            return null;
+        }
+        try {
+            return new FileNameMatcher(pattern, null);
+        } catch (InvalidPatternException e) {
+            throw new IOException("Invalid describe match pattern: " + pattern, e);
+        }
+    }
+}
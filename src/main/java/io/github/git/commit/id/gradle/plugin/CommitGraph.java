@@ -0,0 +1,243 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+
+/**
+ * Reads the generation numbers (topological levels) from the commit-graph of a repository,
+ * as written by {@code git commit-graph write} or {@code git gc}.
+ *
+ * <p>The generation of a commit is one more than the highest generation of its parents,
+ * so a commit that is {@code n} generations above another commit is at least {@code n}
+ * commits away from it. JGit uses the commit-graph internally but doesn't expose the
+ * generation numbers, hence the files are read directly (refer to {@link FileBlocks}):
+ * a fan-out table and the sorted object names locate the commit, the commit data holds its
+ * generation. Both a single {@code objects/info/commit-graph} and a split commit-graph
+ * chain are supported. The files are kept open until the commit-graph is
+ * {@link #close() closed}.
+ */
+final class CommitGraph implements Closeable {
+    /**
+     * The generation of commits that are not part of the commit-graph.
+     */
+    static final int GENERATION_UNKNOWN = 0;
+
+    private static final int SIGNATURE = 0x43475048; // CGPH
+    private static final int HASH_VERSION_SHA1 = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int CHUNK_LOOKUP_ENTRY_LENGTH = 12;
+    private static final int CHUNK_OID_FANOUT = 0x4f494446; // OIDF
+    private static final int CHUNK_OID_LOOKUP = 0x4f49444c; // OIDL
+    private static final int CHUNK_COMMIT_DATA = 0x43444154; // CDAT
+    private static final int FANOUT_ENTRIES = 256;
+    // tree id, first parent, second parent, generation and commit time
+    private static final int COMMIT_DATA_LENGTH = Constants.OBJECT_ID_LENGTH + 16;
+
+    private final List<Layer> layers;
+
+    private static final class Layer {
+        private final FileBlocks graph;
+        private final int fanoutOffset;
+        private final int lookupOffset;
+        private final int commitDataOffset;
+
+        private Layer(
+                @Nonnull FileBlocks graph,
+                int fanoutOffset,
+                int lookupOffset,
+                int commitDataOffset) {
+            this.graph = graph;
+            this.fanoutOffset = fanoutOffset;
+            this.lookupOffset = lookupOffset;
+            this.commitDataOffset = commitDataOffset;
+        }
+    }
+
+    private CommitGraph(@Nonnull List<Layer> layers) {
+        this.layers = layers;
+    }
+
+    /**
+     * Opens the commit-graph of the given object directory.
+     * A repository without commit-graph yields an empty commit-graph that doesn't know
+     * the generation of any commit.
+     *
+     * @param objectsDirectory The {@code objects} directory of the repository
+     * @return The commit-graph, must be closed
+     * @throws IOException if a commit-graph exists but could not be read
+     */
+    static CommitGraph open(@Nonnull File objectsDirectory) throws IOException {
+        List<File> files = new ArrayList<>();
+        File single = new File(objectsDirectory, "info/commit-graph");
+        if (single.isFile()) {
+            files.add(single);
+        }
+        File chainDirectory = new File(objectsDirectory, "info/commit-graphs");
+        File chain = new File(chainDirectory, "commit-graph-chain");
+        if (chain.isFile()) {
+            for (String line : Files.readAllLines(chain.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    files.add(new File(chainDirectory, "graph-" + line.trim() + ".graph"));
+                }
+            }
+        }
+        CommitGraph commitGraph = new CommitGraph(new ArrayList<>());
+        try {
+            for (File file : files) {
+                Layer layer = read(file);
+                if (layer == null) {
+                    // A commit-graph we don't understand is as good as no commit-graph
+                    commitGraph.close();
+                    return new CommitGraph(Collections.emptyList());
+                }
+                commitGraph.layers.add(layer);
+            }
+        } catch (IOException | RuntimeException e) {
+            commitGraph.close();
+            throw e;
+        }
+        return commitGraph;
+    }
+
+    /**
+     * Returns the generation of the given commit.
+     *
+     * @param commitId The id of the commit
+     * @return The generation, or {@link #GENERATION_UNKNOWN} if the commit is not part
+     *     of the commit-graph
+     * @throws IOException if the commit-graph could not be read
+     */
+    int generationOf(@Nonnull AnyObjectId commitId) throws IOException {
+        byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+        commitId.copyRawTo(raw, 0);
+        for (Layer layer : layers) {
+            int position = positionOf(layer, raw);
+            if (position >= 0) {
+                int offset = layer.commitDataOffset + position * COMMIT_DATA_LENGTH
+                    + Constants.OBJECT_ID_LENGTH + 8;
+                // The upper 30 bits, a generation of zero was written by an old git
+                return layer.graph.getInt(offset) >>> 2;
+            }
+        }
+        return GENERATION_UNKNOWN;
+    }
+
+    @Nullable
+    private static Layer read(@Nonnull File file) throws IOException {
+        FileBlocks graph = FileBlocks.open(file);
+        try {
+            Layer layer = layerOf(graph);
+            if (layer == null) {
+                graph.close();
+            }
+            return layer;
+        } catch (IOException | RuntimeException e) {
+            graph.close();
+            throw e;
+        }
+    }
+
+    @Nullable
+    private static Layer layerOf(@Nonnull FileBlocks graph) throws IOException {
+        if (graph.size() < HEADER_LENGTH) {
+            return null;
+        }
+        if (graph.getInt(0) != SIGNATURE || graph.get(4) != 1
+                || graph.get(5) != HASH_VERSION_SHA1) {
+            return null;
+        }
+        int chunks = graph.get(6) & 0xff;
+        int fanoutOffset = -1;
+        int lookupOffset = -1;
+        int commitDataOffset = -1;
+        for (int i = 0; i < chunks; i++) {
+            int entry = HEADER_LENGTH + i * CHUNK_LOOKUP_ENTRY_LENGTH;
+            int offset = (int) graph.getLong(entry + 4);
+            switch (graph.getInt(entry)) {
+                case CHUNK_OID_FANOUT:
+                    fanoutOffset = offset;
+                    break;
+                case CHUNK_OID_LOOKUP:
+                    lookupOffset = offset;
+                    break;
+                case CHUNK_COMMIT_DATA:
+                    commitDataOffset = offset;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (fanoutOffset < 0 || lookupOffset < 0 || commitDataOffset < 0) {
+            return null;
+        }
+        return new Layer(graph, fanoutOffset, lookupOffset, commitDataOffset);
+    }
+
+    private static int positionOf(
+            @Nonnull Layer layer,
+            @Nonnull byte[] raw) throws IOException {
+        int firstByte = raw[0] & 0xff;
+        int low = firstByte == 0 ? 0 : layer.graph.getInt(layer.fanoutOffset + (firstByte - 1) * 4);
+        int high = layer.graph.getInt(layer.fanoutOffset + firstByte * 4);
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison =
+                compare(layer.graph, layer.lookupOffset + middle * Constants.OBJECT_ID_LENGTH, raw);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(
+            @Nonnull FileBlocks graph,
+            int offset,
+            @Nonnull byte[] raw) throws IOException {
+        for (int i = 0; i < raw.length; i++) {
+            int difference = (graph.get(offset + i) & 0xff) - (raw[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Layer layer : layers) {
+            layer.graph.close();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Abbreviates commit ids according to the {@link AbbreviationMode}.
+ *
+ * <p>For {@link AbbreviationMode#PACK_INDEX} the abbreviation is derived from the objects
+ * that are closest to the commit id: the object names in a pack index are sorted and the
+ * fan-out table at the start of the index tells where the names with the same first byte
+ * start and end. A binary search within that range (at most 32 probes, only reading the
+ * probed blocks of the index, refer to {@link FileBlocks}) finds the neighbours of the
+ * commit id, and the longer of the prefixes shared with them determines the length needed
+ * to be unique within that pack. Loose objects are
+ * stored in a directory per first byte, so only that single directory needs to be listed.
+ * The result is cached per commit id for as long as no pack was added or removed and no
+ * loose object was written to that directory.
+ *
+ * <p>Repositories that borrow objects from other repositories ({@code alternates}) fall back
+ * to {@link AbbreviationMode#OBJECT_DATABASE}.
+ */
+final class CommitIdAbbreviation {
+    /**
+     * The maximum number of commit ids for which the unique length is cached.
+     */
+    static final int MAX_ENTRIES = 1024;
+
+    private static final int PACK_INDEX_V2_SIGNATURE = 0xff744f63;
+    private static final int FANOUT_ENTRIES = 256;
+
+    private static final Map<String, CachedLength> CACHE =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLength> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    private static final class CachedLength {
+        private final String stamp;
+        private final int uniqueLength;
+
+        private CachedLength(@Nonnull String stamp, int uniqueLength) {
+            this.stamp = stamp;
+            this.uniqueLength = uniqueLength;
+        }
+    }
+
+    private CommitIdAbbreviation() {
+    }
+
+    /**
+     * Abbreviates the given id.
+     *
+     * @param repository The repository the id belongs to
+     * @param id The id to abbreviate
+     * @param length The minimum length of the abbreviation
+     * @param mode How to make sure the abbreviation is unique
+     * @return The abbreviated id
+     * @throws IOException if the object database could not be read
+     */
+    static String abbreviate(
+            @Nonnull Repository repository,
+            @Nonnull AnyObjectId id,
+            int length,
+            @Nonnull AbbreviationMode mode) throws IOException {
+        if (length >= Constants.OBJECT_ID_STRING_LENGTH) {
+            return id.name();
+        }
+        File objectsDirectory =
+            new File(GitStateFiles.commonDirOf(repository.getDirectory()), Constants.OBJECTS);
+        if (mode == AbbreviationMode.UNCHECKED) {
+            return id.name().substring(0, length);
+        }
+        if (mode == AbbreviationMode.OBJECT_DATABASE
+                || new File(objectsDirectory, "info/alternates").exists()) {
+            try (ObjectReader reader = repository.newObjectReader()) {
+                return reader.abbreviate(id, length).name();
+            }
+        }
+        return id.name().substring(0, Math.max(length, uniqueLengthOf(objectsDirectory, id)));
+    }
+
+    /**
+     * The minimum number of hex digits that are needed to tell the given id apart from
+     * all other objects.
+     */
+    static int uniqueLengthOf(
+            @Nonnull File objectsDirectory,
+            @Nonnull AnyObjectId id) throws IOException {
+        String name = id.name();
+        File looseDirectory = new File(objectsDirectory, name.substring(0, 2));
+        File[] packIndexes = new File(objectsDirectory, "pack")
+            .listFiles((dir, fileName) -> fileName.endsWith(".idx"));
+        if (packIndexes == null) {
+            packIndexes = new File[0];
+        }
+        Arrays.sort(packIndexes);
+        StringBuilder stamp = new StringBuilder();
+        for (File packIndex : packIndexes) {
+            stamp.append(packIndex.getName()).append(':').append(packIndex.length()).append(',');
+        }
+        stamp.append(looseDirectory.lastModified());
+
+        String key = objectsDirectory.getPath() + ":" + name;
+        synchronized (CACHE) {
+            CachedLength cached = CACHE.get(key);
+            if (cached != null && cached.stamp.equals(stamp.toString())) {
+                return cached.uniqueLength;
+            }
+        }
+
+        byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+        id.copyRawTo(raw, 0);
+        int shared = 0;
+        for (File packIndex : packIndexes) {
+            shared = Math.max(shared, sharedWithNeighbours(packIndex, raw));
+        }
+        String[] looseObjects = looseDirectory.list();
+        if (looseObjects != null) {
+            String rest = name.substring(2);
+            for (String looseObject : looseObjects) {
+                if (looseObject.length() == rest.length() && !looseObject.equals(rest)) {
+                    shared = Math.max(shared, 2 + sharedHexDigits(rest, looseObject));
+                }
+            }
+        }
+        int uniqueLength = Math.min(Constants.OBJECT_ID_STRING_LENGTH, shared + 1);
+        synchronized (CACHE) {
+            CACHE.put(key, new CachedLength(stamp.toString(), uniqueLength));
+        }
+        return uniqueLength;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * The number of leading hex digits the given id shares with its closest neighbours
+     * in the given pack index.
+     */
+    private static int sharedWithNeighbours(
+            @Nonnull File packIndex,
+            @Nonnull byte[] raw) throws IOException {
+        try (FileBlocks index = FileBlocks.open(packIndex)) {
+            int fanoutOffset;
+            int namesOffset;
+            int stride;
+            if (index.getInt(0) == PACK_INDEX_V2_SIGNATURE) {
+                if (index.getInt(4) != 2) {
+                    throw new IOException("Unsupported pack index version in " + packIndex);
+                }
+                fanoutOffset = 8;
+                namesOffset = fanoutOffset + FANOUT_ENTRIES * 4;
+                stride = Constants.OBJECT_ID_LENGTH;
+            } else {
+                // Version 1: every entry is the offset (4 bytes) followed by the name
+                fanoutOffset = 0;
+                namesOffset = FANOUT_ENTRIES * 4 + 4;
+                stride = Constants.OBJECT_ID_LENGTH + 4;
+            }
+            int firstByte = raw[0] & 0xff;
+            int count = index.getInt(fanoutOffset + (FANOUT_ENTRIES - 1) * 4);
+            int low = firstByte == 0 ? 0 : index.getInt(fanoutOffset + (firstByte - 1) * 4);
+            int high = index.getInt(fanoutOffset + firstByte * 4);
+            boolean found = false;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = compare(index, namesOffset + middle * stride, raw);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle;
+                } else {
+                    low = middle;
+                    found = true;
+                    break;
+                }
+            }
+            int shared = 0;
+            if (low > 0) {
+                shared = sharedHexDigits(index, namesOffset + (low - 1) * stride, raw);
+            }
+            int next = found ? low + 1 : low;
+            if (next < count) {
+                shared = Math.max(shared, sharedHexDigits(index, namesOffset + next * stride, raw));
+            }
+            return shared;
+        }
+    }
+
+    private static int compare(
+            @Nonnull FileBlocks index,
+            int offset,
+            @Nonnull byte[] raw) throws IOException {
+        for (int i = 0; i < raw.length; i++) {
+            int difference = (index.get(offset + i) & 0xff) - (raw[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
+    private static int sharedHexDigits(
+            @Nonnull FileBlocks index,
+            int offset,
+            @Nonnull byte[] raw) throws IOException {
+        int shared = 0;
+        for (int i = 0; i < raw.length; i++) {
+            int a = index.get(offset + i) & 0xff;
+            int b = raw[i] & 0xff;
+            if (a == b) {
+                shared += 2;
+                continue;
+            }
+            if ((a >>> 4) == (b >>> 4)) {
+                shared++;
+            }
+            break;
+        }
+        return shared;
+    }
+
+    private static int sharedHexDigits(@Nonnull String a, @Nonnull String b) {
+        int shared = 0;
+        while (shared < a.length() && a.charAt(shared) == b.charAt(shared)) {
+            shared++;
+        }
+        return shared;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import pl.project13.core.GitCommitPropertyConstant;
+
+/**
+ * Extracts the properties that are determined by a single commit, for tasks that process
+ * many commits at once ({@link GitCommitIdBatchGenerationTask},
+ * {@link GitCommitIdChangelogTask}).
+ *
+ * <p>The commits are expected to come from a {@link org.eclipse.jgit.revwalk.RevWalk} that
+ * does not retain the bodies: the body of every commit is parsed on its own and is
+ * garbage as soon as the properties were extracted.
+ */
+final class CommitPropertiesExtractor {
+    private final ObjectReader reader;
+    private final PeeledTagIndex tagIndex;
+    private final String prefixDot;
+    private final SimpleDateFormat dateFormat;
+    private final int abbrevLength;
+
+    /**
+     * Creates an extractor.
+     *
+     * @param reader The reader used to load the commits
+     * @param tagIndex The tags of the repository
+     * @param formatSettings The settings used to format the properties
+     * @param abbrevLength The length of abbreviated commit ids
+     */
+    CommitPropertiesExtractor(
+            @Nonnull ObjectReader reader,
+            @Nonnull PeeledTagIndex tagIndex,
+            @Nonnull GitCommitIdPluginFormatSettingsExtension formatSettings,
+            int abbrevLength) {
+        this.reader = reader;
+        this.tagIndex = tagIndex;
+        this.prefixDot = prefixDotOf(formatSettings);
+        this.dateFormat = new SimpleDateFormat(formatSettings.getDateFormat().get());
+        this.dateFormat.setTimeZone(
+            TimeZone.getTimeZone(formatSettings.getDateFormatTimeZone().get()));
+        this.abbrevLength = abbrevLength;
+    }
+
+    /**
+     * The prefix (including the dot) of all generated properties.
+     *
+     * @param formatSettings The format settings that define the prefix
+     * @return The prefix including the dot (or an empty string)
+     */
+    static String prefixDotOf(@Nonnull GitCommitIdPluginFormatSettingsExtension formatSettings) {
+        String trimmedPrefix = formatSettings.getPropertyPrefix().get().trim();
+        return trimmedPrefix.equals("") ? "" : trimmedPrefix + ".";
+    }
+
+    String getPrefixDot() {
+        return prefixDot;
+    }
+
+    /**
+     * Extracts the commit id (full and abbreviated), the commit time, the author,
+     * the message (short and full) and the tags of the given commit.
+     *
+     * @param commit The commit
+     * @return The properties (with prefix) in a stable order
+     * @throws IOException if the commit could not be read
+     */
+    Map<String, String> extract(@Nonnull RevCommit commit) throws IOException {
+        RevCommit body = RevCommit.parse(
+            reader.open(commit, Constants.OBJ_COMMIT).getCachedBytes());
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put(prefixDot + GitCommitPropertyConstant.COMMIT_ID_FULL, commit.name());
+        properties.put(prefixDot + GitCommitPropertyConstant.COMMIT_ID_ABBREV,
+            reader.abbreviate(commit, abbrevLength).name());
+        properties.put(prefixDot + GitCommitPropertyConstant.COMMIT_TIME,
+            dateFormat.format(new Date(body.getCommitTime() * 1000L)));
+        properties.put(prefixDot + GitCommitPropertyConstant.COMMIT_AUTHOR_NAME,
+            body.getAuthorIdent().getName());
+        properties.put(prefixDot + GitCommitPropertyConstant.COMMIT_AUTHOR_EMAIL,
+            body.getAuthorIdent().getEmailAddress());
+        properties.put(prefixDot + GitCommitPropertyConstant.COMMIT_MESSAGE_SHORT,
+            body.getShortMessage());
+        properties.put(prefixDot + GitCommitPropertyConstant.COMMIT_MESSAGE_FULL,
+            body.getFullMessage().trim());
+        properties.put(prefixDot + GitCommitPropertyConstant.TAGS,
+            String.join(",", tagIndex.tagsPointingAt(commit)));
+        return properties;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.Nonnull;
+
+/**
+ * Random access to a file with positional reads of small blocks, for binary searches in
+ * files like {@code packed-refs}, the commit-graph or pack indexes.
+ *
+ * <p>The files are deliberately not memory mapped: a mapping lives until it's garbage
+ * collected, and on Windows a mapped file can neither be replaced nor deleted, so
+ * {@code git pack-refs}, {@code git gc} or {@code git commit-graph write} would fail while
+ * the gradle daemon is running (the same reason why JGit doesn't map packs by default).
+ * Only the most recently read block is kept, and the file is released on {@link #close()}.
+ * Instances are not thread-safe.
+ */
+final class FileBlocks implements Closeable {
+    /**
+     * The number of bytes that are read at once.
+     */
+    static final int BLOCK_SIZE = 8 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+    private long blockStart;
+
+    private FileBlocks(@Nonnull FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        // Nothing read yet
+        block.limit(0);
+    }
+
+    /**
+     * Opens the given file for reading.
+     *
+     * @param file The file to read
+     * @return The blocks of the file, must be closed
+     * @throws IOException if the file could not be opened
+     */
+    static FileBlocks open(@Nonnull File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new FileBlocks(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The size of the file (when it was opened).
+     *
+     * @return The number of bytes of the file
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Reads a single byte.
+     *
+     * @param position The position of the byte
+     * @return The byte
+     * @throws IOException if the file could not be read
+     */
+    byte get(long position) throws IOException {
+        if (position < blockStart || position >= blockStart + block.limit()) {
+            readBlock(position);
+        }
+        return block.get((int) (position - blockStart));
+    }
+
+    /**
+     * Reads a big-endian int.
+     *
+     * @param position The position of the first byte
+     * @return The int
+     * @throws IOException if the file could not be read
+     */
+    int getInt(long position) throws IOException {
+        return ((get(position) & 0xff) << 24)
+            | ((get(position + 1) & 0xff) << 16)
+            | ((get(position + 2) & 0xff) << 8)
+            | (get(position + 3) & 0xff);
+    }
+
+    /**
+     * Reads a big-endian long.
+     *
+     * @param position The position of the first byte
+     * @return The long
+     * @throws IOException if the file could not be read
+     */
+    long getLong(long position) throws IOException {
+        return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xffffffffL);
+    }
+
+    /**
+     * Reads a range of bytes.
+     *
+     * @param start The position of the first byte
+     * @param end The position after the last byte
+     * @return The bytes
+     * @throws IOException if the file could not be read
+     */
+    byte[] bytes(long start, long end) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = get(start + i);
+        }
+        return bytes;
+    }
+
+    private void readBlock(long position) throws IOException {
+        if (position < 0 || position >= size) {
+            throw new EOFException("Position " + position + " is outside of the file");
+        }
+        // Aligned, so scanning backwards doesn't read every byte again
+        long start = position - position % BLOCK_SIZE;
+        block.clear();
+        block.limit((int) Math.min(BLOCK_SIZE, size - start));
+        while (block.hasRemaining()) {
+            if (channel.read(block, start + block.position()) < 0) {
+                throw new EOFException("The file was truncated while it was read");
+            }
+        }
+        block.flip();
+        blockStart = start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+/**
+ * The implementations that can be used to obtain the information from the git repository.
+ * Refer to {@link GitCommitIdPluginGitSettingsExtension#getGitBackend()}.
+ */
+public enum GitBackend {
+    /**
+     * The {@code jgit} implementation that ships with this plugin.
+     */
+    JGIT,
+    /**
+     * The native {@code git} binary.
+     */
+    NATIVE,
+    /**
+     * Estimate the characteristics of the repository and choose the implementation
+     * that is expected to be faster.
+     */
+    AUTO
+}
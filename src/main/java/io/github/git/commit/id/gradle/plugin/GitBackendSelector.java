@@ -0,0 +1,208 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.SystemReader;
+
+/**
+ * Chooses between the {@code jgit} and the native {@code git} implementation for
+ * {@link GitBackend#AUTO}.
+ *
+ * <p>Neither implementation is the fastest everywhere. Spawning processes dominates the cost
+ * of the native implementation for small repositories, whereas the native implementation
+ * outperforms {@code jgit} for huge working trees (especially with a file system monitor)
+ * and large histories. The decision is based on estimates that can be obtained without
+ * opening the repository: the number of entries in the index, the size of all packs, the
+ * number of refs, whether {@code core.fsmonitor} is enabled and whether
+ * a {@code git} binary is available at all.
+ */
+final class GitBackendSelector {
+    /**
+     * Working trees with at least that many files are faster with the native implementation.
+     */
+    static final int LARGE_INDEX_ENTRIES = 100_000;
+
+    /**
+     * Working trees with at least that many files are faster with the native implementation
+     * if a file system monitor is available.
+     */
+    static final int FSMONITOR_INDEX_ENTRIES = 10_000;
+
+    /**
+     * Histories with at least that many bytes of packs are faster with the native
+     * implementation.
+     */
+    static final long LARGE_PACK_BYTES = 1024L * 1024L * 1024L;
+
+    /**
+     * Repositories with at least that many (estimated) refs are faster with the native
+     * implementation.
+     */
+    static final long LARGE_REF_COUNT = 100_000L;
+
+    /**
+     * The average length of a line in {@code packed-refs} used to estimate the number of refs.
+     */
+    private static final int PACKED_REF_LINE_LENGTH = 64;
+
+    /**
+     * The outcome of the selection.
+     */
+    static final class Selection {
+        private final GitBackend backend;
+        private final String reason;
+
+        private Selection(@Nonnull GitBackend backend, @Nonnull String reason) {
+            this.backend = backend;
+            this.reason = reason;
+        }
+
+        GitBackend getBackend() {
+            return backend;
+        }
+
+        String getReason() {
+            return reason;
+        }
+
+        @Override
+        public String toString() {
+            return backend + " (" + reason + ")";
+        }
+    }
+
+    private GitBackendSelector() {
+    }
+
+    /**
+     * Select the implementation that is expected to be faster for the given repository.
+     *
+     * @param dotGitDirectory The {@code .git} directory of the repository
+     * @param systemEnv The environment used to look up the {@code git} binary
+     * @return The selected implementation and the reason for the selection
+     */
+    static Selection select(@Nonnull File dotGitDirectory, @Nonnull Map<String, String> systemEnv) {
+        if (!isGitBinaryAvailable(systemEnv)) {
+            return new Selection(GitBackend.JGIT, "no git binary found on the PATH");
+        }
+        // Only the index belongs to a linked worktree, everything else is shared
+        File commonDir = GitStateFiles.commonDirOf(dotGitDirectory);
+        long indexEntries = countIndexEntries(dotGitDirectory);
+        if (indexEntries >= LARGE_INDEX_ENTRIES) {
+            return new Selection(
+                GitBackend.NATIVE, "large working tree with " + indexEntries + " index entries");
+        }
+        if (indexEntries >= FSMONITOR_INDEX_ENTRIES && isFsMonitorEnabled(commonDir)) {
+            return new Selection(GitBackend.NATIVE,
+                "core.fsmonitor is enabled for " + indexEntries + " index entries");
+        }
+        long packBytes = sumPackBytes(commonDir);
+        if (packBytes >= LARGE_PACK_BYTES) {
+            return new Selection(
+                GitBackend.NATIVE, "large history with " + packBytes + " bytes of packs");
+        }
+        long refs = estimateRefCount(commonDir);
+        if (refs >= LARGE_REF_COUNT) {
+            return new Selection(GitBackend.NATIVE, "about " + refs + " refs");
+        }
+        return new Selection(GitBackend.JGIT, "small repository (" + indexEntries
+            + " index entries, " + packBytes + " bytes of packs, about " + refs
+            + " refs) where spawning processes dominates");
+    }
+
+    static boolean isGitBinaryAvailable(@Nonnull Map<String, String> systemEnv) {
+        String path = systemEnv.get("PATH");
+        if (path == null) {
+            path = systemEnv.get("Path");
+        }
+        if (path == null) {
+            return false;
+        }
+        boolean isWindows = SystemReader.getInstance().isWindows();
+        for (String dir : path.split(File.pathSeparator)) {
+            if (dir.isEmpty()) {
+                continue;
+            }
+            if (new File(dir, isWindows ? "git.exe" : "git").canExecute()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the number of entries from the header of the index
+     * (a signature, the version and the number of entries, each four bytes).
+     */
+    static long countIndexEntries(@Nonnull File dotGitDirectory) {
+        File index = new File(dotGitDirectory, "index");
+        if (!index.isFile()) {
+            return 0;
+        }
+        try (InputStream in = Files.newInputStream(index.toPath());
+             DataInputStream data = new DataInputStream(in)) {
+            if (data.readInt() != 0x44495243) { // DIRC
+                return 0;
+            }
+            data.readInt(); // version
+            return Integer.toUnsignedLong(data.readInt());
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    static long sumPackBytes(@Nonnull File commonDir) {
+        File[] packs = new File(commonDir, "objects/pack")
+            .listFiles((dir, name) -> name.endsWith(".pack"));
+        long bytes = 0;
+        if (packs != null) {
+            for (File pack : packs) {
+                bytes += pack.length();
+            }
+        }
+        return bytes;
+    }
+
+    static long estimateRefCount(@Nonnull File commonDir) {
+        return new File(commonDir, Constants.PACKED_REFS).length() / PACKED_REF_LINE_LENGTH;
+    }
+
+    private static boolean isFsMonitorEnabled(@Nonnull File commonDir) {
+        FileBasedConfig config =
+            new FileBasedConfig(new File(commonDir, Constants.CONFIG), FS.DETECTED);
+        try {
+            config.load();
+        } catch (IOException | ConfigInvalidException e) {
+            return false;
+        }
+        String fsmonitor = config.getString(ConfigConstants.CONFIG_CORE_SECTION, null, "fsmonitor");
+        return fsmonitor != null && !fsmonitor.isEmpty() && !"false".equalsIgnoreCase(fsmonitor);
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import pl.project13.core.GitCommitIdExecutionException;
+import pl.project13.core.GitCommitPropertyConstant;
+
+/**
+ * The task that generates the "git" information for many commits at once,
+ * e.g. to back-fill the information for every release of a project.
+ *
+ * <p>Opposed to the {@link GitCommitIdPluginGenerationTask} that is limited to a single
+ * commit ({@link GitCommitIdPluginGitSettingsExtension#getEvaluateOnCommit()}), this task
+ * takes a list of revisions, opens the repository once and shares its object reader across
+ * all of them. The results are written one commit per line while walking,
+ * so the output can be arbitrarily large.
+ *
+ * <p>The task is not registered with any lifecycle task and needs to be invoked explicitly:
+ * <pre>
+ * tasks.named('gitCommitIdBatchGenerationTask') {
+ *     revisions = ['refs/tags/v*', 'v1.0.0..v2.0.0']
+ *     format = io.github.git.commit.id.gradle.plugin.BatchOutputFormat.CSV
+ * }
+ * </pre>
+ *
+ * <p>The generated properties use the same names and honour the same
+ * {@link GitCommitIdPluginFormatSettingsExtension format settings},
+ * {@link GitCommitIdPluginFilterSettingsExtension filter settings} and
+ * {@link GitCommitIdPluginGitSettingsExtension#getAbbrevLength() abbreviation length}
+ * as the {@link GitCommitIdPluginGenerationTask}. Only the properties that are determined by
+ * the commit itself are supported: the commit id (full and abbreviated), the commit time,
+ * the author, the short message, the tags and the total commit count.
+ * The information is always obtained with {@code jgit}.
+ */
+public abstract class GitCommitIdBatchGenerationTask extends DefaultTask {
+    /**
+     * Name of the task how it's made available to the end-user's
+     * task execution graph.
+     */
+    public static final String NAME = "gitCommitIdBatchGenerationTask";
+
+    /**
+     * The column that contains the revision (as configured) a commit was found with.
+     */
+    public static final String REVISION_COLUMN = "revision";
+
+    private static final String RANGE_SEPARATOR = "..";
+    private static final String WILDCARD = "*";
+
+    /**
+     * Properties (without prefix) that are generated for every commit, in that order.
+     */
+    private static final List<String> PROPERTIES = Arrays.asList(
+        GitCommitPropertyConstant.COMMIT_ID_FULL,
+        GitCommitPropertyConstant.COMMIT_ID_ABBREV,
+        GitCommitPropertyConstant.COMMIT_TIME,
+        GitCommitPropertyConstant.COMMIT_AUTHOR_NAME,
+        GitCommitPropertyConstant.COMMIT_AUTHOR_EMAIL,
+        GitCommitPropertyConstant.COMMIT_MESSAGE_SHORT,
+        GitCommitPropertyConstant.TAGS,
+        GitCommitPropertyConstant.TOTAL_COMMIT_COUNT);
+
+    /**
+     * The revisions the "git" information should be generated for. Every entry can be
+     * <ul>
+     *     <li>a single revision (e.g. {@code HEAD}, {@code v1.0.0} or a commit id),</li>
+     *     <li>a range {@code FROM..TO} of all commits reachable from {@code TO}
+     *     but not from {@code FROM},</li>
+     *     <li>a pattern of refs that ends with {@code *} (e.g. {@code refs/tags/*} or
+     *     {@code refs/tags/v1.*}) that stands for the commit of every matching ref.</li>
+     * </ul>
+     *
+     * <p>The commits of a range are written while they are walked, from the newest to the
+     * oldest commit (like {@code git log}). When the
+     * {@link GitCommitPropertyConstant#TOTAL_COMMIT_COUNT total commit count} is generated,
+     * the commits of a range are written from the oldest to the newest commit instead, so the
+     * count of every commit can be derived from the count of its parent. That requires the
+     * whole range to be walked (and kept in memory) before the first commit is written.
+     *
+     * <p>By default this is set to {@code HEAD}.
+     *
+     * @return The revisions the "git" information should be generated for
+     */
+    @Input
+    public abstract ListProperty<String> getRevisions();
+
+    /**
+     * The format of the generated file.
+     *
+     * <p>By default this is set to {@link BatchOutputFormat#JSONL}.
+     *
+     * @return The format of the generated file
+     */
+    @Input
+    public abstract Property<BatchOutputFormat> getFormat();
+
+    /**
+     * The file the "git" information of all commits is written to.
+     *
+     * <p>By default this is set to {@code build/git-batch.jsonl} (or {@code build/git-batch.csv}
+     * depending on the {@link #getFormat()}).
+     *
+     * @return The generated file
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    /**
+     * Setup the default values / conventions for the GitCommitIdBatchGenerationTask.
+     */
+    public GitCommitIdBatchGenerationTask() {
+        getRevisions().convention(Collections.singletonList(Constants.HEAD));
+        getFormat().convention(BatchOutputFormat.JSONL);
+        getOutputFile().convention(getProject().getLayout().getBuildDirectory().file(
+            getFormat().map(format -> "git-batch." + format.getFileExtension())));
+        // Revisions like HEAD or a branch name are only resolved when the task is executed
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @Internal
+    public GitCommitIdPluginExtension getGitCommitIdPluginExtension() {
+        return getProject().getExtensions().findByType(GitCommitIdPluginExtension.class);
+    }
+
+    @Internal
+    public GitCommitIdPluginGitSettingsExtension getGitCommitIdPluginGitSettingsExtension() {
+        return ((ExtensionAware) getGitCommitIdPluginExtension()).getExtensions()
+            .findByType(GitCommitIdPluginGitSettingsExtension.class);
+    }
+
+    @Internal
+    public GitCommitIdPluginFormatSettingsExtension getGitCommitIdPluginFormatSettingsExtension() {
+        return ((ExtensionAware) getGitCommitIdPluginExtension()).getExtensions()
+            .findByType(GitCommitIdPluginFormatSettingsExtension.class);
+    }
+
+    @Internal
+    public GitCommitIdPluginFilterSettingsExtension getGitCommitIdPluginFilterSettingsExtension() {
+        return ((ExtensionAware) getGitCommitIdPluginExtension()).getExtensions()
+            .findByType(GitCommitIdPluginFilterSettingsExtension.class);
+    }
+
+    /**
+     * The task action that walks all configured revisions and writes the "git" information
+     * of every commit to the {@link #getOutputFile()}.
+     */
+    @TaskAction
+    public void runTheTask() {
+        try {
+            generate();
+        } catch (GitCommitIdExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void generate() throws GitCommitIdExecutionException {
+        GitCommitIdPluginGitSettingsExtension gitSettings =
+            getGitCommitIdPluginGitSettingsExtension();
+        GitCommitIdPluginFormatSettingsExtension formatSettings =
+            getGitCommitIdPluginFormatSettingsExtension();
+        GitCommitIdPluginFilterSettingsExtension filterSettings =
+            getGitCommitIdPluginFilterSettingsExtension();
+
+        String prefixDot = CommitPropertiesExtractor.prefixDotOf(formatSettings);
+        List<String> columns = new ArrayList<>();
+        columns.add(REVISION_COLUMN);
+        for (String property : PROPERTIES) {
+            String key = prefixDot + property;
+            if (GitCommitIdPluginGenerationTask.isPropertyIncluded(
+                    filterSettings.getIncludeOnlyProperties().get(),
+                    filterSettings.getExcludeProperties().get(),
+                    key)) {
+                columns.add(key);
+            }
+        }
+        String totalCommitCountKey = prefixDot + GitCommitPropertyConstant.TOTAL_COMMIT_COUNT;
+
+        File dotGitDirectory = gitSettings.getDotGitDirectory().get().getAsFile();
+        File outputFile = getOutputFile().get().getAsFile();
+        TotalCommitCountCache totalCommitCountCache = TotalCommitCountCache.load(
+            new File(getTemporaryDir(), "total-commit-count.cache"));
+        long written = 0;
+        boolean ancestorsFirst = columns.contains(totalCommitCountKey);
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory);
+             ObjectReader reader = repository.newObjectReader();
+             BatchRecordWriter writer =
+                 BatchRecordWriter.open(outputFile, getFormat().get(), columns)) {
+            CommitPropertiesExtractor extractor = new CommitPropertiesExtractor(
+                reader,
+                PeeledTagIndex.forRepository(repository),
+                formatSettings,
+                gitSettings.getAbbrevLength().get());
+            for (String revision : getRevisions().get()) {
+                // A walk per revision, so the commits parsed for one revision are garbage
+                // before the next one is walked. The walk does not retain the bodies either,
+                // so the memory does not depend on the size of the commit messages.
+                try (RevWalk walk = new RevWalk(reader)) {
+                    walk.setRetainBody(false);
+                    for (RevCommit commit : resolve(repository, walk, revision, ancestorsFirst)) {
+                        Map<String, String> record = extractor.extract(commit);
+                        record.put(REVISION_COLUMN, revision);
+                        if (ancestorsFirst) {
+                            record.put(totalCommitCountKey,
+                                String.valueOf(totalCommitCountCache.count(repository, commit)));
+                        }
+                        writer.write(record);
+                        written++;
+                    }
+                }
+            }
+            totalCommitCountCache.save();
+        } catch (IOException e) {
+            throw new GitCommitIdExecutionException(
+                "Unable to generate the git information for " + getRevisions().get(), e);
+        }
+        getLogger().info("Generated the git information for {} commits to {}",
+            written, outputFile);
+    }
+
+    /**
+     * Resolves a single entry of {@link #getRevisions()} to its commits.
+     * Ranges are walked lazily with the given {@link RevWalk}.
+     */
+    private static Iterable<RevCommit> resolve(
+            @Nonnull Repository repository,
+            @Nonnull RevWalk walk,
+            @Nonnull String revision,
+            boolean ancestorsFirst) throws IOException, GitCommitIdExecutionException {
+        int separator = revision.indexOf(RANGE_SEPARATOR);
+        if (separator >= 0) {
+            String from = revision.substring(0, separator);
+            String to = revision.substring(separator + RANGE_SEPARATOR.length());
+            walk.markStart(
+                walk.parseCommit(resolveCommit(repository, to.isEmpty() ? Constants.HEAD : to)));
+            if (!from.isEmpty()) {
+                walk.markUninteresting(walk.parseCommit(resolveCommit(repository, from)));
+            }
+            if (ancestorsFirst) {
+                // So the total commit count of every commit can be derived from the count of
+                // its parent, at the price of sorting the whole range before it's returned
+                walk.sort(RevSort.TOPO);
+                walk.sort(RevSort.REVERSE, true);
+            }
+            return walk;
+        }
+        if (revision.endsWith(WILDCARD)) {
+            String prefix = revision.substring(0, revision.length() - WILDCARD.length());
+            List<RevCommit> commits = new ArrayList<>();
+            for (Ref ref : repository.getRefDatabase().getRefsByPrefix(prefix)) {
+                ObjectId objectId = repository.resolve(ref.getName() + "^{commit}");
+                if (objectId != null) {
+                    commits.add(walk.parseCommit(objectId));
+                }
+            }
+            return commits;
+        }
+        return Collections.singletonList(
+            walk.parseCommit(resolveCommit(repository, revision)));
+    }
+
+    private static ObjectId resolveCommit(
+            @Nonnull Repository repository,
+            @Nonnull String revision) throws IOException, GitCommitIdExecutionException {
+        ObjectId objectId = repository.resolve(revision + "^{commit}");
+        if (objectId == null) {
+            throw new GitCommitIdExecutionException(
+                "Unable to resolve the revision '" + revision + "' to a commit");
+        }
+        return objectId;
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.Project;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import pl.project13.core.GitCommitIdExecutionException;
+
+/**
+ * The task that determines which gradle projects contain files that changed between
+ * a base revision and {@code HEAD}, e.g. to only build, test and publish the affected
+ * projects of a monorepo in CI.
+ *
+ * <p>The changes are determined with a single diff of the two trees (subtrees that did not
+ * change are skipped entirely) and every changed file is attributed to the innermost project
+ * whose directory contains it. The paths of all changed projects (e.g. {@code :app}) are
+ * written to the {@link #getReportFile()}, one per line and in sorted order, and are
+ * available to other tasks via {@link #getChangedProjects()}:
+ * <pre>
+ * tasks.named('gitCommitIdChangedProjectsTask') {
+ *     baseRevision = 'origin/main'
+ * }
+ * </pre>
+ *
+ * <p>Changed files of the root project itself (e.g. {@code settings.gradle}) are reported
+ * as the root project {@code :}, which usually means that all projects are affected.
+ * Files outside the directory of the project the plugin is applied to are ignored.
+ * The information is always obtained with {@code jgit}.
+ */
+public abstract class GitCommitIdChangedProjectsTask extends DefaultTask {
+    /**
+     * Name of the task how it's made available to the end-user's
+     * task execution graph.
+     */
+    public static final String NAME = "gitCommitIdChangedProjectsTask";
+
+    /**
+     * The revision the changes are determined against, e.g. {@code origin/main}.
+     *
+     * <p>By default this is set to {@code HEAD~1}.
+     *
+     * @return The base revision
+     */
+    @Input
+    public abstract Property<String> getBaseRevision();
+
+    /**
+     * The revision whose changes should be determined.
+     *
+     * <p>By default this is set to {@code HEAD}.
+     *
+     * @return The head revision
+     */
+    @Input
+    public abstract Property<String> getHeadRevision();
+
+    /**
+     * Whether the changes are determined against the merge base of the
+     * {@link #getBaseRevision()} and the {@link #getHeadRevision()} (like {@code git diff
+     * base...head}) instead of the base revision itself (like {@code git diff base head}).
+     * The merge base ignores changes that were only made on the base branch in the meantime,
+     * which is usually what is wanted for a pull request.
+     *
+     * <p>By default this is set to {@code true}.
+     *
+     * @return Whether the merge base should be used
+     */
+    @Input
+    public abstract Property<Boolean> getUseMergeBase();
+
+    /**
+     * The file the paths of the changed projects are written to, one per line.
+     *
+     * <p>By default this is set to {@code build/git-changed-projects.txt}.
+     *
+     * @return The report file
+     */
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    /**
+     * The absolute directories of the project the task belongs to and of all its subprojects,
+     * mapped to the paths of the projects (e.g. {@code :app}).
+     *
+     * <p>By default this is resolved from the build model as soon as the task graph is ready
+     * (and then stored by the configuration cache), so the task action never has to look at
+     * other projects.
+     *
+     * @return The paths of the projects by their directories
+     */
+    @Internal
+    public abstract MapProperty<String, String> getProjectDirectories();
+
+    /**
+     * Setup the default values / conventions for the GitCommitIdChangedProjectsTask.
+     */
+    public GitCommitIdChangedProjectsTask() {
+        getBaseRevision().convention(Constants.HEAD + "~1");
+        getHeadRevision().convention(Constants.HEAD);
+        getUseMergeBase().convention(true);
+        Project project = getProject();
+        getProjectDirectories().convention(project.provider(() -> {
+            Map<String, String> projectDirectories = new TreeMap<>();
+            for (Project candidate : project.getAllprojects()) {
+                projectDirectories.put(
+                    candidate.getProjectDir().getAbsolutePath(), candidate.getPath());
+            }
+            return projectDirectories;
+        }));
+        // Resolved while the task graph is built, the task action must not access other projects
+        getProjectDirectories().finalizeValueOnRead();
+        project.getGradle().getTaskGraph().whenReady(graph -> {
+            if (graph.hasTask(this)) {
+                getProjectDirectories().finalizeValue();
+            }
+        });
+        getReportFile().convention(
+            getProject().getLayout().getBuildDirectory().file("git-changed-projects.txt"));
+        // Revisions like HEAD or a branch name are only resolved when the task is executed
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    /**
+     * The paths of the changed projects. Using this provider as input of another task
+     * automatically makes that task depend on this task.
+     *
+     * @return The paths of the changed projects (e.g. {@code :app}) in sorted order
+     */
+    @Internal
+    public Provider<List<String>> getChangedProjects() {
+        return getReportFile().map(file -> {
+            try {
+                return Collections.unmodifiableList(
+                    Files.readAllLines(file.getAsFile().toPath(), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new RuntimeException(new GitCommitIdExecutionException(
+                    "Unable to read the changed projects from " + file, e));
+            }
+        });
+    }
+
+    @Internal
+    public GitCommitIdPluginExtension getGitCommitIdPluginExtension() {
+        return getProject().getExtensions().findByType(GitCommitIdPluginExtension.class);
+    }
+
+    @Internal
+    public GitCommitIdPluginGitSettingsExtension getGitCommitIdPluginGitSettingsExtension() {
+        return ((ExtensionAware) getGitCommitIdPluginExtension()).getExtensions()
+            .findByType(GitCommitIdPluginGitSettingsExtension.class);
+    }
+
+    /**
+     * The task action that diffs the revisions and writes the changed projects
+     * to the {@link #getReportFile()}.
+     */
+    @TaskAction
+    public void runTheTask() {
+        try {
+            generate();
+        } catch (GitCommitIdExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void generate() throws GitCommitIdExecutionException {
+        GitCommitIdPluginGitSettingsExtension gitSettings =
+            getGitCommitIdPluginGitSettingsExtension();
+        File dotGitDirectory = gitSettings.getDotGitDirectory().get().getAsFile();
+        File reportFile = getReportFile().get().getAsFile();
+        TreeSet<String> changedProjects = new TreeSet<>();
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory);
+             RevWalk walk = new RevWalk(repository)) {
+            RevCommit head = walk.parseCommit(resolveCommit(repository, getHeadRevision().get()));
+            RevCommit base = walk.parseCommit(resolveCommit(repository, getBaseRevision().get()));
+            if (getUseMergeBase().get()) {
+                base = mergeBaseOf(walk, base, head);
+            }
+            Map<String, String> projectsByDirectory =
+                projectsByDirectory(repository.getWorkTree(), getProjectDirectories().get());
+            try (TreeWalk treeWalk = new TreeWalk(repository)) {
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+                if (base == null) {
+                    // unrelated histories, everything changed
+                    treeWalk.addTree(new EmptyTreeIterator());
+                } else {
+                    treeWalk.addTree(base.getTree());
+                }
+                treeWalk.addTree(head.getTree());
+                while (treeWalk.next()) {
+                    String project = projectOf(projectsByDirectory, treeWalk.getPathString());
+                    if (project != null) {
+                        changedProjects.add(project);
+                    }
+                }
+            }
+            Files.createDirectories(reportFile.getAbsoluteFile().getParentFile().toPath());
+            Files.write(reportFile.toPath(), changedProjects, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new GitCommitIdExecutionException(
+                "Unable to determine the changed projects since " + getBaseRevision().get(), e);
+        }
+        getLogger().info("Changed projects since {}: {}",
+            getBaseRevision().get(), changedProjects);
+    }
+
+    /**
+     * Maps the directory of every project (relative to the work tree, with a trailing slash
+     * or empty for the work tree itself) to the path of the project. Projects outside the
+     * work tree are left out.
+     */
+    static Map<String, String> projectsByDirectory(
+            @Nonnull File workTree,
+            @Nonnull Map<String, String> projectDirectories) throws IOException {
+        Path root = workTree.getCanonicalFile().toPath();
+        Map<String, String> projectsByDirectory = new TreeMap<>();
+        for (Map.Entry<String, String> project : projectDirectories.entrySet()) {
+            Path dir = new File(project.getKey()).getCanonicalFile().toPath();
+            if (!dir.startsWith(root)) {
+                continue;
+            }
+            String relative = root.relativize(dir).toString().replace(File.separatorChar, '/');
+            projectsByDirectory.put(relative.isEmpty() ? "" : relative + "/", project.getValue());
+        }
+        return projectsByDirectory;
+    }
+
+    /**
+     * Returns the innermost project that contains the given path.
+     */
+    @Nullable
+    static String projectOf(
+            @Nonnull Map<String, String> projectsByDirectory,
+            @Nonnull String path) {
+        String directory = path;
+        while (true) {
+            int slash = directory.lastIndexOf('/', directory.length() - 2);
+            directory = slash < 0 ? "" : directory.substring(0, slash + 1);
+            String project = projectsByDirectory.get(directory);
+            if (project != null || directory.isEmpty()) {
+                return project;
+            }
+        }
+    }
+
+    @Nullable
+    private static RevCommit mergeBaseOf(
+            @Nonnull RevWalk walk,
+            @Nonnull RevCommit base,
+            @Nonnull RevCommit head) throws IOException {
+        walk.reset();
+        walk.setRevFilter(RevFilter.MERGE_BASE);
+        walk.markStart(base);
+        walk.markStart(head);
+        RevCommit mergeBase = walk.next();
+        walk.reset();
+        walk.setRevFilter(RevFilter.ALL);
+        return mergeBase;
+    }
+
+    private static ObjectId resolveCommit(
+            @Nonnull Repository repository,
+            @Nonnull String revision) throws IOException, GitCommitIdExecutionException {
+        ObjectId objectId = repository.resolve(revision + "^{commit}");
+        if (objectId == null) {
+            throw new GitCommitIdExecutionException(
+                "Unable to resolve the revision '" + revision + "' to a commit");
+        }
+        return objectId;
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+import pl.project13.core.GitCommitIdExecutionException;
+import pl.project13.core.GitCommitPropertyConstant;
+import pl.project13.core.git.GitDescribeConfig;
+
+/**
+ * The task that generates a changelog of all commits between two revisions,
+ * e.g. to build the release notes from the commits since the last release.
+ *
+ * <p>Every commit is rendered with the configured {@link #getTemplate()} and written
+ * (newest first) as soon as it is visited, so the range can be arbitrarily large.
+ * When the task runs again for the same start of the range and the previous end
+ * of the range is an ancestor of the new end, only the new commits are walked and the
+ * previously generated changelog is appended as is. That only happens when the result is
+ * the same as generating the whole changelog, i.e. when none of the new commits is older
+ * than the previous end (e.g. after merging an old branch) and - if the template contains
+ * the tags - no tag was created, moved or deleted.
+ *
+ * <p>The task is not registered with any lifecycle task and needs to be invoked explicitly:
+ * <pre>
+ * tasks.named('gitCommitIdChangelogTask') {
+ *     from = 'v1.0.0'
+ *     template = '- ${git.commit.message.short} (${git.commit.id.abbrev})'
+ * }
+ * </pre>
+ *
+ * <p>The commits are formatted with the same
+ * {@link GitCommitIdPluginFormatSettingsExtension format settings} and
+ * {@link GitCommitIdPluginGitSettingsExtension#getAbbrevLength() abbreviation length}
+ * as the {@link GitCommitIdPluginGenerationTask}. The information is always obtained with
+ * {@code jgit}.
+ */
+public abstract class GitCommitIdChangelogTask extends DefaultTask {
+    /**
+     * Name of the task how it's made available to the end-user's
+     * task execution graph.
+     */
+    public static final String NAME = "gitCommitIdChangelogTask";
+
+    private static final String STATE_FROM = "from";
+    private static final String STATE_TO = "to";
+    private static final String STATE_SETTINGS = "settings";
+    private static final String STATE_OUTPUT = "output";
+
+    /**
+     * The (exclusive) start of the range, e.g. the tag of the previous release.
+     *
+     * <p>By default this is not set and the closest tag that is reachable from {@link #getTo()}
+     * (but does not point to {@link #getTo()} itself) is used. The tags are filtered with the
+     * {@link GitDescribeConfig#getMatch() match pattern} and - unless
+     * {@link GitDescribeConfig#getTags() tags} is enabled - restricted to annotated tags
+     * in the same way {@code git describe} does. Like {@code git describe} the tag with
+     * the fewest commits in between wins, not the newest one.
+     * When there is no such tag the changelog contains the whole history.
+     *
+     * @return The start of the range
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getFrom();
+
+    /**
+     * The (inclusive) end of the range.
+     *
+     * <p>By default this is set to {@code HEAD}.
+     *
+     * @return The end of the range
+     */
+    @Input
+    public abstract Property<String> getTo();
+
+    /**
+     * The template every commit is rendered with. Placeholders like
+     * {@code ${git.commit.id.abbrev}} are replaced with the property of the same name, the
+     * available properties are the commit id (full and abbreviated), the commit time,
+     * the author, the message (short and full) and the tags of the commit.
+     * Every rendered commit is followed by a line break.
+     *
+     * <p>By default this is set to
+     * {@code * ${git.commit.id.abbrev} ${git.commit.message.short} (${git.commit.user.name})}
+     * (using the configured {@link GitCommitIdPluginFormatSettingsExtension#getPropertyPrefix()}).
+     *
+     * @return The template every commit is rendered with
+     */
+    @Input
+    public abstract Property<String> getTemplate();
+
+    /**
+     * The file the changelog is written to.
+     *
+     * <p>By default this is set to {@code build/git-changelog.md}.
+     *
+     * @return The generated file
+     */
+    @OutputFile
+    public abstract RegularFileProperty getOutputFile();
+
+    /**
+     * Setup the default values / conventions for the GitCommitIdChangelogTask.
+     */
+    public GitCommitIdChangelogTask() {
+        getTo().convention(Constants.HEAD);
+        getTemplate().convention(getGitCommitIdPluginFormatSettingsExtension()
+            .getPropertyPrefix()
+            .map(prefix -> {
+                String trimmedPrefix = prefix.trim();
+                String prefixDot = trimmedPrefix.equals("") ? "" : trimmedPrefix + ".";
+                return "* ${" + prefixDot + GitCommitPropertyConstant.COMMIT_ID_ABBREV + "}"
+                    + " ${" + prefixDot + GitCommitPropertyConstant.COMMIT_MESSAGE_SHORT + "}"
+                    + " (${" + prefixDot + GitCommitPropertyConstant.COMMIT_AUTHOR_NAME + "})";
+            }));
+        getOutputFile().convention(
+            getProject().getLayout().getBuildDirectory().file("git-changelog.md"));
+        // Revisions like HEAD or a branch name are only resolved when the task is executed
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @Internal
+    public GitCommitIdPluginExtension getGitCommitIdPluginExtension() {
+        return getProject().getExtensions().findByType(GitCommitIdPluginExtension.class);
+    }
+
+    @Internal
+    public GitCommitIdPluginGitSettingsExtension getGitCommitIdPluginGitSettingsExtension() {
+        return ((ExtensionAware) getGitCommitIdPluginExtension()).getExtensions()
+            .findByType(GitCommitIdPluginGitSettingsExtension.class);
+    }
+
+    @Internal
+    public GitCommitIdPluginFormatSettingsExtension getGitCommitIdPluginFormatSettingsExtension() {
+        return ((ExtensionAware) getGitCommitIdPluginExtension()).getExtensions()
+            .findByType(GitCommitIdPluginFormatSettingsExtension.class);
+    }
+
+    /**
+     * The task action that walks the range and writes the changelog
+     * to the {@link #getOutputFile()}.
+     */
+    @TaskAction
+    public void runTheTask() {
+        try {
+            generate();
+        } catch (GitCommitIdExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void generate() throws GitCommitIdExecutionException {
+        GitCommitIdPluginGitSettingsExtension gitSettings =
+            getGitCommitIdPluginGitSettingsExtension();
+        GitCommitIdPluginFormatSettingsExtension formatSettings =
+            getGitCommitIdPluginFormatSettingsExtension();
+        GitDescribeConfig describeConfig = gitSettings.getGitDescribeConfig().get();
+        String template = getTemplate().get();
+        String settings = String.join("|",
+            template,
+            formatSettings.getPropertyPrefix().get(),
+            formatSettings.getDateFormat().get(),
+            formatSettings.getDateFormatTimeZone().get(),
+            String.valueOf(gitSettings.getAbbrevLength().get()));
+
+        File dotGitDirectory = gitSettings.getDotGitDirectory().get().getAsFile();
+        File outputFile = getOutputFile().get().getAsFile();
+        File stateFile = new File(getTemporaryDir(), "changelog.state");
+        File tmpFile = new File(getTemporaryDir(), "changelog.tmp");
+        Properties previousState = loadState(stateFile);
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory);
+             RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            PeeledTagIndex tagIndex = PeeledTagIndex.forRepository(repository);
+            RevCommit to = walk.parseCommit(resolveCommit(repository, getTo().get()));
+            RevCommit from = getFrom().isPresent()
+                ? walk.parseCommit(resolveCommit(repository, getFrom().get()))
+                : findClosestTaggedCommit(walk, to, tagIndex, describeConfig);
+            walk.reset();
+
+            String fromName = from == null ? "" : from.name();
+            String prefixDot = CommitPropertiesExtractor.prefixDotOf(formatSettings);
+            if (template.contains("${" + prefixDot + GitCommitPropertyConstant.TAGS + "}")) {
+                // The previous lines need to be rendered again when a listed commit is tagged
+                settings += "|" + tagIndex.digest();
+            }
+            RevCommit previousTo = null;
+            if (settings.equals(previousState.getProperty(STATE_SETTINGS))
+                    && fromName.equals(previousState.getProperty(STATE_FROM))
+                    && stateOf(outputFile).equals(previousState.getProperty(STATE_OUTPUT))) {
+                String previousToName = previousState.getProperty(STATE_TO, "");
+                ObjectId previousToId =
+                    ObjectId.isId(previousToName) ? ObjectId.fromString(previousToName) : null;
+                if (previousToId != null && repository.getObjectDatabase().has(previousToId)) {
+                    RevCommit candidate = walk.parseCommit(previousToId);
+                    if (walk.isMergedInto(candidate, to)) {
+                        previousTo = candidate;
+                    }
+                    walk.reset();
+                }
+            }
+
+            CommitPropertiesExtractor extractor = new CommitPropertiesExtractor(
+                walk.getObjectReader(), tagIndex, formatSettings,
+                gitSettings.getAbbrevLength().get());
+            long written = -1;
+            if (previousTo != null) {
+                written = writeChangelog(
+                    walk, to, from, previousTo, extractor, template, tmpFile, outputFile);
+                if (written < 0) {
+                    getLogger().info("Commits older than {} were merged, "
+                        + "generating the whole changelog", previousTo.name());
+                } else {
+                    getLogger().info("Reusing the changelog up to {}", previousTo.name());
+                }
+            }
+            if (written < 0) {
+                written = writeChangelog(
+                    walk, to, from, null, extractor, template, tmpFile, outputFile);
+            }
+            moveAtomically(tmpFile, outputFile);
+
+            Properties state = new Properties();
+            state.setProperty(STATE_SETTINGS, settings);
+            state.setProperty(STATE_FROM, fromName);
+            state.setProperty(STATE_TO, to.name());
+            state.setProperty(STATE_OUTPUT, stateOf(outputFile));
+            saveState(stateFile, state);
+            getLogger().info("Generated the changelog for {}..{} with {} new commits to {}",
+                fromName, to.name(), written, outputFile);
+        } catch (IOException e) {
+            throw new GitCommitIdExecutionException(
+                "Unable to generate the changelog up to " + getTo().get(), e);
+        }
+    }
+
+    /**
+     * Writes the changelog of the range to the temporary file, newest commit first. When the
+     * changelog up to {@code previousTo} is reused, only the commits that are not reachable
+     * from it are walked and the previous changelog is appended. That is only the same as
+     * walking the whole range if none of the new commits is older than {@code previousTo}
+     * (otherwise the walk would list it after some of the previous commits), so in that case
+     * nothing is reused.
+     *
+     * @return The number of walked commits or {@code -1} if the previous changelog could not
+     *         be reused
+     */
+    private static long writeChangelog(
+            @Nonnull RevWalk walk,
+            @Nonnull RevCommit to,
+            @Nullable RevCommit from,
+            @Nullable RevCommit previousTo,
+            @Nonnull CommitPropertiesExtractor extractor,
+            @Nonnull String template,
+            @Nonnull File tmpFile,
+            @Nonnull File outputFile) throws IOException {
+        walk.reset();
+        walk.markStart(to);
+        if (from != null) {
+            walk.markUninteresting(from);
+        }
+        if (previousTo != null) {
+            walk.markUninteresting(previousTo);
+        }
+        long written = 0;
+        try (Writer writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+            for (RevCommit commit : walk) {
+                if (previousTo != null && commit.getCommitTime() < previousTo.getCommitTime()) {
+                    return -1;
+                }
+                writer.write(render(template, extractor.extract(commit)));
+                writer.write('\n');
+                written++;
+            }
+            if (previousTo != null) {
+                try (Reader reader =
+                         Files.newBufferedReader(outputFile.toPath(), StandardCharsets.UTF_8)) {
+                    transfer(reader, writer);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Finds the commit with the closest tag that does not point at the given commit itself.
+     * The distance is the same as for {@link GitDescribeValueSource}, so both agree.
+     */
+    @Nullable
+    private static RevCommit findClosestTaggedCommit(
+            @Nonnull RevWalk walk,
+            @Nonnull RevCommit to,
+            @Nonnull PeeledTagIndex tagIndex,
+            @Nonnull GitDescribeConfig describeConfig) throws IOException {
+        ClosestTag closest = ClosestTag.find(walk, to, false, tagIndex,
+            describeConfig.getMatch(), describeConfig.getTags());
+        return closest == null ? null : closest.getCommit();
+    }
+
+    /**
+     * Replaces all {@code ${name}} placeholders with the property of the same name.
+     * Placeholders of unknown properties are kept as they are.
+     */
+    static String render(@Nonnull String template, @Nonnull Map<String, String> properties) {
+        StringBuilder rendered = new StringBuilder(template.length() + 64);
+        int position = 0;
+        while (position < template.length()) {
+            int start = template.indexOf("${", position);
+            int end = start < 0 ? -1 : template.indexOf('}', start + 2);
+            if (end < 0) {
+                rendered.append(template, position, template.length());
+                break;
+            }
+            String value = properties.get(template.substring(start + 2, end));
+            rendered.append(template, position, start);
+            rendered.append(value == null ? template.substring(start, end + 1) : value);
+            position = end + 1;
+        }
+        return rendered.toString();
+    }
+
+    private static ObjectId resolveCommit(
+            @Nonnull Repository repository,
+            @Nonnull String revision) throws IOException, GitCommitIdExecutionException {
+        ObjectId objectId = repository.resolve(revision + "^{commit}");
+        if (objectId == null) {
+            throw new GitCommitIdExecutionException(
+                "Unable to resolve the revision '" + revision + "' to a commit");
+        }
+        return objectId;
+    }
+
+    private static String stateOf(@Nonnull File file) {
+        return file.isFile() ? file.lastModified() + ":" + file.length() : "";
+    }
+
+    private static void transfer(@Nonnull Reader reader, @Nonnull Writer writer)
+            throws IOException {
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) >= 0) {
+            writer.write(buffer, 0, read);
+        }
+    }
+
+    private static void moveAtomically(@Nonnull File source, @Nonnull File target)
+            throws IOException {
+        Files.createDirectories(target.getAbsoluteFile().getParentFile().toPath());
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Properties loadState(@Nonnull File stateFile) {
+        Properties state = new Properties();
+        if (stateFile.isFile()) {
+            try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+                state.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                getLogger().debug("Ignoring the unreadable changelog state {}", stateFile, e);
+                return new Properties();
+            }
+        }
+        return state;
+    }
+
+    private void saveState(@Nonnull File stateFile, @Nonnull Properties state) {
+        try (OutputStream out = Files.newOutputStream(stateFile.toPath())) {
+            state.store(out, null);
+        } catch (IOException e) {
+            getLogger().warn("Unable to store the changelog state {}: {}",
+                stateFile, e.getMessage());
+        }
+    }
+}
@@ -20,14 +20,15 @@ package io.github.git.commit.id.gradle.plugin;
 import groovy.lang.Closure;
 import java.io.File;
 import java.util.Map;
-import java.util.Properties;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.plugins.ExtensionAware;
 import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.JavaExec;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.SourceSetContainer;
 import org.gradle.api.tasks.TaskProvider;
+import org.gradle.api.tasks.testing.Test;
 import pl.project13.core.GitCommitIdExecutionException;
 import pl.project13.core.util.GenericFileManager;
 
@@ -75,6 +76,10 @@ import pl.project13.core.util.GenericFileManager;
 public class GitCommitIdPlugin implements Plugin<Project> {
     private static final class PropertyExposingClosure extends Closure<String> {
         private final GitCommitIdPluginGenerationTask task;
+        // Every project of the build might read the properties (e.g. when the plugin was
+        // applied by the GitCommitIdSettingsPlugin), so the file is only parsed once
+        private String cachedStamp;
+        private GitPropertiesSnapshot cachedProperties;
 
         public PropertyExposingClosure(Object owner, GitCommitIdPluginGenerationTask task) {
             super(owner, owner);
@@ -84,7 +89,7 @@ public class GitCommitIdPlugin implements Plugin<Project> {
         @Override
         public String toString() {
             StringBuilder s = new StringBuilder();
-            for (Map.Entry<Object, Object> e : getProps().entrySet()) {
+            for (Map.Entry<String, String> e : getProps().entrySet()) {
                 s.append(e.getValue());
                 s.append(":");
                 s.append(e.getKey());
@@ -93,19 +98,26 @@ public class GitCommitIdPlugin implements Plugin<Project> {
             return s.toString();
         }
 
-        private Properties getProps() {
+        private synchronized GitPropertiesSnapshot getProps() {
             try {
                 File outputFile = task.getOutput().getAsFile().getOrNull();
                 if (outputFile == null || !outputFile.exists()) {
                     // Return empty properties during configuration phase
                     // when file hasn't been generated yet
-                    return new Properties();
+                    return GitPropertiesSnapshot.empty();
                 }
-                final Properties p = GenericFileManager.readPropertiesAsUtf8(
-                    task.getGitCommitIdPluginOutputSettingsExtension().getOutputFormat().get(),
-                    outputFile
-                );
-                return p;
+                String stamp = outputFile.getPath() + ":" + outputFile.lastModified()
+                    + ":" + outputFile.length();
+                if (!stamp.equals(cachedStamp)) {
+                    cachedProperties = GitPropertiesSnapshot.of(
+                        GenericFileManager.readPropertiesAsUtf8(
+                            task.getGitCommitIdPluginOutputSettingsExtension()
+                                .getOutputFormat().get(),
+                            outputFile
+                        ));
+                    cachedStamp = stamp;
+                }
+                return cachedProperties;
             } catch (GitCommitIdExecutionException e) {
                 throw new RuntimeException(e);
             }
@@ -125,7 +137,7 @@ public class GitCommitIdPlugin implements Plugin<Project> {
         }
 
         public String doCall(String property) {
-            return (String) getProps().get(property);
+            return getProps().get(property);
         }
 
         // Do NOT IMPLEMENT!
@@ -133,11 +145,11 @@ public class GitCommitIdPlugin implements Plugin<Project> {
         // public String doCall(Object obj1, Object obj2) {
         // }
         public String get(String property) {
-            return (String) getProps().get(property);
+            return getProps().get(property);
         }
 
         public String get(String property, String defaultString) {
-            return (String) getProps().getOrDefault(property, defaultString);
+            return getProps().getOrDefault(property, defaultString);
         }
     }
 
@@ -173,26 +185,93 @@ public class GitCommitIdPlugin implements Plugin<Project> {
             GitCommitIdPluginGenerationTask.class,
             task -> task.onlyIf(ignore -> extension.getSkip().get() == false));
 
-        // React to external plugins
-        // See https://docs.gradle.org/current/userguide/implementing_gradle_plugins.html#reacting_to_plugins
-        project.getTasks().named(JavaPlugin.CLASSES_TASK_NAME).configure(
-            classesTask -> classesTask.dependsOn(taskProvider));
+        project.getTasks().register(
+            GitCommitIdBatchGenerationTask.NAME,
+            GitCommitIdBatchGenerationTask.class,
+            task -> task.onlyIf(ignore -> extension.getSkip().get() == false));
+        project.getTasks().register(
+            GitCommitIdChangelogTask.NAME,
+            GitCommitIdChangelogTask.class,
+            task -> task.onlyIf(ignore -> extension.getSkip().get() == false));
+        TaskProvider<GitCommitIdChangedProjectsTask> changedProjectsTaskProvider =
+            project.getTasks().register(
+                GitCommitIdChangedProjectsTask.NAME,
+                GitCommitIdChangedProjectsTask.class,
+                task -> task.onlyIf(ignore -> extension.getSkip().get() == false));
+        TaskProvider<GitCommitIdResourceTemplatesTask> resourceTemplatesTaskProvider =
+            project.getTasks().register(
+                GitCommitIdResourceTemplatesTask.NAME,
+                GitCommitIdResourceTemplatesTask.class,
+                task -> {
+                    task.onlyIf(ignore -> extension.getSkip().get() == false);
+                    task.getTemplatesDirectory().set(extension.getResourceTemplatesDirectory());
+                    task.getGitProperties().set(taskProvider.flatMap(
+                        GitCommitIdPluginGenerationTask::getNormalizedProperties));
+                    task.getOutputDirectory().convention(project.getLayout().getBuildDirectory()
+                        .dir("generated/resources/gitCommitIdTemplates"));
+                });
 
-        project.getPlugins().withType(JavaPlugin.class, javaPlugin -> {
-            // Configure processResources to include the generated git.properties
-            project.getTasks().named(JavaPlugin.PROCESS_RESOURCES_TASK_NAME).configure(
-                processResourcesTask -> {
-                    processResourcesTask.dependsOn(taskProvider);
-                    // Add the output directory as a source for resources
-                    processResourcesTask.getInputs().file(taskProvider.get().getOutput());
-                }
-            );
-        });
+        consumeProperties(project, extension, taskProvider);
+        project.getPlugins().withType(JavaPlugin.class, javaPlugin ->
+            project.getExtensions().getByType(SourceSetContainer.class)
+                .getByName(SourceSet.MAIN_SOURCE_SET_NAME).getResources().srcDir(
+                    resourceTemplatesTaskProvider.flatMap(
+                        GitCommitIdResourceTemplatesTask::getOutputDirectory)));
 
         // Expose the generated properties
         project
           .getExtensions()
           .getExtraProperties()
             .set("gitProperties", new PropertyExposingClosure(this, taskProvider.get()));
+        project
+          .getExtensions()
+          .getExtraProperties()
+            .set("gitNormalizedProperties", taskProvider.flatMap(
+                GitCommitIdPluginGenerationTask::getNormalizedProperties));
+        // Expose the changed projects (without realizing the task)
+        project
+          .getExtensions()
+          .getExtraProperties()
+            .set("gitChangedProjects", changedProjectsTaskProvider.flatMap(
+                GitCommitIdChangedProjectsTask::getChangedProjects));
+    }
+
+    /**
+     * Lets the given project consume the properties generated by the given task, which might
+     * belong to another project (e.g. the root project when the plugin was applied by the
+     * {@link GitCommitIdSettingsPlugin}): a java project packages the generated
+     * {@code git.properties} with its resources and the properties are injected into its
+     * forked JVMs (refer to {@link GitPropertiesInjection}).
+     *
+     * @param project The project that consumes the properties
+     * @param extension The configuration of the plugin
+     * @param taskProvider The task that generates the properties
+     */
+    static void consumeProperties(
+            Project project,
+            GitCommitIdPluginExtension extension,
+            TaskProvider<GitCommitIdPluginGenerationTask> taskProvider) {
+        // React to external plugins
+        // See https://docs.gradle.org/current/userguide/implementing_gradle_plugins.html#reacting_to_plugins
+        project.getPlugins().withType(JavaPlugin.class, javaPlugin -> {
+            // The root project of a build that applies the GitCommitIdSettingsPlugin
+            // is not necessarily a java project
+            project.getTasks().named(JavaPlugin.CLASSES_TASK_NAME).configure(
+                classesTask -> classesTask.dependsOn(taskProvider));
+
+            // Package the generated git.properties by registering the dedicated directory
+            // as resource directory. Mapping the task provider carries the task dependency
+            // to every consumer of the resources (e.g. processResources).
+            project.getExtensions().getByType(SourceSetContainer.class)
+                .getByName(SourceSet.MAIN_SOURCE_SET_NAME).getResources().srcDir(
+                    taskProvider.map(task -> task.getGitCommitIdPluginOutputSettingsExtension()
+                        .getGeneratedResourcesDirectory()));
+        });
+
+        // Inject the generated properties into forked JVMs (opt-in)
+        project.getTasks().withType(Test.class).configureEach(
+            task -> GitPropertiesInjection.configure(task, task, extension, taskProvider));
+        project.getTasks().withType(JavaExec.class).configureEach(
+            task -> GitPropertiesInjection.configure(task, task, extension, taskProvider));
     }
 }
\ No newline at end of file
@@ -17,8 +17,16 @@
 
 package io.github.git.commit.id.gradle.plugin;
 
+import java.util.Collections;
 import javax.inject.Inject;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.provider.ProviderFactory;
+import pl.project13.core.git.GitDescribeConfig;
 
 /**
  * The {@link GitCommitIdPlugin} comes with a sensible set of default configurations and settings.
@@ -71,6 +79,92 @@ public abstract class GitCommitIdPluginExtension {
      */
     public abstract Property<Boolean> getSkip();
 
+    /**
+     * Allows to inject the generated properties as system properties into the JVM that is
+     * forked by the {@code Test} or {@code JavaExec} tasks with the given names:
+     * <pre>
+     * gitCommitId {
+     *     injectIntoSysPropertiesOf.add('test')
+     * }
+     * </pre>
+     * The properties are then available via {@code System.getProperty("git.commit.id.full")}
+     * without reading the generated file from the classpath. The properties that change
+     * with every build (e.g. {@code git.build.time}) are not injected, so the tasks stay
+     * "up-to-date" and cacheable as long as the state of the git repository does not change.
+     *
+     * <p>By default this is empty.
+     */
+    public abstract ListProperty<String> getInjectIntoSysPropertiesOf();
+
+    /**
+     * Allows to inject the generated properties as environment variables into the process that
+     * is forked by the {@code Test} or {@code JavaExec} tasks with the given names.
+     * The names of the variables are derived from the names of the properties, e.g.
+     * {@code git.commit.id.full} is available as {@code GIT_COMMIT_ID_FULL}.
+     * Refer to {@link #getInjectIntoSysPropertiesOf()} for more details.
+     *
+     * <p>By default this is empty.
+     */
+    public abstract ListProperty<String> getInjectIntoEnvironmentOf();
+
+    /**
+     * Configuration option for the directory that contains resource templates. Every
+     * occurrence of a token like {@code ${git.commit.id.abbrev}} in these templates is
+     * replaced with the generated property of the same name by the
+     * {@link GitCommitIdResourceTemplatesTask} and the result is packaged along with the
+     * other resources of the {@code main} source set.
+     * Tokens that don't match a generated property are kept as they are.
+     *
+     * <p>Defaults to {@code src/main/resourceTemplates}, the task is skipped if the
+     * directory does not exist or is empty.
+     */
+    public abstract DirectoryProperty getResourceTemplatesDirectory();
+
+    @Inject
+    public ProjectLayout getProjectLayout() {
+        throw new IllegalStateException("Should have been injected!");
+    }
+
+    @Inject
+    public ProviderFactory getProviderFactory() {
+        throw new IllegalStateException("Should have been injected!");
+    }
+
+    /**
+     * Provides the {@code git describe} of the commit that is configured via
+     * {@link GitCommitIdPluginGitSettingsExtension#getEvaluateOnCommit()} while the build
+     * is still configured. This allows to derive the version of the project from git:
+     * <pre>
+     * version = gitCommitId.describeVersion.get()
+     * </pre>
+     * The options of the {@link GitCommitIdPluginGitSettingsExtension#getGitDescribeConfig()}
+     * are respected, except for the {@code dirty} marker which is never appended.
+     * The value is compatible with the configuration cache: the cached configuration is
+     * reused as long as the description did not change (refer to
+     * {@link GitDescribeValueSource}).
+     *
+     * <p>The provider has no value when there is no git repository (or
+     * {@code always} is disabled and no tag was found). Requires gradle 6.1 or later.
+     *
+     * @return The {@code git describe} of the commit
+     */
+    public Provider<String> getDescribeVersion() {
+        GitCommitIdPluginGitSettingsExtension gitSettings = ((ExtensionAware) this)
+            .getExtensions().getByType(GitCommitIdPluginGitSettingsExtension.class);
+        Provider<GitDescribeConfig> describeConfig = gitSettings.getGitDescribeConfig();
+        return getProviderFactory().of(GitDescribeValueSource.class, spec -> {
+            GitDescribeValueSource.Parameters parameters = spec.getParameters();
+            parameters.getDotGitDirectory().set(gitSettings.getDotGitDirectory());
+            parameters.getEvaluateOnCommit().set(gitSettings.getEvaluateOnCommit());
+            parameters.getTags().set(describeConfig.map(GitDescribeConfig::getTags));
+            parameters.getMatch().set(describeConfig.map(GitDescribeConfig::getMatch));
+            parameters.getAbbrev().set(describeConfig.map(GitDescribeConfig::getAbbrev));
+            parameters.getAlways().set(describeConfig.map(GitDescribeConfig::isAlways));
+            parameters.getForceLongFormat().set(
+                describeConfig.map(GitDescribeConfig::getForceLongFormat));
+        });
+    }
+
     /**
      * Setup the default values / conventions for the GitCommitIdPluginExtension.
      *
@@ -117,7 +211,10 @@ public abstract class GitCommitIdPluginExtension {
         getSkip().convention(false);
         // commitIdGenerationMode
         // replacementProperties
-        // injectIntoSysProperties
+        getResourceTemplatesDirectory().convention(
+            getProjectLayout().getProjectDirectory().dir("src/main/resourceTemplates"));
+        getInjectIntoSysPropertiesOf().convention(Collections.emptyList());
+        getInjectIntoEnvironmentOf().convention(Collections.emptyList());
         // projectBuildOutputTimestamp
     }
 }
@@ -18,21 +18,45 @@
 package io.github.git.commit.id.gradle.plugin;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.gradle.api.BuildCancelledException;
 import org.gradle.api.DefaultTask;
+import org.gradle.api.Project;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.plugins.ExtensionAware;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.CacheableTask;
-import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.InputFiles;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.PathSensitive;
@@ -42,9 +66,11 @@ import pl.project13.core.CommitIdGenerationMode;
 import pl.project13.core.CommitIdPropertiesOutputFormat;
 import pl.project13.core.GitCommitIdExecutionException;
 import pl.project13.core.GitCommitIdPlugin;
+import pl.project13.core.GitCommitPropertyConstant;
 import pl.project13.core.git.GitDescribeConfig;
 import pl.project13.core.log.LogInterface;
 import pl.project13.core.util.BuildFileChangeListener;
+import pl.project13.core.util.GenericFileManager;
 
 /**
  * The task that generates the "git" information.
@@ -61,6 +87,106 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
     public static final String NAME = "gitCommitIdGenerationTask";
     public static final String PLUGIN_EXECUTION_MESSAGE =
         "Executing GitCommitIdPlugin to gather relevant properties";
+    /**
+     * The value of all expensive properties that could not be computed
+     * within the time budget (refer to
+     * {@link GitCommitIdPluginGitSettingsExtension#getTimeBudgetInMs()}).
+     */
+    public static final String UNAVAILABLE_PROPERTY_VALUE = "unavailable";
+
+    /**
+     * Guards the collection per repository state (refer to {@link GitStateFingerprint}).
+     */
+    private static final StripedLocks COLLECTION_LOCKS = new StripedLocks(64);
+
+    /**
+     * The {@link #COLLECTION_LOCKS} that are still held by a collection that exceeded its
+     * time budget and did not stop within {@link #CANCELLATION_GRACE_PERIOD_MS}. Other
+     * collections don't wait for those (refer to {@link #lockUnlessAbandoned}).
+     */
+    private static final Set<ReentrantLock> ABANDONED_LOCKS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * How often a collection that waits for a lock checks whether it got cancelled or the
+     * lock was abandoned.
+     */
+    private static final long LOCK_POLL_INTERVAL_MS = 100L;
+
+    /**
+     * The time a cancelled collection is given to stop before the degraded collection starts.
+     */
+    private static final long CANCELLATION_GRACE_PERIOD_MS = 5_000L;
+
+    /**
+     * Properties (without prefix) that change with every build.
+     */
+    private static final List<String> VOLATILE_PROPERTIES = Collections.singletonList(
+        GitCommitPropertyConstant.BUILD_TIME);
+
+    /**
+     * Properties (without prefix) that require walking the history or the working tree.
+     */
+    private static final List<String> EXPENSIVE_PROPERTIES = Arrays.asList(
+        GitCommitPropertyConstant.DIRTY,
+        GitCommitPropertyConstant.COMMIT_DESCRIBE,
+        GitCommitPropertyConstant.COMMIT_SHORT_DESCRIBE,
+        GitCommitPropertyConstant.TAGS,
+        GitCommitPropertyConstant.CLOSEST_TAG_NAME,
+        GitCommitPropertyConstant.CLOSEST_TAG_COMMIT_COUNT,
+        GitCommitPropertyConstant.TOTAL_COMMIT_COUNT,
+        GitCommitPropertyConstant.LOCAL_BRANCH_AHEAD,
+        GitCommitPropertyConstant.LOCAL_BRANCH_BEHIND);
+
+    /**
+     * The properties that were generated by this task in the current build, if any.
+     */
+    private volatile GitPropertiesSnapshot publishedProperties;
+
+    private final ListProperty<String> gradleDirectories;
+
+    /**
+     * Setup the default values / conventions for the GitCommitIdPluginGenerationTask.
+     */
+    public GitCommitIdPluginGenerationTask() {
+        // Resolved from the build model while the task graph is built (and then stored by the
+        // configuration cache), the task action must not access other projects
+        Project rootProject = getProject().getRootProject();
+        gradleDirectories = getProject().getObjects().listProperty(String.class);
+        gradleDirectories.set(getProject().provider(() -> {
+            List<String> directories = new ArrayList<>();
+            for (Project project : rootProject.getAllprojects()) {
+                directories.add(
+                    project.getLayout().getBuildDirectory().get().getAsFile().getAbsolutePath());
+            }
+            File projectCacheDir = rootProject.getGradle().getStartParameter().getProjectCacheDir();
+            if (projectCacheDir == null) {
+                projectCacheDir = new File(rootProject.getRootDir(), ".gradle");
+            }
+            directories.add(projectCacheDir.getAbsolutePath());
+            return directories;
+        }));
+        gradleDirectories.finalizeValueOnRead();
+        getProject().getGradle().getTaskGraph().whenReady(graph -> {
+            if (graph.hasTask(this)) {
+                gradleDirectories.finalizeValue();
+            }
+        });
+    }
+
+    /**
+     * The build directories of all projects of the build and the {@code .gradle} directory,
+     * which are never considered by the dirty check
+     * (refer to {@link GitCommitIdPluginGitSettingsExtension#getDirtyCheckExcludes()}).
+     *
+     * <p>The value is resolved and finalized as soon as the task graph is ready, so the task
+     * action never has to look at other projects.
+     *
+     * @return The absolute paths of the directories gradle writes to
+     */
+    @Internal
+    public ListProperty<String> getGradleDirectories() {
+        return gradleDirectories;
+    }
 
     /**
      * The {@link GitCommitIdPluginExtension} that serves as configuration of the plugin / task.
@@ -97,19 +223,50 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
     }
 
     /**
-     * Since we are generating "git" information this task needs to specify the git-directory
-     * as input. The input can then be used by gradle to determine if the task is "up-to-date"
-     * or needs to re-run. As general expectation we can assume that the task should be "up-to-date"
-     * when there are no changes in the underlying git directory.
+     * The git directory that shall be used to generate the "git" information.
+     *
+     * <p>The directory itself is not an input of this task, since most of it is the object
+     * database that is modified by every {@code git fetch} or {@code git gc}.
+     * Refer to {@link #getGitStateFiles()} for the actual input.
      *
      * @return The git directory that shall be used to generate the "git" information
      */
-    @InputDirectory
-    @PathSensitive(PathSensitivity.RELATIVE)
+    @Internal
     public DirectoryProperty getInput() {
         return getGitCommitIdPluginGitSettingsExtension().getDotGitDirectory();
     }
 
+    /**
+     * Since we are generating "git" information this task needs to specify the git state
+     * as input. The input can then be used by gradle to determine if the task is "up-to-date"
+     * or needs to re-run (and by a continuous build {@code gradle -t} to determine when
+     * to re-build). As general expectation we can assume that the task should be "up-to-date"
+     * when there are no changes in the files of the git directory the properties are derived
+     * from: {@code HEAD}, the current ref and its upstream, the refs of the commit to evaluate
+     * ({@link GitCommitIdPluginGitSettingsExtension#getEvaluateOnCommit()}),
+     * {@code packed-refs}, the tags, the {@code index} and the {@code config}.
+     *
+     * @return The files of the git directory that are relevant for the "git" information
+     */
+    @InputFiles
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public FileCollection getGitStateFiles() {
+        return getProject().files((Callable<List<File>>) () -> {
+            File dotGitDirectory = getInput().get().getAsFile();
+            List<File> files = new ArrayList<>(GitStateFiles.of(dotGitDirectory,
+                getGitCommitIdPluginGitSettingsExtension().getEvaluateOnCommit().get()));
+            if (getGitCommitIdPluginGitSettingsExtension().getShouldCollectSubmodules().get()
+                    && dotGitDirectory.isDirectory()) {
+                try (Repository repository = RepositoryPool.acquire(dotGitDirectory)) {
+                    for (File gitDirectory : SubmoduleMetadata.gitDirectoriesOf(repository)) {
+                        files.addAll(GitStateFiles.of(gitDirectory));
+                    }
+                }
+            }
+            return files;
+        });
+    }
+
     /**
      * The plugin allows to generate a "properties" file. For gradle's "up-to-date" checks
      * we need to specify it as output. The file is optional, but gradle can handle that.
@@ -123,6 +280,49 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
         return getGitCommitIdPluginOutputSettingsExtension().getOutputFile();
     }
 
+    /**
+     * The generated properties without the properties that change with every build
+     * (e.g. {@code git.build.time}), in sorted order.
+     *
+     * <p>Other tasks can declare these properties as input and stay "up-to-date" (and can be
+     * loaded from the build cache) as long as the state of the git repository does not change,
+     * even though this task ran again. Using this provider as input also makes the consuming
+     * task depend on this task:
+     * <pre>
+     * tasks.register('writeManifest') {
+     *     def gitProperties = tasks.named('gitCommitIdGenerationTask')
+     *         .flatMap { it.normalizedProperties }
+     *     inputs.property('gitProperties', gitProperties)
+     *     doLast {
+     *         println gitProperties.get()['git.commit.id.full']
+     *     }
+     * }
+     * </pre>
+     *
+     * @return The normalized properties
+     */
+    @Internal
+    public Provider<Map<String, String>> getNormalizedProperties() {
+        return getOutput().map(file -> {
+            GitPropertiesSnapshot properties = publishedProperties;
+            if (properties == null) {
+                // The task was up-to-date (or loaded from the cache)
+                try {
+                    properties = GitPropertiesSnapshot.of(GenericFileManager.readPropertiesAsUtf8(
+                        getGitCommitIdPluginOutputSettingsExtension().getOutputFormat().get(),
+                        file.getAsFile()));
+                } catch (GitCommitIdExecutionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            String trimmedPrefix = getGitCommitIdPluginFormatSettingsExtension()
+                .getPropertyPrefix().get().trim();
+            String prefixDot = trimmedPrefix.equals("") ? "" : trimmedPrefix + ".";
+            return properties.without(key -> VOLATILE_PROPERTIES.contains(
+                key.substring(key.startsWith(prefixDot) ? prefixDot.length() : 0)));
+        });
+    }
+
     /**
      * The task action that ties it all together and runs the underlying logic of gathering the data
      * and exporting it to the relevant locations.
@@ -135,6 +335,13 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
     private void runThePlugin() {
         getLogger().debug(PLUGIN_EXECUTION_MESSAGE);
         GitCommitIdPluginExtension extension = getGitCommitIdPluginExtension();
+        GitCommitIdPluginGitSettingsExtension gitSettings =
+            getGitCommitIdPluginGitSettingsExtension();
+        RepositoryPool.configureWindowCache(
+            gitSettings.getPackedGitLimit().getOrNull(),
+            gitSettings.getPackedGitMmap().getOrNull(),
+            gitSettings.getDeltaBaseCacheLimit().getOrNull());
+        final boolean useNativeGit = resolveGitBackend(gitSettings) == GitBackend.NATIVE;
         boolean verbose = extension.getVerbose().get();
         final LogInterface log = new LogInterface() {
             @Override
@@ -173,7 +380,271 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
             }
         };
 
-        final GitCommitIdPlugin.Callback cb = new GitCommitIdPlugin.Callback() {
+        CancellableLogInterface cancellableLog = new CancellableLogInterface(log);
+        GitCommitIdPlugin.Callback cb = createCallback(cancellableLog, useNativeGit, true);
+        GitCommitIdPlugin.Callback sharedCb = createCallback(cancellableLog, useNativeGit, false);
+        // The lock the collection holds while it computes the shared properties, if any
+        AtomicReference<ReentrantLock> heldLock = new AtomicReference<>();
+        try {
+            try {
+                runWithinTimeBudget(
+                    cancellableLog,
+                    () -> collectProperties(cb, sharedCb, gitSettings, heldLock),
+                    gitSettings.getTimeBudgetInMs().get(),
+                    CANCELLATION_GRACE_PERIOD_MS,
+                    () -> abandon(heldLock));
+            } catch (TimeoutException e) {
+                String message = "Unable to extract the information from the git repository within "
+                    + gitSettings.getTimeBudgetInMs().get() + " ms";
+                if (gitSettings.getShouldFailOnUnableToExtractRepoInfo().get()) {
+                    throw new GitCommitIdExecutionException(message, e);
+                }
+                getLogger().warn("{}, expensive properties are marked as {}",
+                    message, UNAVAILABLE_PROPERTY_VALUE);
+                collectDegradedProperties(
+                    createCallback(new CancellableLogInterface(log), useNativeGit, true));
+            }
+        } catch (GitCommitIdExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Collects the properties with the given callback.
+     *
+     * <p>The properties that only depend on the repository state are shared between all
+     * executions (e.g. of many projects) with the same {@link GitStateFingerprint}: the first
+     * execution computes them with the {@code sharedCb} (which neither publishes nor persists
+     * anything) while the others wait, afterwards they're taken from the
+     * {@link GitPropertiesResultCache}. Only the properties of the working tree (e.g. dirty or
+     * describe), of the submodules and of the build are computed by every execution, in
+     * parallel.
+     */
+    private void collectProperties(
+            @Nonnull GitCommitIdPlugin.Callback cb,
+            @Nonnull GitCommitIdPlugin.Callback sharedCb,
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings,
+            @Nonnull AtomicReference<ReentrantLock> heldLock)
+            throws GitCommitIdExecutionException {
+        Properties properties = new Properties();
+        // The core only computes properties that are not yet present,
+        // so everything we can answer from our own caches is put in upfront.
+        GitStateFingerprint fingerprint = fingerprintOf(cb, gitSettings);
+        if (fingerprint == null) {
+            preloadCachedProperties(cb, gitSettings, properties);
+            preloadAheadBehindProperties(cb, gitSettings, properties);
+        } else {
+            GitPropertiesSnapshot sharedProperties = GitPropertiesResultCache.get(fingerprint);
+            if (sharedProperties == null) {
+                sharedProperties =
+                    collectSharedProperties(sharedCb, gitSettings, fingerprint, heldLock);
+            } else {
+                cb.getLogInterface().info("Reusing the properties computed for " + fingerprint);
+            }
+            properties.putAll(sharedProperties);
+        }
+        preloadDirtyProperty(cb, gitSettings, properties);
+        preloadSubmoduleProperties(cb, gitSettings, properties);
+        pl.project13.core.GitCommitIdPlugin.runPlugin(cb, properties);
+    }
+
+    /**
+     * Computes the properties that only depend on the given repository state, unless a
+     * parallel execution that held the lock of the fingerprint already did.
+     * The lock is published in {@code heldLock} while it is held.
+     */
+    private GitPropertiesSnapshot collectSharedProperties(
+            @Nonnull GitCommitIdPlugin.Callback sharedCb,
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings,
+            @Nonnull GitStateFingerprint fingerprint,
+            @Nonnull AtomicReference<ReentrantLock> heldLock)
+            throws GitCommitIdExecutionException {
+        ReentrantLock lock = COLLECTION_LOCKS.forKey(fingerprint);
+        boolean locked = lockUnlessAbandoned(
+            lock, (CancellableLogInterface) sharedCb.getLogInterface());
+        if (locked) {
+            heldLock.set(lock);
+        } else {
+            sharedCb.getLogInterface().info("Not waiting for the abandoned collection of "
+                + fingerprint + ", computing the properties again");
+        }
+        try {
+            GitPropertiesSnapshot sharedProperties = GitPropertiesResultCache.get(fingerprint);
+            if (sharedProperties != null) {
+                sharedCb.getLogInterface().info(
+                    "Reusing the properties computed for " + fingerprint);
+                return sharedProperties;
+            }
+            Properties properties = new Properties();
+            preloadCachedProperties(sharedCb, gitSettings, properties);
+            preloadAheadBehindProperties(sharedCb, gitSettings, properties);
+            // Skipped here, they are computed by every execution on its own
+            for (String property : GitPropertiesResultCache.WORKING_TREE_PROPERTIES) {
+                properties.setProperty(sharedCb.getPrefixDot() + property, "");
+            }
+            pl.project13.core.GitCommitIdPlugin.runPlugin(sharedCb, properties);
+            return GitPropertiesResultCache.put(fingerprint, sharedCb.getPrefixDot(), properties);
+        } finally {
+            if (locked) {
+                heldLock.set(null);
+                ABANDONED_LOCKS.remove(lock);
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for the given lock until it is acquired, the collection is cancelled or the
+     * lock turns out to be held by an abandoned collection.
+     *
+     * @return {@code true} if the lock was acquired, {@code false} if it was abandoned
+     */
+    private static boolean lockUnlessAbandoned(
+            @Nonnull ReentrantLock lock, @Nonnull CancellableLogInterface log) {
+        try {
+            while (!lock.tryLock(LOCK_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                log.checkCancelled();
+                if (ABANDONED_LOCKS.contains(lock)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The collection of the git properties was cancelled");
+        }
+    }
+
+    /**
+     * Marks the lock the abandoned collection still holds, so no other collection waits for
+     * it. The collection itself unmarks the lock once it eventually releases it.
+     */
+    private static void abandon(@Nonnull AtomicReference<ReentrantLock> heldLock) {
+        ReentrantLock lock = heldLock.get();
+        if (lock != null) {
+            ABANDONED_LOCKS.add(lock);
+            if (heldLock.get() != lock) {
+                // Released in the meantime
+                ABANDONED_LOCKS.remove(lock);
+            }
+        }
+    }
+
+    /**
+     * Only collects the cheap properties (e.g. the commit id or the branch),
+     * all expensive properties are marked as unavailable.
+     */
+    private void collectDegradedProperties(
+            @Nonnull GitCommitIdPlugin.Callback cb) throws GitCommitIdExecutionException {
+        Properties properties = new Properties();
+        for (String property : EXPENSIVE_PROPERTIES) {
+            String key = cb.getPrefixDot() + property;
+            if (isPropertyIncluded(cb, key)) {
+                properties.setProperty(key, UNAVAILABLE_PROPERTY_VALUE);
+            }
+        }
+        pl.project13.core.GitCommitIdPlugin.runPlugin(cb, properties);
+    }
+
+    /**
+     * Runs the given collection on a separate thread and waits at most for the given budget
+     * (a budget of 0 or less runs the collection directly).
+     * When the budget is exceeded or the build is cancelled the collection is cancelled
+     * cooperatively (refer to {@link CancellableLogInterface}) and its thread is interrupted.
+     * After the budget is exceeded the collection is given up to the grace period to actually
+     * stop, so it doesn't compete with the degraded collection that follows. A collection that
+     * is still blocked after that is abandoned: {@code onAbandoned} is run, and it can't
+     * publish or write anything anymore, since the cancelled callback refuses to.
+     */
+    static void runWithinTimeBudget(
+            @Nonnull CancellableLogInterface log,
+            @Nonnull Collection collection,
+            long timeBudgetInMs,
+            long gracePeriodInMs,
+            @Nonnull Runnable onAbandoned) throws GitCommitIdExecutionException, TimeoutException {
+        if (timeBudgetInMs <= 0) {
+            collection.run();
+            return;
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "git-commit-id-collector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<Void> future = executor.submit(() -> {
+                collection.run();
+                return null;
+            });
+            try {
+                future.get(timeBudgetInMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                log.cancel();
+                future.cancel(true);
+                executor.shutdownNow();
+                try {
+                    if (!executor.awaitTermination(gracePeriodInMs, TimeUnit.MILLISECONDS)) {
+                        onAbandoned.run();
+                    }
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw new BuildCancelledException(
+                        "The collection of the git properties was cancelled", interrupted);
+                }
+                throw e;
+            } catch (InterruptedException e) {
+                log.cancel();
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new BuildCancelledException(
+                    "The collection of the git properties was cancelled", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof GitCommitIdExecutionException) {
+                    throw (GitCommitIdExecutionException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new GitCommitIdExecutionException(cause.getMessage(), cause);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A collection of properties (refer to {@link #runWithinTimeBudget}).
+     */
+    @FunctionalInterface
+    interface Collection {
+        void run() throws GitCommitIdExecutionException;
+    }
+
+    /**
+     * Creates the callback for the core.
+     *
+     * @param publish Whether the properties are published and written to the output file,
+     *                {@code false} if they're only computed (e.g. to be cached)
+     */
+    private GitCommitIdPlugin.Callback createCallback(
+            @Nonnull CancellableLogInterface log,
+            boolean useNativeGit,
+            boolean publish) {
+        // The callback is used by the collector thread (refer to runWithinTimeBudget),
+        // so everything that needs the project is resolved upfront on the task thread
+        GitCommitIdPluginGitSettingsExtension gitSettings =
+            getGitCommitIdPluginGitSettingsExtension();
+        GitCommitIdPluginFormatSettingsExtension formatSettings =
+            getGitCommitIdPluginFormatSettingsExtension();
+        GitCommitIdPluginFilterSettingsExtension filterSettings =
+            getGitCommitIdPluginFilterSettingsExtension();
+        GitCommitIdPluginOutputSettingsExtension outputSettings =
+            getGitCommitIdPluginOutputSettingsExtension();
+        String projectVersion = projectVersionOf(getProject());
+        String projectName = getProject().getName();
+        File projectBaseDir = getProject().getRootDir();
+        return new GitCommitIdPlugin.Callback() {
             @Override
             public Map<String, String> getSystemEnv() {
                 return System.getenv();
@@ -181,7 +652,7 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
 
             @Override
             public Supplier<String> supplyProjectVersion() {
-                return () -> getProject().getVersion().toString();
+                return () -> projectVersion;
             }
 
             @Nonnull
@@ -193,34 +664,34 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
             @Nonnull
             @Override
             public String getDateFormat() {
-                return getGitCommitIdPluginFormatSettingsExtension()
+                return formatSettings
                     .getDateFormat().get();
             }
 
             @Nonnull
             @Override
             public String getDateFormatTimeZone() {
-                return getGitCommitIdPluginFormatSettingsExtension()
+                return formatSettings
                     .getDateFormatTimeZone().get();
             }
 
             @Nonnull
             @Override
             public String getPrefixDot() {
-                String trimmedPrefix = getGitCommitIdPluginFormatSettingsExtension()
+                String trimmedPrefix = formatSettings
                     .getPropertyPrefix().get().trim();
                 return trimmedPrefix.equals("") ? "" : trimmedPrefix + ".";
             }
 
             @Override
             public List<String> getExcludeProperties() {
-                return getGitCommitIdPluginFilterSettingsExtension()
+                return filterSettings
                     .getExcludeProperties().get();
             }
 
             @Override
             public List<String> getIncludeOnlyProperties() {
-                return getGitCommitIdPluginFilterSettingsExtension()
+                return filterSettings
                   .getIncludeOnlyProperties().get();
             }
 
@@ -233,22 +704,22 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
 
             @Override
             public boolean useNativeGit() {
-                return getGitCommitIdPluginGitSettingsExtension().getShouldUseNativeGit().get();
+                return useNativeGit;
             }
 
             @Override
             public long getNativeGitTimeoutInMs() {
-                return getGitCommitIdPluginGitSettingsExtension().getNativeGitTimeoutInMs().get();
+                return gitSettings.getNativeGitTimeoutInMs().get();
             }
 
             @Override
             public int getAbbrevLength() {
-                return getGitCommitIdPluginGitSettingsExtension().getAbbrevLength().get();
+                return gitSettings.getAbbrevLength().get();
             }
 
             @Override
             public GitDescribeConfig getGitDescribe() {
-                return getGitCommitIdPluginGitSettingsExtension().getGitDescribeConfig().get();
+                return gitSettings.getGitDescribeConfig().get();
             }
 
             @Override
@@ -258,48 +729,57 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
 
             @Override
             public boolean getUseBranchNameFromBuildEnvironment() {
-                return getGitCommitIdPluginGitSettingsExtension()
+                return gitSettings
                   .getShouldUseBranchNameFromBuildEnvironment().get();
             }
 
             @Override
             public boolean isOffline() {
-                return getGitCommitIdPluginGitSettingsExtension().getShouldStayOffline().get();
+                return gitSettings.getShouldStayOffline().get();
             }
 
             @Override
             public String getEvaluateOnCommit() {
-                return getGitCommitIdPluginGitSettingsExtension().getEvaluateOnCommit().get();
+                return gitSettings.getEvaluateOnCommit().get();
             }
 
             @Override
             public File getDotGitDirectory() {
-                return getGitCommitIdPluginGitSettingsExtension()
+                return gitSettings
                   .getDotGitDirectory().get().getAsFile();
             }
 
             @Override
             public boolean shouldGenerateGitPropertiesFile() {
+                log.checkCancelled();
                 // This plugin currently relies on the fact that the
                 // output properties file was generated.
                 // Otherwise, the properties are not exposed as
                 // extra project properties via the PropertyExposingClosure.
-                return true;
+                return publish;
             }
 
             @Override
             public void performPublishToAllSystemEnvironments(Properties properties) {
-                // TODO
+                log.checkCancelled();
+                if (!publish) {
+                    return;
+                }
+                // Keep the properties in memory for the consumers of this build
+                // (refer to getNormalizedProperties()), no need to read the file again
+                publishedProperties = GitPropertiesSnapshot.of(properties);
             }
 
             @Override
             public void performPropertiesReplacement(Properties properties) {
-                // TODO
+                log.checkCancelled();
+                // Resources are not filtered in place, the GitCommitIdResourceTemplatesTask
+                // replaces the tokens in the resource templates incrementally
             }
 
             @Override
             public CommitIdPropertiesOutputFormat getPropertiesOutputFormat() {
-                return getGitCommitIdPluginOutputSettingsExtension()
+                return outputSettings
                   .getOutputFormat()
                   .get();
             }
@@ -313,17 +793,17 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
 
             @Override
             public String getProjectName() {
-                return getProject().getName();
+                return projectName;
             }
 
             @Override
             public File getProjectBaseDir() {
-                return getProject().getRootDir();
+                return projectBaseDir;
             }
 
             @Override
             public File getGenerateGitPropertiesFile() {
-                return getGitCommitIdPluginOutputSettingsExtension()
+                return outputSettings
                   .getOutputFile()
                   .get().getAsFile();
             }
@@ -343,13 +823,13 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
 
             @Override
             public boolean shouldPropertiesEscapeUnicode() {
-                return getGitCommitIdPluginOutputSettingsExtension()
+                return outputSettings
                   .getShouldEscapedUnicodeForPropertiesOutput().get();
             }
 
             @Override
             public boolean shouldFailOnNoGitDirectory() {
-                return getGitCommitIdPluginGitSettingsExtension()
+                return gitSettings
                   .getShouldFailOnNoGitDirectory().get();
             }
 
@@ -359,27 +839,255 @@ public class GitCommitIdPluginGenerationTask extends DefaultTask {
                 return false;
             }
         };
+    }
 
+    private static String projectVersionOf(@Nonnull Project project) {
+        Object version = project.getVersion();
+        if (version instanceof Provider) {
+            // e.g. version = gitCommitId.describeVersion
+            version = ((Provider<?>) version).getOrNull();
+        }
+        return version == null ? Project.DEFAULT_VERSION : version.toString();
+    }
+
+    private GitBackend resolveGitBackend(
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings) {
+        GitBackend backend = gitSettings.getGitBackend().get();
+        if (backend != GitBackend.AUTO) {
+            return backend;
+        }
+        GitBackendSelector.Selection selection = GitBackendSelector.select(
+            gitSettings.getDotGitDirectory().get().getAsFile(), System.getenv());
+        getLogger().info(
+            "Selected the {} backend, reason: {}", selection.getBackend(), selection.getReason());
+        return selection.getBackend();
+    }
+
+    @Nullable
+    private static GitStateFingerprint fingerprintOf(
+            @Nonnull GitCommitIdPlugin.Callback cb,
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings) {
+        File dotGitDirectory = cb.getDotGitDirectory();
+        if (!cb.isOffline() || dotGitDirectory == null || !dotGitDirectory.isDirectory()) {
+            // When online the result also depends on the state of the remote
+            return null;
+        }
+        String settings = String.join("|",
+            cb.getPrefixDot(),
+            cb.getDateFormat(),
+            cb.getDateFormatTimeZone(),
+            String.valueOf(cb.getAbbrevLength()),
+            gitSettings.getAbbreviationMode().get().name(),
+            String.valueOf(gitSettings.getAheadBehindMaxDepth().get()),
+            String.valueOf(cb.getGitDescribe()),
+            cb.getEvaluateOnCommit(),
+            String.valueOf(cb.useNativeGit()),
+            String.valueOf(cb.getUseBranchNameFromBuildEnvironment()),
+            String.valueOf(cb.getIncludeOnlyProperties()),
+            String.valueOf(cb.getExcludeProperties()),
+            // The branch might be taken from the environment of the build
+            String.valueOf(cb.getSystemEnv().hashCode()));
         try {
-            Properties properties = new Properties();
-            pl.project13.core.GitCommitIdPlugin.runPlugin(cb, properties);
-            // When we want to use it as TaskInput or something,
-            // it should be convert to a hashmap, excluding build_time
-            /*
-            var prefix = getGitCommitIdPluginFormatSettingsExtension().getPropertyPrefix().get();
-            HashMap<String, String> hm = new HashMap<>();
-            for (Map.Entry<Object, Object> e : properties.entrySet()) {
-                String key = (String) e.getKey();
-                // DO NOT EXPOSE BUILD_TIME, otherwise up-to-date checks will not work
-                if (key.startsWith(prefix) && key.endsWith(GitCommitPropertyConstant.BUILD_TIME)) {
-                    hm.put(key, "");
-                } else {
-                    hm.put(key, (String) e.getValue());
+            GitStateFingerprint fingerprint = GitStateFingerprint.of(dotGitDirectory, settings);
+            if (fingerprint.isRacy()) {
+                cb.getLogInterface().info(
+                    "The repository was modified too recently to reuse cached properties");
+                return null;
+            }
+            return fingerprint;
+        } catch (IOException e) {
+            cb.getLogInterface().warn(
+                "Unable to fingerprint the repository state: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void preloadCachedProperties(
+            @Nonnull GitCommitIdPlugin.Callback cb,
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings,
+            @Nonnull Properties properties) {
+        File dotGitDirectory = cb.getDotGitDirectory();
+        if (dotGitDirectory == null || !dotGitDirectory.isDirectory()) {
+            return;
+        }
+        String totalCommitCountKey =
+            cb.getPrefixDot() + GitCommitPropertyConstant.TOTAL_COMMIT_COUNT;
+        String tagsKey = cb.getPrefixDot() + GitCommitPropertyConstant.TAGS;
+        String abbrevKey = cb.getPrefixDot() + GitCommitPropertyConstant.COMMIT_ID_ABBREV;
+        AbbreviationMode abbreviationMode = gitSettings.getAbbreviationMode().get();
+        boolean preloadTotalCommitCount = isPropertyIncluded(cb, totalCommitCountKey);
+        boolean preloadTags = isPropertyIncluded(cb, tagsKey);
+        boolean preloadAbbrev = abbreviationMode != AbbreviationMode.OBJECT_DATABASE
+            && isPropertyIncluded(cb, abbrevKey);
+        if (!preloadTotalCommitCount && !preloadTags && !preloadAbbrev) {
+            return;
+        }
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory)) {
+            ObjectId commitId = repository.resolve(cb.getEvaluateOnCommit() + "^{commit}");
+            if (commitId == null) {
+                return;
+            }
+            if (preloadTotalCommitCount) {
+                TotalCommitCountCache cache = TotalCommitCountCache.load(
+                    new File(getTemporaryDir(), "total-commit-count.cache"));
+                properties.setProperty(
+                    totalCommitCountKey,
+                    String.valueOf(cache.count(repository, commitId)));
+                cache.save();
+            }
+            if (preloadTags) {
+                properties.setProperty(
+                    tagsKey,
+                    String.join(",", PeeledTagIndex.forRepository(repository)
+                        .tagsPointingAt(commitId)));
+            }
+            if (preloadAbbrev) {
+                properties.setProperty(abbrevKey, CommitIdAbbreviation.abbreviate(
+                    repository, commitId, cb.getAbbrevLength(), abbreviationMode));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Let the core compute the properties the regular way
+            cb.getLogInterface().warn(
+                "Unable to preload properties from the caches: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Counts {@code git.local.branch.ahead} and {@code git.local.branch.behind} from the local
+     * remote-tracking refs with the bounded {@link AheadBehindCounter} instead of the
+     * unbounded walk of the core (which might also fetch from the remote).
+     */
+    private void preloadAheadBehindProperties(
+            @Nonnull GitCommitIdPlugin.Callback cb,
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings,
+            @Nonnull Properties properties) {
+        File dotGitDirectory = cb.getDotGitDirectory();
+        String aheadKey = cb.getPrefixDot() + GitCommitPropertyConstant.LOCAL_BRANCH_AHEAD;
+        String behindKey = cb.getPrefixDot() + GitCommitPropertyConstant.LOCAL_BRANCH_BEHIND;
+        int maxDepth = gitSettings.getAheadBehindMaxDepth().get();
+        if (maxDepth <= 0 || dotGitDirectory == null || !dotGitDirectory.isDirectory()
+                || !"HEAD".equals(cb.getEvaluateOnCommit())
+                || (!isPropertyIncluded(cb, aheadKey) && !isPropertyIncluded(cb, behindKey))) {
+            return;
+        }
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory)) {
+            AheadBehindCounter.AheadBehind aheadBehind =
+                AheadBehindCounter.of(repository, maxDepth);
+            properties.setProperty(aheadKey, aheadBehind.getAhead());
+            properties.setProperty(behindKey, aheadBehind.getBehind());
+        } catch (IOException | RuntimeException e) {
+            // Let the core compute the properties the regular way
+            cb.getLogInterface().warn(
+                "Unable to count the commits ahead and behind the upstream: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Determines {@code git.dirty} with the parallel {@link WorkingTreeDirtyCheck} instead of
+     * the sequential status of the core (the native implementation is fast enough on its own).
+     */
+    private void preloadDirtyProperty(
+            @Nonnull GitCommitIdPlugin.Callback cb,
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings,
+            @Nonnull Properties properties) {
+        File dotGitDirectory = cb.getDotGitDirectory();
+        String dirtyKey = cb.getPrefixDot() + GitCommitPropertyConstant.DIRTY;
+        if (cb.useNativeGit() || dotGitDirectory == null || !dotGitDirectory.isDirectory()
+                || !isPropertyIncluded(cb, dirtyKey)) {
+            return;
+        }
+        int parallelism = gitSettings.getDirtyCheckParallelism().get();
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory)) {
+            List<String> excludes = new ArrayList<>(gitSettings.getDirtyCheckExcludes().get());
+            excludes.addAll(gradleDirectoriesBelow(repository.getWorkTree()));
+            PathPatternFilter filter =
+                PathPatternFilter.of(gitSettings.getDirtyCheckIncludes().get(), excludes);
+            properties.setProperty(dirtyKey, String.valueOf(
+                WorkingTreeDirtyCheck.isDirty(repository, parallelism, filter)));
+        } catch (IOException | RuntimeException e) {
+            // Let the core compute the property the regular way
+            cb.getLogInterface().warn(
+                "Unable to check the working tree for changes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the properties of all submodules (refer to {@link SubmoduleMetadata}).
+     */
+    private void preloadSubmoduleProperties(
+            @Nonnull GitCommitIdPlugin.Callback cb,
+            @Nonnull GitCommitIdPluginGitSettingsExtension gitSettings,
+            @Nonnull Properties properties) {
+        File dotGitDirectory = cb.getDotGitDirectory();
+        if (!gitSettings.getShouldCollectSubmodules().get()
+                || dotGitDirectory == null || !dotGitDirectory.isDirectory()) {
+            return;
+        }
+        String commitIdKey = cb.getCommitIdGenerationMode() == CommitIdGenerationMode.FULL
+            ? GitCommitPropertyConstant.COMMIT_ID_FULL : GitCommitPropertyConstant.COMMIT_ID_FLAT;
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory)) {
+            List<SubmoduleMetadata.Submodule> submodules = SubmoduleMetadata.collect(
+                repository,
+                cb.getAbbrevLength(),
+                gitSettings.getAbbreviationMode().get(),
+                gitSettings.getDirtyCheckParallelism().get());
+            for (SubmoduleMetadata.Submodule submodule : submodules) {
+                String prefix = cb.getPrefixDot() + SubmoduleMetadata.PROPERTIES_PREFIX
+                    + submodule.getPath() + ".";
+                properties.setProperty(prefix + commitIdKey, submodule.getCommitId());
+                if (submodule.isCheckedOut()) {
+                    properties.setProperty(
+                        prefix + GitCommitPropertyConstant.COMMIT_ID_ABBREV,
+                        submodule.getAbbreviatedCommitId());
+                    properties.setProperty(
+                        prefix + GitCommitPropertyConstant.BRANCH, submodule.getBranch());
+                    properties.setProperty(
+                        prefix + GitCommitPropertyConstant.DIRTY,
+                        String.valueOf(submodule.getDirty()));
                 }
             }
-             */
-        } catch (GitCommitIdExecutionException e) {
-            throw new RuntimeException(e);
+        } catch (IOException | RuntimeException e) {
+            cb.getLogInterface().warn(
+                "Unable to collect the properties of the submodules: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The build directories of all projects of the build and the {@code .gradle} directory
+     * as patterns relative to the given working tree.
+     */
+    private List<String> gradleDirectoriesBelow(@Nonnull File workTree) {
+        Path root = workTree.toPath().toAbsolutePath().normalize();
+        List<String> patterns = new ArrayList<>();
+        for (String directory : getGradleDirectories().get()) {
+            Path path = new File(directory).toPath().toAbsolutePath().normalize();
+            if (path.startsWith(root) && !path.equals(root)) {
+                // The leading slash anchors the pattern at the root of the working tree
+                patterns.add(
+                    "/" + root.relativize(path).toString().replace(File.separatorChar, '/'));
+            }
+        }
+        return patterns;
+    }
+
+    private static boolean isPropertyIncluded(
+            @Nonnull GitCommitIdPlugin.Callback cb,
+            @Nonnull String key) {
+        return isPropertyIncluded(cb.getIncludeOnlyProperties(), cb.getExcludeProperties(), key);
+    }
+
+    /**
+     * Applies the same semantics as the core to decide if a property should be generated
+     * (refer to {@link GitCommitIdPluginFilterSettingsExtension}).
+     */
+    static boolean isPropertyIncluded(
+            @Nullable List<String> includeOnlyProperties,
+            @Nullable List<String> excludeProperties,
+            @Nonnull String key) {
+        if (includeOnlyProperties != null && !includeOnlyProperties.isEmpty()
+                && includeOnlyProperties.stream().noneMatch(key::matches)) {
+            return false;
         }
+        return excludeProperties == null || excludeProperties.stream().noneMatch(key::matches);
     }
 }
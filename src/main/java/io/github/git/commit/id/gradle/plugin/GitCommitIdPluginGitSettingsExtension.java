@@ -18,9 +18,11 @@
 package io.github.git.commit.id.gradle.plugin;
 
 
+import java.util.Collections;
 import javax.inject.Inject;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.ProjectLayout;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import pl.project13.core.git.GitDescribeConfig;
 
@@ -106,6 +108,23 @@ public abstract class GitCommitIdPluginGitSettingsExtension {
      */
     public abstract Property<Integer> getAbbrevLength();
 
+    /**
+     * Allows to configure how the plugin makes sure that the abbreviated commit id
+     * (refer to {@link #getAbbrevLength()}) is unique, which requires to probe the object
+     * database and gets more expensive with many packs and loose objects:
+     * <ul>
+     *     <li>{@link AbbreviationMode#OBJECT_DATABASE} probes the whole object database</li>
+     *     <li>{@link AbbreviationMode#PACK_INDEX} only looks up the neighbours of the commit
+     *     in the pack indexes and caches the result</li>
+     *     <li>{@link AbbreviationMode#UNCHECKED} does not check the uniqueness at all</li>
+     * </ul>
+     *
+     * <p>Applies to {@code git.commit.id.abbrev}.
+     *
+     * <p>By default this is set to {@link AbbreviationMode#OBJECT_DATABASE}.
+     */
+    public abstract Property<AbbreviationMode> getAbbreviationMode();
+
     /**
      * Control whether the plugin should fail when a .git directory cannot be found.
      * The directory can be configured by {@link #getDotGitDirectory()}.
@@ -137,9 +156,33 @@ public abstract class GitCommitIdPluginGitSettingsExtension {
      *
      * <p>To not get your build stuck forever, this plugin also has an option to configure a
      * maximum timeout to wait for any native command. Refer to {@link #getNativeGitTimeoutInMs()}.
+     *
+     * <p>If you are unsure which implementation fits your repository best, refer to
+     * {@link #getGitBackend()} which also allows the plugin to choose for you.
      */
     public abstract Property<Boolean> getShouldUseNativeGit();
 
+    /**
+     * Allows to configure which implementation should be used to obtain the information from
+     * the git repository. This is a more flexible version of {@link #getShouldUseNativeGit()}:
+     * <ul>
+     *     <li>{@link GitBackend#JGIT} uses the custom {@code jgit} implementation</li>
+     *     <li>{@link GitBackend#NATIVE} uses the native {@code git} binary</li>
+     *     <li>{@link GitBackend#AUTO} lets the plugin choose</li>
+     * </ul>
+     *
+     * <p>Neither implementation is the fastest everywhere. The native {@code git} binary usually
+     * wins for huge working trees (especially when {@code core.fsmonitor} is enabled) and
+     * large histories, whereas {@code jgit} wins for small repositories where spawning processes
+     * dominates. With {@link GitBackend#AUTO} the plugin estimates the characteristics of your
+     * repository (number of index entries, size of the packs, number of refs and whether a
+     * {@code git} binary is available at all) and chooses the implementation that is expected
+     * to be faster. The choice and its reason are logged (run gradle with {@code --info}).
+     *
+     * <p>By default this follows {@link #getShouldUseNativeGit()}.
+     */
+    public abstract Property<GitBackend> getGitBackend();
+
 
     /**
      * Allow to tell the plugin what commit should be used as reference to
@@ -167,9 +210,25 @@ public abstract class GitCommitIdPluginGitSettingsExtension {
      * executable ({@link #getShouldUseNativeGit()} is set to {@code true}).
      *
      * <p>By default this timeout is set to 30000 (30 seconds).
+     * To limit the time spent for the whole collection refer to {@link #getTimeBudgetInMs()}.
      */
     public abstract Property<Long> getNativeGitTimeoutInMs();
 
+    /**
+     * Allow to specify the maximum time (in milliseconds) the plugin may spend for gathering
+     * the information from the git repository, regardless of the used implementation.
+     *
+     * <p>Once the budget is exhausted the collection is cancelled. If
+     * {@link #getShouldFailOnUnableToExtractRepoInfo()} is set to {@code true} the build fails,
+     * otherwise only the cheap properties (e.g. the commit id or the branch) are generated
+     * and all properties that require walking the history or the working tree
+     * (e.g. {@code git.dirty}, {@code git.commit.id.describe} or {@code git.tags})
+     * are set to {@code unavailable}.
+     *
+     * <p>By default this is set to 0 which means there is no time budget.
+     */
+    public abstract Property<Long> getTimeBudgetInMs();
+
     /**
      * The plugin can generate certain properties that represents the count of commits
      * that your local branch is ahead or behind in perspective to the remote branch.
@@ -185,6 +244,8 @@ public abstract class GitCommitIdPluginGitSettingsExtension {
      * Certainly a {@code git fetch} is an operation that may alter your local git repository
      * and thus the plugin will operate not perform such operation (offline is set to {@code true}).
      * If you however desire more accurate properties you may want to set this to {@code false}.
+     * Note that no fetch is performed when the bounded computation of the plugin is
+     * enabled (refer to {@link #getAheadBehindMaxDepth()}).
      *
      * <p>When enabled the "up-to-date" checking might not work correctly anymore.
      * A git fetch might update the state of the dotGitDir and since this
@@ -193,6 +254,23 @@ public abstract class GitCommitIdPluginGitSettingsExtension {
      */
     public abstract Property<Boolean> getShouldStayOffline();
 
+    /**
+     * Allows to bound the number of commits that are counted for
+     * {@code git.local.branch.ahead} and {@code git.local.branch.behind}, which avoids walking
+     * the whole history of long-lived branches.
+     *
+     * <p>When set to a positive value, a branch that is further away from its upstream than
+     * that many commits reports the count with a trailing {@code +}, e.g. {@code 1000+}
+     * (the properties are no plain numbers anymore).
+     * The counts are computed from the local remote-tracking refs
+     * (e.g. {@code refs/remotes/origin/main}) and the remote is never fetched from,
+     * even if {@link #getShouldStayOffline()} is set to {@code false}.
+     *
+     * <p>By default this is set to 0 which means the counts are computed without bound
+     * (and with the fetch configured by {@link #getShouldStayOffline()}).
+     */
+    public abstract Property<Integer> getAheadBehindMaxDepth();
+
     /**
      * When set to {@code true} this plugin will try to use the branch name from build environment.
      * Set to {@code false} to use JGit/GIT to get current branch name which can be useful
@@ -203,6 +281,133 @@ public abstract class GitCommitIdPluginGitSettingsExtension {
      */
     public abstract Property<Boolean> getShouldUseBranchNameFromBuildEnvironment();
 
+    /**
+     * The {@code jgit} implementation keeps (parts of) the pack files of a repository
+     * in memory. This setting allows to configure the maximum number of bytes of
+     * pack files that are held in memory.
+     * Please note that this setting applies to all repositories
+     * accessed with {@code jgit} inside the same gradle daemon.
+     *
+     * <p>Only applies when the {@code jgit} implementation is used
+     * (refer to {@link #getShouldUseNativeGit()}).
+     *
+     * <p>By default this is not set and the default of {@code jgit} is used.
+     */
+    public abstract Property<Long> getPackedGitLimit();
+
+    /**
+     * Control whether the {@code jgit} implementation should access pack files
+     * via memory mapping instead of reading them into the heap.
+     * Memory mapping can make access to large repositories faster, but might not be
+     * supported equally well by every platform.
+     * Please note that this setting applies to all repositories
+     * accessed with {@code jgit} inside the same gradle daemon.
+     *
+     * <p>Only applies when the {@code jgit} implementation is used
+     * (refer to {@link #getShouldUseNativeGit()}).
+     *
+     * <p>By default this is not set and the default of {@code jgit} is used.
+     */
+    public abstract Property<Boolean> getPackedGitMmap();
+
+    /**
+     * Objects in pack files are often stored as deltas against other objects.
+     * This setting allows to configure the maximum number of bytes the {@code jgit}
+     * implementation may use to cache such delta bases, which can speed up
+     * walking the history of large repositories.
+     * Please note that this setting applies to all repositories
+     * accessed with {@code jgit} inside the same gradle daemon.
+     *
+     * <p>Only applies when the {@code jgit} implementation is used
+     * (refer to {@link #getShouldUseNativeGit()}).
+     *
+     * <p>By default this is not set and the default of {@code jgit} is used.
+     */
+    public abstract Property<Integer> getDeltaBaseCacheLimit();
+
+    /**
+     * Allows to configure the number of threads that are used to hash the content of files
+     * for {@code git.dirty}. Hashing is only needed when the timestamps recorded in the
+     * {@code index} can't be trusted, which is typically the case for the first build after
+     * a fresh checkout (e.g. on CI or on container volume mounts).
+     * Set this to {@code 1} to hash all files on a single thread.
+     * This also limits how many submodules are inspected concurrently
+     * (refer to {@link #getShouldCollectSubmodules()}).
+     *
+     * <p>Only applies when the {@code jgit} implementation is used
+     * (refer to {@link #getShouldUseNativeGit()}).
+     *
+     * <p>By default this is set to the number of available processors.
+     */
+    public abstract Property<Integer> getDirtyCheckParallelism();
+
+    /**
+     * Allows to restrict {@code git.dirty} to changes of certain paths, e.g. to the sources:
+     * <pre>
+     * gitCommitId {
+     *     gitSettings {
+     *         dirtyCheckIncludes.add('src/**')
+     *     }
+     * }
+     * </pre>
+     * The patterns are relative to the root of the working tree and follow the conventions of
+     * {@code .gitignore} (refer to {@link #getDirtyCheckExcludes()}). Directories that can't
+     * contain any matching path are never read.
+     *
+     * <p>Only applies when the {@code jgit} implementation is used
+     * (refer to {@link #getShouldUseNativeGit()}).
+     *
+     * <p>By default this is empty which means all paths are considered.
+     */
+    public abstract ListProperty<String> getDirtyCheckIncludes();
+
+    /**
+     * Allows to exclude paths from {@code git.dirty}, e.g. huge generated directories that are
+     * not ignored by git:
+     * <pre>
+     * gitCommitId {
+     *     gitSettings {
+     *         dirtyCheckExcludes.addAll('node_modules/', 'generated/**')
+     *     }
+     * }
+     * </pre>
+     * The patterns follow the conventions of {@code .gitignore}: {@code *} matches
+     * anything but a {@code /}, {@code **} matches across directories and a pattern without
+     * a {@code /} matches on any level. Excluded directories are never read. The build
+     * directories of all gradle projects (and the {@code .gradle} directory of the build)
+     * are always excluded.
+     *
+     * <p>Only applies when the {@code jgit} implementation is used
+     * (refer to {@link #getShouldUseNativeGit()}).
+     *
+     * <p>By default this is empty.
+     */
+    public abstract ListProperty<String> getDirtyCheckExcludes();
+
+    /**
+     * Allows to generate the commit id, the branch and the dirty state of every submodule
+     * of the repository, without configuring the plugin once per submodule:
+     * <pre>
+     * git.submodules.libs/core.commit.id.full=...
+     * git.submodules.libs/core.commit.id.abbrev=...
+     * git.submodules.libs/core.branch=...
+     * git.submodules.libs/core.dirty=false
+     * </pre>
+     * The submodules are discovered from the {@code index} and {@code .gitmodules} and
+     * are inspected in parallel (refer to {@link #getDirtyCheckParallelism()}).
+     * A submodule that is not checked out only reports the commit recorded in the repository.
+     * Nested submodules are not considered.
+     *
+     * <p>While the commit id and the branch of a submodule are only read again when its
+     * {@code HEAD} or refs changed, the working tree of every checked out submodule is
+     * scanned on every run to determine its dirty state. Editing a file changes neither
+     * the refs nor the {@code index}, so there is nothing cheaper the result could be cached
+     * by. Every submodule therefore costs about as much as a {@code git status} in it.
+     *
+     * <p>By default this is set to {@code false}.
+     */
+    public abstract Property<Boolean> getShouldCollectSubmodules();
+
     @Inject
     public ProjectLayout getProjectLayout() {
         throw new IllegalStateException("Should have been injected!");
@@ -217,12 +422,21 @@ public abstract class GitCommitIdPluginGitSettingsExtension {
             getProjectLayout().getProjectDirectory().dir(".git"));
         getGitDescribeConfig().convention(new GitDescribeConfig());
         getAbbrevLength().convention(7);
+        getAbbreviationMode().convention(AbbreviationMode.OBJECT_DATABASE);
         getShouldFailOnNoGitDirectory().convention(true);
         getShouldFailOnUnableToExtractRepoInfo().convention(true);
         getShouldUseNativeGit().convention(false);
+        getGitBackend().convention(getShouldUseNativeGit()
+            .map(useNativeGit -> useNativeGit ? GitBackend.NATIVE : GitBackend.JGIT));
         getEvaluateOnCommit().convention("HEAD");
         getNativeGitTimeoutInMs().convention(30000L);
+        getTimeBudgetInMs().convention(0L);
+        getDirtyCheckParallelism().convention(Runtime.getRuntime().availableProcessors());
+        getDirtyCheckIncludes().convention(Collections.emptyList());
+        getDirtyCheckExcludes().convention(Collections.emptyList());
+        getShouldCollectSubmodules().convention(false);
         getShouldStayOffline().convention(true);
+        getAheadBehindMaxDepth().convention(0);
         getShouldUseBranchNameFromBuildEnvironment().convention(true);
     }
 }
@@ -19,6 +19,7 @@ package io.github.git.commit.id.gradle.plugin;
 
 
 import javax.inject.Inject;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.ProjectLayout;
 import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.Property;
@@ -49,7 +50,7 @@ public abstract class GitCommitIdPluginOutputSettingsExtension {
      * <pre>
      * gitCommitId {
      *     outputSettings {
-     *         outputFile.set(project.getLayout().buildDirectory.file("git.properties"))
+     *         outputFile.set(generatedResourcesDirectory.file("git.properties"))
      *     }
      * }
      * </pre>
@@ -60,7 +61,8 @@ public abstract class GitCommitIdPluginOutputSettingsExtension {
 
     /**
      * Configuration location of an output file that can be generated by the plugin.
-     * Defaults to {@code ${project.getBuildDir()}/git.properties}, formatted as "properties" file.
+     * Defaults to {@code git.properties} inside the {@link #getGeneratedResourcesDirectory()},
+     * formatted as "properties" file.
      *
      * <p>To configure the format (json, properties, ...)
      * of this file refer to {@link #getOutputFormat()}.
@@ -74,6 +76,20 @@ public abstract class GitCommitIdPluginOutputSettingsExtension {
     // extra project properties via the PropertyExposingClosure.
     // So the switch shouldGenerateOutputFile is intentionally missing!
 
+    /**
+     * Configuration location of the directory that contains the generated resources.
+     * When the {@code java} plugin is applied this directory is registered as resource
+     * directory of the {@code main} source set, hence the generated {@link #getOutputFile()}
+     * is packaged (e.g. into the jar) when it's located inside this directory.
+     *
+     * <p>Since the directory only contains the generated files, a new commit only changes
+     * a single entry of the processed resources, the remaining resources of the project
+     * are not affected.
+     *
+     * <p>Defaults to {@code ${project.getBuildDir()}/generated/resources/gitCommitId}.
+     */
+    public abstract DirectoryProperty getGeneratedResourcesDirectory();
+
     /**
      * Configuration option to enable or disable unicode escaping in the generated properties file.
      *
@@ -117,8 +133,9 @@ public abstract class GitCommitIdPluginOutputSettingsExtension {
      */
     @Inject
     public GitCommitIdPluginOutputSettingsExtension() {
-        getOutputFile().convention(
-            getProjectLayout().getBuildDirectory().file("git.properties"));
+        getGeneratedResourcesDirectory().convention(
+            getProjectLayout().getBuildDirectory().dir("generated/resources/gitCommitId"));
+        getOutputFile().convention(getGeneratedResourcesDirectory().file("git.properties"));
         getShouldEscapedUnicodeForPropertiesOutput().convention(false);
         getOutputFormat()
             .convention(CommitIdPropertiesOutputFormat.PROPERTIES);
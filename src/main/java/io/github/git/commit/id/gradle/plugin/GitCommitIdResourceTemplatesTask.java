@@ -0,0 +1,229 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SkipWhenEmpty;
+import org.gradle.api.tasks.TaskAction;
+import pl.project13.core.GitCommitIdExecutionException;
+
+/**
+ * The task that replaces tokens like {@code ${git.commit.id.abbrev}} in resource templates
+ * with the generated properties (refer to
+ * {@link GitCommitIdPluginExtension#getResourceTemplatesDirectory()}).
+ *
+ * <p>The templates are streamed through a {@link TokenReplacingReader}, so only a
+ * constant amount of memory is used per file. The task keeps track of the templates it
+ * processed: templates that did not change are not processed again and when only the
+ * properties changed (e.g. after a new commit) only the templates that contain a
+ * <code>${</code> token (of a known property or not) are processed again. All templates are
+ * read and written as {@code UTF-8}.
+ */
+public abstract class GitCommitIdResourceTemplatesTask extends DefaultTask {
+    /**
+     * Name of the task how it's made available to the end-user's
+     * task execution graph.
+     */
+    public static final String NAME = "gitCommitIdResourceTemplatesTask";
+
+    private static final String STATE_PROPERTIES_HASH = "@properties";
+    private static final String TOKENS_MARKER = ":tokens";
+
+    /**
+     * The directory that contains the templates.
+     *
+     * @return The directory that contains the templates
+     */
+    @Internal
+    public abstract DirectoryProperty getTemplatesDirectory();
+
+    /**
+     * The templates that should be processed.
+     *
+     * @return The templates
+     */
+    @InputFiles
+    @SkipWhenEmpty
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public FileTree getTemplates() {
+        return getProject().fileTree(getTemplatesDirectory());
+    }
+
+    /**
+     * The properties the tokens are replaced with.
+     *
+     * @return The properties the tokens are replaced with
+     */
+    @Input
+    public abstract MapProperty<String, String> getGitProperties();
+
+    /**
+     * The directory the processed templates are written to.
+     *
+     * @return The directory the processed templates are written to
+     */
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    /**
+     * The task action that processes all new or changed templates and - if the properties
+     * changed - all templates that contain tokens.
+     */
+    @TaskAction
+    public void runTheTask() {
+        try {
+            process();
+        } catch (GitCommitIdExecutionException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void process() throws GitCommitIdExecutionException {
+        Map<String, String> properties = getGitProperties().get();
+        TokenReplacingReader.Tokens tokens = new TokenReplacingReader.Tokens(properties);
+        String propertiesHash = digestOf(properties);
+        File outputDirectory = getOutputDirectory().get().getAsFile();
+        File stateFile = new File(getTemporaryDir(), "templates.state");
+        Properties previousState = loadState(stateFile);
+        boolean propertiesChanged =
+            !propertiesHash.equals(previousState.getProperty(STATE_PROPERTIES_HASH));
+
+        Properties state = new Properties();
+        state.setProperty(STATE_PROPERTIES_HASH, propertiesHash);
+        Map<String, File> processed = new HashMap<>();
+        int[] counts = new int[2];
+        getTemplates().visit(details -> {
+            if (details.isDirectory()) {
+                return;
+            }
+            String path = details.getRelativePath().getPathString();
+            File target = new File(outputDirectory, path);
+            String stamp = stampOf(details);
+            String previous = previousState.getProperty(path);
+            boolean hadTokens = previous != null && previous.endsWith(TOKENS_MARKER);
+            boolean unchanged = previous != null && target.isFile()
+                && previous.startsWith(stamp + ":") && (!propertiesChanged || !hadTokens);
+            if (unchanged) {
+                state.setProperty(path, previous);
+                counts[1]++;
+            } else {
+                boolean hasTokens = replaceTokens(details.getFile(), target, tokens);
+                state.setProperty(path, stamp + ":" + (hasTokens ? TOKENS_MARKER : ""));
+                counts[0]++;
+            }
+            processed.put(path, target);
+        });
+        // Remove what is left over from deleted templates
+        for (String path : previousState.stringPropertyNames()) {
+            if (!path.equals(STATE_PROPERTIES_HASH) && !processed.containsKey(path)) {
+                new File(outputDirectory, path).delete();
+            }
+        }
+        saveState(stateFile, state);
+        getLogger().info("Processed {} templates, {} templates were up-to-date",
+            counts[0], counts[1]);
+    }
+
+    private static boolean replaceTokens(
+            @Nonnull File template,
+            @Nonnull File target,
+            @Nonnull TokenReplacingReader.Tokens tokens) {
+        try {
+            Files.createDirectories(target.getParentFile().toPath());
+            try (TokenReplacingReader reader = new TokenReplacingReader(
+                     Files.newBufferedReader(template.toPath(), StandardCharsets.UTF_8), tokens);
+                 Writer writer =
+                     Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8)) {
+                char[] buffer = new char[8192];
+                int read;
+                while ((read = reader.read(buffer)) >= 0) {
+                    writer.write(buffer, 0, read);
+                }
+                return reader.hasTokens();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(new GitCommitIdExecutionException(
+                "Unable to process the template " + template, e));
+        }
+    }
+
+    /**
+     * A digest of the sorted properties, so that the state only matches the same properties.
+     */
+    private static String digestOf(@Nonnull Map<String, String> properties) {
+        MessageDigest digest = Constants.newMessageDigest();
+        for (Map.Entry<String, String> e : new TreeMap<>(properties).entrySet()) {
+            digest.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(e.getValue().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return ObjectId.fromRaw(digest.digest()).name();
+    }
+
+    private static String stampOf(@Nonnull FileVisitDetails details) {
+        return details.getLastModified() + "-" + details.getSize();
+    }
+
+    private Properties loadState(@Nonnull File stateFile) {
+        Properties state = new Properties();
+        if (stateFile.isFile()) {
+            try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+                state.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                getLogger().debug("Ignoring the unreadable template state {}", stateFile, e);
+                return new Properties();
+            }
+        }
+        return state;
+    }
+
+    private void saveState(@Nonnull File stateFile, @Nonnull Properties state) {
+        try (OutputStream out = Files.newOutputStream(stateFile.toPath())) {
+            state.store(out, null);
+        } catch (IOException e) {
+            getLogger().warn("Unable to store the template state {}: {}",
+                stateFile, e.getMessage());
+        }
+    }
+}
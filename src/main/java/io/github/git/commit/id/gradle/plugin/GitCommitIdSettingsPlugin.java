@@ -0,0 +1,72 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.initialization.Settings;
+import org.gradle.api.tasks.TaskProvider;
+
+/**
+ * The settings variant of the {@link GitCommitIdPlugin} that gathers the information about
+ * the git repository once for the whole build instead of once per project.
+ *
+ * <h1>Usage</h1>
+ * Apply the plugin in your {@code settings.gradle} (and not in the individual projects):
+ * <pre>
+ * plugins {
+ *     id 'io.github.git-commit-id.git-commit-id-gradle-plugin.settings'
+ * }
+ * </pre>
+ *
+ * <p>The {@link GitCommitIdPlugin} is then applied to the root project only, so there is
+ * exactly one {@link GitCommitIdPluginExtension} to configure (in the {@code build.gradle}
+ * of the root project) and exactly one {@link GitCommitIdPluginGenerationTask}, no matter how
+ * many projects the build consists of. The information is exposed to the other projects
+ * via the properties of the root project that every project inherits, e.g.
+ * {@code gitProperties.get('git.commit.id.abbrev')} or the provider
+ * {@code gitNormalizedProperties} work in the {@code build.gradle} of any project. Every
+ * other project consumes the properties of the root project like its own: java projects
+ * package the generated {@code git.properties} with their resources (which depends on the
+ * task of the root project) and the properties are injected into their {@code Test} and
+ * {@code JavaExec} tasks as configured in the root project.
+ *
+ * <p>The plugin only serves the projects of the build that applies it. Included builds
+ * need to apply it (or the {@link GitCommitIdPlugin}) themselves; when they live in the same
+ * git repository they share the open repository (refer to {@link RepositoryPool}) and, when
+ * working offline, the properties that were already gathered for the repository in the same
+ * gradle daemon (refer to {@link GitPropertiesResultCache}).
+ */
+public class GitCommitIdSettingsPlugin implements Plugin<Settings> {
+    /**
+     * Apply this plugin to the given settings.
+     *
+     * @param settings The target settings
+     */
+    public void apply(Settings settings) {
+        settings.getGradle().rootProject(rootProject -> {
+            rootProject.getPluginManager().apply(GitCommitIdPlugin.class);
+            GitCommitIdPluginExtension extension =
+                rootProject.getExtensions().getByType(GitCommitIdPluginExtension.class);
+            TaskProvider<GitCommitIdPluginGenerationTask> taskProvider =
+                rootProject.getTasks().named(
+                    GitCommitIdPluginGenerationTask.NAME, GitCommitIdPluginGenerationTask.class);
+            rootProject.subprojects(project ->
+                GitCommitIdPlugin.consumeProperties(project, extension, taskProvider));
+        });
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.ValueSource;
+import org.gradle.api.provider.ValueSourceParameters;
+
+/**
+ * A {@link ValueSource} that computes the {@code git describe} of a commit while the build
+ * is configured (refer to {@link GitCommitIdPluginExtension#getDescribeVersion()}).
+ *
+ * <p>When the configuration cache is enabled, gradle obtains the value again for every build
+ * and only reuses the cached configuration when the value did not change. The value
+ * therefore only depends on the commit and the tags and is computed from the shared
+ * {@link RepositoryPool} and {@link PeeledTagIndex}: as long as {@code HEAD} did not move
+ * this is a handful of file system checks. The closest tag is chosen by distance like
+ * {@code git describe} does (refer to {@link ClosestTag}). The working tree is deliberately
+ * not inspected, so a {@code dirty} marker is never appended (the generated
+ * {@code git.commit.id.describe} still includes it).
+ *
+ * <p>Requires gradle 6.1 or later.
+ */
+public abstract class GitDescribeValueSource
+        implements ValueSource<String, GitDescribeValueSource.Parameters> {
+    /**
+     * The parameters of the {@link GitDescribeValueSource}, mirroring the
+     * {@link pl.project13.core.git.GitDescribeConfig}.
+     */
+    public interface Parameters extends ValueSourceParameters {
+        /**
+         * The {@code .git} directory of the repository.
+         *
+         * @return The {@code .git} directory of the repository
+         */
+        DirectoryProperty getDotGitDirectory();
+
+        /**
+         * The commit that should be described.
+         *
+         * @return The commit that should be described
+         */
+        Property<String> getEvaluateOnCommit();
+
+        /**
+         * Whether lightweight tags should be considered as well.
+         *
+         * @return Whether lightweight tags should be considered as well
+         */
+        Property<Boolean> getTags();
+
+        /**
+         * The glob pattern the name of a tag must match to be considered.
+         *
+         * @return The glob pattern the name of a tag must match to be considered
+         */
+        Property<String> getMatch();
+
+        /**
+         * The length of the abbreviated commit id.
+         *
+         * @return The length of the abbreviated commit id
+         */
+        Property<Integer> getAbbrev();
+
+        /**
+         * Whether the abbreviated commit id should be used when no tag was found.
+         *
+         * @return Whether the abbreviated commit id should be used when no tag was found
+         */
+        Property<Boolean> getAlways();
+
+        /**
+         * Whether the long format should be used even if the commit is tagged.
+         *
+         * @return Whether the long format should be used even if the commit is tagged
+         */
+        Property<Boolean> getForceLongFormat();
+    }
+
+    @Nullable
+    @Override
+    public String obtain() {
+        Parameters parameters = getParameters();
+        File dotGitDirectory = parameters.getDotGitDirectory().get().getAsFile();
+        if (!dotGitDirectory.isDirectory()) {
+            return null;
+        }
+        try (Repository repository = RepositoryPool.acquire(dotGitDirectory);
+             RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            ObjectId objectId =
+                repository.resolve(parameters.getEvaluateOnCommit().get() + "^{commit}");
+            if (objectId == null) {
+                return null;
+            }
+            RevCommit commit = walk.parseCommit(objectId);
+            int abbrevLength = parameters.getAbbrev().get();
+            // Like git, fall back to the full id when no abbreviation was requested
+            String abbrev = abbrevLength <= 0 ? commit.name()
+                : walk.getObjectReader().abbreviate(commit, abbrevLength).name();
+            ClosestTag closest = ClosestTag.find(walk, commit, true,
+                PeeledTagIndex.forRepository(repository), parameters.getMatch().getOrNull(),
+                parameters.getTags().get());
+            if (closest == null) {
+                return parameters.getAlways().get() ? abbrev : null;
+            }
+            if (abbrevLength <= 0
+                    || closest.getDistance() == 0 && !parameters.getForceLongFormat().get()) {
+                return closest.getTag();
+            }
+            return closest.getTag() + "-" + closest.getDistance() + "-g" + abbrev;
+        } catch (IOException e) {
+            throw new RuntimeException(
+                "Unable to describe " + parameters.getEvaluateOnCommit().get(), e);
+        }
+    }
+}
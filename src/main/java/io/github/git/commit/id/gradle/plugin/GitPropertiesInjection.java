@@ -0,0 +1,147 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.gradle.api.Action;
+import org.gradle.api.Task;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.TaskProvider;
+import org.gradle.process.CommandLineArgumentProvider;
+import org.gradle.process.JavaForkOptions;
+
+/**
+ * Injects the generated properties into the forked JVMs of {@code Test} and {@code JavaExec}
+ * tasks, either as system properties or as environment variables
+ * (refer to {@link GitCommitIdPluginExtension#getInjectIntoSysPropertiesOf()} and
+ * {@link GitCommitIdPluginExtension#getInjectIntoEnvironmentOf()}).
+ *
+ * <p>Everything is evaluated lazily when the task is executed: whether the task is selected,
+ * the dependency on the {@link GitCommitIdPluginGenerationTask} and the properties
+ * themselves. The {@link GitCommitIdPluginGenerationTask#getNormalizedProperties() normalized
+ * properties} are declared as input, so the tasks stay "up-to-date" and cacheable as long as
+ * the state of the git repository does not change.
+ */
+final class GitPropertiesInjection {
+    private GitPropertiesInjection() {
+    }
+
+    /**
+     * Prepares the given task for the injection.
+     *
+     * @param task The {@code Test} or {@code JavaExec} task
+     * @param forkOptions The same task (as fork options)
+     * @param extension The configuration of the plugin
+     * @param generationTask The task that generates the properties
+     */
+    static void configure(
+            @Nonnull Task task,
+            @Nonnull JavaForkOptions forkOptions,
+            @Nonnull GitCommitIdPluginExtension extension,
+            @Nonnull TaskProvider<GitCommitIdPluginGenerationTask> generationTask) {
+        Provider<Map<String, String>> normalizedProperties =
+            generationTask.flatMap(GitCommitIdPluginGenerationTask::getNormalizedProperties);
+        Provider<Map<String, String>> sysProperties = task.getProject().provider(() ->
+            isSelected(task, extension, extension.getInjectIntoSysPropertiesOf())
+                ? normalizedProperties.get() : Collections.emptyMap());
+        Provider<Map<String, String>> environment = task.getProject().provider(() ->
+            isSelected(task, extension, extension.getInjectIntoEnvironmentOf())
+                ? toEnvironment(normalizedProperties.get()) : Collections.emptyMap());
+
+        task.dependsOn(task.getProject().provider(() ->
+            isSelected(task, extension, extension.getInjectIntoSysPropertiesOf())
+                || isSelected(task, extension, extension.getInjectIntoEnvironmentOf())
+                ? Collections.singletonList(generationTask) : Collections.emptyList()));
+        forkOptions.getJvmArgumentProviders().add(new SysPropertiesArgumentProvider(sysProperties));
+        task.getInputs().property("gitCommitIdEnvironment", environment);
+        task.doFirst(new EnvironmentAction(forkOptions, environment));
+    }
+
+    private static boolean isSelected(
+            @Nonnull Task task,
+            @Nonnull GitCommitIdPluginExtension extension,
+            @Nonnull Provider<List<String>> taskNames) {
+        return !extension.getSkip().get() && taskNames.get().contains(task.getName());
+    }
+
+    /**
+     * Converts the property names into conventional names of environment variables,
+     * e.g. {@code git.commit.id.abbrev} into {@code GIT_COMMIT_ID_ABBREV}.
+     */
+    static Map<String, String> toEnvironment(@Nonnull Map<String, String> properties) {
+        Map<String, String> environment = new LinkedHashMap<>();
+        for (Map.Entry<String, String> e : properties.entrySet()) {
+            String name = e.getKey().toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9_]", "_");
+            environment.put(name, e.getValue());
+        }
+        return environment;
+    }
+
+    /**
+     * Passes the properties as {@code -Dname=value} to the forked JVM.
+     */
+    static final class SysPropertiesArgumentProvider implements CommandLineArgumentProvider {
+        private final Provider<Map<String, String>> properties;
+
+        SysPropertiesArgumentProvider(@Nonnull Provider<Map<String, String>> properties) {
+            this.properties = properties;
+        }
+
+        @Input
+        public Map<String, String> getGitProperties() {
+            return properties.get();
+        }
+
+        @Override
+        public Iterable<String> asArguments() {
+            List<String> arguments = new ArrayList<>();
+            for (Map.Entry<String, String> e : properties.get().entrySet()) {
+                arguments.add("-D" + e.getKey() + "=" + e.getValue());
+            }
+            return arguments;
+        }
+    }
+
+    /**
+     * Adds the environment variables right before the JVM is forked.
+     * This needs to be a class (not a lambda) to keep the task cacheable.
+     */
+    static final class EnvironmentAction implements Action<Task> {
+        private final JavaForkOptions forkOptions;
+        private final Provider<Map<String, String>> environment;
+
+        EnvironmentAction(
+                @Nonnull JavaForkOptions forkOptions,
+                @Nonnull Provider<Map<String, String>> environment) {
+            this.forkOptions = forkOptions;
+            this.environment = environment;
+        }
+
+        @Override
+        public void execute(@Nonnull Task task) {
+            forkOptions.environment(environment.get());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import pl.project13.core.GitCommitPropertyConstant;
+
+/**
+ * A process wide cache that lives as long as the gradle daemon and maps a
+ * {@link GitStateFingerprint} to the properties that had been computed for it.
+ *
+ * <p>Developers tend to run builds over and over again on the same checkout.
+ * Whenever the {@link GitCommitIdPluginGenerationTask} is not up-to-date anyway (e.g. because
+ * only the {@code index} changed, or after switching back to a branch that was built before)
+ * the properties can be taken from here instead of being computed again.
+ *
+ * <p>Only properties that are fully determined by the fingerprint are cached. Properties that
+ * depend on the working tree (e.g. {@code dirty}), on the time of the build or on the state
+ * of submodules are not.
+ * The cache holds at most {@link #MAX_ENTRIES} entries, evicting the least recently used
+ * first, and entries older than {@link #MAX_AGE_MILLIS} are discarded.
+ */
+final class GitPropertiesResultCache {
+    /**
+     * The maximum number of fingerprints for which the properties are kept.
+     */
+    static final int MAX_ENTRIES = 32;
+
+    /**
+     * The maximum age of a cache entry in milliseconds.
+     */
+    static final long MAX_AGE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Properties (without prefix) that depend on the working tree, not only on the git database.
+     */
+    static final List<String> WORKING_TREE_PROPERTIES = Arrays.asList(
+        GitCommitPropertyConstant.DIRTY,
+        GitCommitPropertyConstant.COMMIT_DESCRIBE,
+        GitCommitPropertyConstant.COMMIT_SHORT_DESCRIBE);
+
+    /**
+     * Common start (without prefix) of all properties that describe the build, not the repository.
+     */
+    private static final String BUILD_PROPERTIES_PREFIX = "build.";
+
+    private static final Map<GitStateFingerprint, CachedResult> ENTRIES =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<GitStateFingerprint, CachedResult> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    private static final class CachedResult {
+        private final long createdAt;
+        private final GitPropertiesSnapshot properties;
+
+        private CachedResult(long createdAt, @Nonnull GitPropertiesSnapshot properties) {
+            this.createdAt = createdAt;
+            this.properties = properties;
+        }
+    }
+
+    private GitPropertiesResultCache() {
+    }
+
+    /**
+     * Looks up the properties that had been computed for the given fingerprint.
+     *
+     * @param fingerprint The fingerprint of the repository state
+     * @return The cached properties or {@code null} if there are none (or they are expired)
+     */
+    @Nullable
+    static GitPropertiesSnapshot get(@Nonnull GitStateFingerprint fingerprint) {
+        return get(fingerprint, System.currentTimeMillis());
+    }
+
+    @Nullable
+    static GitPropertiesSnapshot get(@Nonnull GitStateFingerprint fingerprint, long now) {
+        synchronized (ENTRIES) {
+            CachedResult entry = ENTRIES.get(fingerprint);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.createdAt > MAX_AGE_MILLIS) {
+                ENTRIES.remove(fingerprint);
+                return null;
+            }
+            return entry.properties;
+        }
+    }
+
+    /**
+     * Stores all cacheable properties for the given fingerprint.
+     *
+     * @param fingerprint The fingerprint of the repository state the properties belong to
+     * @param prefixDot The prefix (including the dot) of all generated properties
+     * @param properties The generated properties
+     * @return The cached properties
+     */
+    static GitPropertiesSnapshot put(
+            @Nonnull GitStateFingerprint fingerprint,
+            @Nonnull String prefixDot,
+            @Nonnull Properties properties) {
+        return put(fingerprint, prefixDot, properties, System.currentTimeMillis());
+    }
+
+    static GitPropertiesSnapshot put(
+            @Nonnull GitStateFingerprint fingerprint,
+            @Nonnull String prefixDot,
+            @Nonnull Properties properties,
+            long now) {
+        Map<String, String> cacheable = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (isCacheable(prefixDot, key)) {
+                cacheable.put(key, properties.getProperty(key));
+            }
+        }
+        GitPropertiesSnapshot snapshot = GitPropertiesSnapshot.of(cacheable);
+        synchronized (ENTRIES) {
+            ENTRIES.put(fingerprint, new CachedResult(now, snapshot));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    static void clear() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+        }
+    }
+
+    private static boolean isCacheable(@Nonnull String prefixDot, @Nonnull String key) {
+        if (!key.startsWith(prefixDot)) {
+            return false;
+        }
+        String name = key.substring(prefixDot.length());
+        // Submodules have their own repository state (refer to SubmoduleMetadata)
+        return !name.startsWith(BUILD_PROPERTIES_PREFIX)
+            && !name.startsWith(SubmoduleMetadata.PROPERTIES_PREFIX)
+            && !WORKING_TREE_PROPERTIES.contains(name);
+    }
+}
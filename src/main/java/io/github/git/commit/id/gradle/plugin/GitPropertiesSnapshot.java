@@ -0,0 +1,307 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable, sorted view of generated properties that is cheap to keep in memory.
+ *
+ * <p>Every key is split after its last dot into a prefix (e.g. {@code git.commit.id.}) and
+ * the remaining name (e.g. {@code full}). There are only a handful of distinct prefixes and
+ * names, and they are shared by all snapshots of the daemon instead of being repeated in
+ * every key.
+ * The entries are kept in arrays sorted by key, so lookups are a binary search and
+ * iterating yields the keys in sorted order. In contrast to {@link Properties} (a
+ * synchronized {@code Hashtable} of objects) no locking and no casts are needed to read it.
+ *
+ * <p>Usually all projects of a build generate the very same properties. The
+ * {@link #MAX_SHARED_SNAPSHOTS} most recently created snapshots are therefore remembered and
+ * an equal snapshot is returned instead of a new one, so every project ends up holding the
+ * same instance.
+ */
+final class GitPropertiesSnapshot extends AbstractMap<String, String> {
+    /**
+     * The maximum number of recently created snapshots that are shared.
+     */
+    static final int MAX_SHARED_SNAPSHOTS = 16;
+
+    private static final GitPropertiesSnapshot EMPTY =
+        new GitPropertiesSnapshot(new String[0], new String[0], new String[0]);
+
+    private static final Map<String, String> KEY_PARTS = new ConcurrentHashMap<>();
+
+    private static final Map<GitPropertiesSnapshot, GitPropertiesSnapshot> SHARED =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<GitPropertiesSnapshot, GitPropertiesSnapshot> eldest) {
+                return size() > MAX_SHARED_SNAPSHOTS;
+            }
+        };
+
+    private final String[] prefixes;
+    private final String[] names;
+    private final String[] values;
+    private int hash;
+
+    private GitPropertiesSnapshot(
+            @Nonnull String[] prefixes,
+            @Nonnull String[] names,
+            @Nonnull String[] values) {
+        this.prefixes = prefixes;
+        this.names = names;
+        this.values = values;
+    }
+
+    /**
+     * An empty snapshot.
+     *
+     * @return The empty snapshot
+     */
+    static GitPropertiesSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates a snapshot of all string properties, including their defaults.
+     *
+     * @param properties The properties
+     * @return The snapshot
+     */
+    static GitPropertiesSnapshot of(@Nonnull Properties properties) {
+        Set<String> keys = properties.stringPropertyNames();
+        String[] sortedKeys = keys.toArray(new String[0]);
+        Arrays.sort(sortedKeys);
+        String[] sortedValues = new String[sortedKeys.length];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedValues[i] = properties.getProperty(sortedKeys[i]);
+        }
+        return of(sortedKeys, sortedValues);
+    }
+
+    /**
+     * Creates a snapshot of the given properties.
+     *
+     * @param properties The properties
+     * @return The snapshot
+     */
+    static GitPropertiesSnapshot of(@Nonnull Map<String, String> properties) {
+        if (properties instanceof GitPropertiesSnapshot) {
+            return (GitPropertiesSnapshot) properties;
+        }
+        String[] sortedKeys = properties.keySet().toArray(new String[0]);
+        Arrays.sort(sortedKeys);
+        String[] sortedValues = new String[sortedKeys.length];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            sortedValues[i] = properties.get(sortedKeys[i]);
+        }
+        return of(sortedKeys, sortedValues);
+    }
+
+    private static GitPropertiesSnapshot of(
+            @Nonnull String[] sortedKeys,
+            @Nonnull String[] sortedValues) {
+        if (sortedKeys.length == 0) {
+            return EMPTY;
+        }
+        String[] prefixes = new String[sortedKeys.length];
+        String[] names = new String[sortedKeys.length];
+        for (int i = 0; i < sortedKeys.length; i++) {
+            String key = sortedKeys[i];
+            int split = key.lastIndexOf('.') + 1;
+            String prefix = key.substring(0, split);
+            prefixes[i] = i > 0 && prefixes[i - 1].equals(prefix)
+                ? prefixes[i - 1] : KEY_PARTS.computeIfAbsent(prefix, part -> part);
+            names[i] = KEY_PARTS.computeIfAbsent(key.substring(split), part -> part);
+        }
+        GitPropertiesSnapshot snapshot = new GitPropertiesSnapshot(prefixes, names, sortedValues);
+        synchronized (SHARED) {
+            GitPropertiesSnapshot shared = SHARED.putIfAbsent(snapshot, snapshot);
+            return shared == null ? snapshot : shared;
+        }
+    }
+
+    /**
+     * Returns the snapshot without the entries whose key matches the given predicate.
+     *
+     * @param predicate The predicate for the keys to remove
+     * @return The filtered snapshot
+     */
+    GitPropertiesSnapshot without(@Nonnull Predicate<String> predicate) {
+        int retained = 0;
+        String[] keys = new String[names.length];
+        String[] retainedValues = new String[names.length];
+        for (int i = 0; i < names.length; i++) {
+            String key = keyAt(i);
+            if (!predicate.test(key)) {
+                keys[retained] = key;
+                retainedValues[retained] = values[i];
+                retained++;
+            }
+        }
+        if (retained == names.length) {
+            return this;
+        }
+        return of(Arrays.copyOf(keys, retained), Arrays.copyOf(retainedValues, retained));
+    }
+
+    /**
+     * Copies the entries to new {@link Properties}, e.g. to hand them over to the core.
+     *
+     * @return The properties
+     */
+    Properties toProperties() {
+        Properties properties = new Properties();
+        for (int i = 0; i < names.length; i++) {
+            properties.setProperty(keyAt(i), values[i]);
+        }
+        return properties;
+    }
+
+    @Override
+    public int size() {
+        return names.length;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && indexOf((String) key) >= 0;
+    }
+
+    @Nullable
+    @Override
+    public String get(Object key) {
+        if (!(key instanceof String)) {
+            return null;
+        }
+        int index = indexOf((String) key);
+        return index < 0 ? null : values[index];
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < names.length;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (next >= names.length) {
+                            throw new NoSuchElementException();
+                        }
+                        Entry<String, String> entry =
+                            new SimpleImmutableEntry<>(keyAt(next), values[next]);
+                        next++;
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return names.length;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GitPropertiesSnapshot)) {
+            return super.equals(o);
+        }
+        GitPropertiesSnapshot other = (GitPropertiesSnapshot) o;
+        return hashCode() == other.hashCode()
+            && Arrays.equals(names, other.names)
+            && Arrays.equals(prefixes, other.prefixes)
+            && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && names.length > 0) {
+            // Same as AbstractMap, but computed once
+            h = super.hashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    private String keyAt(int index) {
+        return prefixes[index].concat(names[index]);
+    }
+
+    private int indexOf(@Nonnull String key) {
+        int low = 0;
+        int high = names.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareKeyAt(middle, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the key at the given index with the given key like {@link String#compareTo}
+     * without concatenating the prefix and the name.
+     */
+    private int compareKeyAt(int index, @Nonnull String key) {
+        String prefix = prefixes[index];
+        String name = names[index];
+        int length = prefix.length() + name.length();
+        int limit = Math.min(length, key.length());
+        for (int i = 0; i < limit; i++) {
+            char c = i < prefix.length() ? prefix.charAt(i) : name.charAt(i - prefix.length());
+            char k = key.charAt(i);
+            if (c != k) {
+                return c - k;
+            }
+        }
+        return length - key.length();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * Determines the files inside the {@code .git} directory the generated properties depend on.
+ *
+ * <p>Most of the {@code .git} directory is the object database, which is written to by
+ * every {@code git fetch} or {@code git gc} without changing anything the properties are
+ * derived from. Only the following files are relevant:
+ * <ul>
+ *     <li>{@code HEAD} and the ref it points to (the commit and the branch)</li>
+ *     <li>the refs the commit to evaluate might be resolved from, if it's not relative to
+ *     {@code HEAD} (e.g. {@code origin/main} or a tag)</li>
+ *     <li>the upstream ref of the current branch (ahead / behind)</li>
+ *     <li>{@code packed-refs} (refs that are not stored as individual files)</li>
+ *     <li>{@code refs/tags/} (the tags and describe)</li>
+ *     <li>the {@code index} (dirty and describe)</li>
+ *     <li>the {@code config} (remotes and upstream configuration)</li>
+ *     <li>{@code reftable/tables.list} (all refs of repositories that use the
+ *     {@code reftable} format, refer to {@link RefLookup})</li>
+ * </ul>
+ *
+ * <p>Linked work trees keep {@code HEAD} and the {@code index} in their own directory, but
+ * share the refs and the configuration with the main repository (refer to
+ * {@code commondir}).
+ */
+final class GitStateFiles {
+    private static final String COMMON_DIR = "commondir";
+    private static final String SYMREF_PREFIX = "ref: ";
+    private static final int MAX_SYMREF_DEPTH = 5;
+
+    private GitStateFiles() {
+    }
+
+    /**
+     * Returns the relevant files of the given git directory. Files that do not exist
+     * (e.g. a branch that only exists in {@code packed-refs}) are included nevertheless,
+     * since they might be created later on.
+     *
+     * @param dotGitDirectory The {@code .git} directory of the repository
+     * @return The relevant files or the given file itself if it's not a directory
+     */
+    static List<File> of(@Nonnull File dotGitDirectory) {
+        return of(dotGitDirectory, Constants.HEAD);
+    }
+
+    /**
+     * Returns the relevant files of the given git directory when the properties are
+     * generated for the given revision instead of {@code HEAD}.
+     *
+     * @param dotGitDirectory The {@code .git} directory of the repository
+     * @param evaluateOnCommit The revision the properties are generated for
+     *                         (e.g. {@code HEAD}, {@code origin/main} or {@code v1.0^{commit}})
+     * @return The relevant files or the given file itself if it's not a directory
+     */
+    static List<File> of(@Nonnull File dotGitDirectory, @Nonnull String evaluateOnCommit) {
+        if (!dotGitDirectory.isDirectory()) {
+            return Collections.singletonList(dotGitDirectory);
+        }
+        File commonDir = commonDirOf(dotGitDirectory);
+        List<File> files = new ArrayList<>();
+        files.add(new File(dotGitDirectory, Constants.HEAD));
+        files.add(new File(dotGitDirectory, "index"));
+        files.add(new File(commonDir, Constants.CONFIG));
+        files.add(new File(commonDir, Constants.PACKED_REFS));
+        files.add(new File(commonDir, Constants.R_TAGS));
+        files.add(new File(commonDir, RefLookup.REFTABLE_TABLES_LIST));
+        String head = readTrimmed(new File(dotGitDirectory, Constants.HEAD));
+        if (head.startsWith(SYMREF_PREFIX)) {
+            String refName = head.substring(SYMREF_PREFIX.length());
+            files.add(new File(commonDir, refName));
+            String upstream = upstreamOf(commonDir, refName);
+            if (upstream != null) {
+                files.add(new File(commonDir, upstream));
+            }
+        }
+        files.addAll(refFilesOf(dotGitDirectory, commonDir, evaluateOnCommit));
+        return files;
+    }
+
+    /**
+     * Returns the files of all refs the given revision might be resolved from, following
+     * the rules of {@code git rev-parse} ({@code <name>}, {@code refs/<name>},
+     * {@code refs/tags/<name>}, {@code refs/heads/<name>}, {@code refs/remotes/<name>} and
+     * {@code refs/remotes/<name>/HEAD}). Symbolic refs are followed. Revisions relative to
+     * {@code HEAD} and object ids do not need any file in addition.
+     */
+    static List<File> refFilesOf(
+            @Nonnull File dotGitDirectory,
+            @Nonnull File commonDir,
+            @Nonnull String revision) {
+        String name = refNameOf(revision);
+        if (name.isEmpty() || "@".equals(name) || Constants.HEAD.equals(name)
+                || ObjectId.isId(name)) {
+            return Collections.emptyList();
+        }
+        List<File> files = new ArrayList<>();
+        // Pseudo refs like FETCH_HEAD are kept per work tree
+        files.add(new File(dotGitDirectory, name));
+        for (String candidate : Arrays.asList(
+                name,
+                Constants.R_REFS + name,
+                Constants.R_TAGS + name,
+                Constants.R_HEADS + name,
+                Constants.R_REMOTES + name,
+                Constants.R_REMOTES + name + "/" + Constants.HEAD)) {
+            addRefFile(commonDir, candidate, files);
+        }
+        return files;
+    }
+
+    private static void addRefFile(
+            @Nonnull File commonDir,
+            @Nonnull String refName,
+            @Nonnull List<File> files) {
+        String current = refName;
+        for (int depth = 0; depth < MAX_SYMREF_DEPTH; depth++) {
+            File file = new File(commonDir, current);
+            files.add(file);
+            String content = readTrimmed(file);
+            if (!content.startsWith(SYMREF_PREFIX)) {
+                return;
+            }
+            current = content.substring(SYMREF_PREFIX.length());
+        }
+    }
+
+    /**
+     * Strips the suffixes of a revision that navigate from a ref
+     * (e.g. {@code ~2}, {@code ^{commit}}, {@code @{upstream}} or {@code :path}).
+     */
+    private static String refNameOf(@Nonnull String revision) {
+        int end = revision.length();
+        for (int i = 0; i < revision.length(); i++) {
+            char c = revision.charAt(i);
+            if (c == '~' || c == '^' || c == ':'
+                    || (c == '@' && i + 1 < revision.length() && revision.charAt(i + 1) == '{')) {
+                end = i;
+                break;
+            }
+        }
+        return revision.substring(0, end).trim();
+    }
+
+    static File commonDirOf(@Nonnull File dotGitDirectory) {
+        String commonDir = readTrimmed(new File(dotGitDirectory, COMMON_DIR));
+        if (commonDir.isEmpty()) {
+            return dotGitDirectory;
+        }
+        File file = new File(commonDir);
+        return file.isAbsolute() ? file : new File(dotGitDirectory, commonDir);
+    }
+
+    /**
+     * Resolves the remote tracking ref of the given branch,
+     * e.g. {@code refs/remotes/origin/main} for {@code refs/heads/main}.
+     */
+    private static String upstreamOf(@Nonnull File commonDir, @Nonnull String refName) {
+        if (!refName.startsWith(Constants.R_HEADS)) {
+            return null;
+        }
+        String branch = refName.substring(Constants.R_HEADS.length());
+        FileBasedConfig config =
+            new FileBasedConfig(new File(commonDir, Constants.CONFIG), FS.DETECTED);
+        try {
+            config.load();
+        } catch (IOException | ConfigInvalidException e) {
+            return null;
+        }
+        String remote = config.getString(
+            ConfigConstants.CONFIG_BRANCH_SECTION, branch, ConfigConstants.CONFIG_KEY_REMOTE);
+        String merge = config.getString(
+            ConfigConstants.CONFIG_BRANCH_SECTION, branch, ConfigConstants.CONFIG_KEY_MERGE);
+        if (remote == null || merge == null || !merge.startsWith(Constants.R_HEADS)) {
+            return null;
+        }
+        if (".".equals(remote)) {
+            // the upstream is a local branch
+            return merge;
+        }
+        return Constants.R_REMOTES + remote + "/" + merge.substring(Constants.R_HEADS.length());
+    }
+
+    private static String readTrimmed(@Nonnull File file) {
+        if (!file.isFile()) {
+            return "";
+        }
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.Constants;
+
+/**
+ * A cheap fingerprint of the state of a git repository that can be computed without
+ * opening the repository itself.
+ *
+ * <p>The fingerprint consists of the content of {@code HEAD} and the ref it points to,
+ * the timestamps of {@code packed-refs}, {@code shallow}, the {@code config}, the
+ * {@code reftable} tables list and of every directory below {@code refs/} (creating,
+ * updating or deleting a loose ref always (re-)links a file in its directory, which updates
+ * the directory timestamp), as well as an arbitrary description of the settings the
+ * properties were generated with. Everything except {@code HEAD} is read from the common
+ * directory, which linked work trees share with the main repository
+ * (refer to {@link GitStateFiles#commonDirOf(File)}).
+ *
+ * <p>A timestamp can't tell two modifications apart that happen within the granularity of
+ * the file system. A fingerprint that contains a timestamp that recent is therefore
+ * {@link #isRacy() racy} and must not be used to look up or store cached results.
+ *
+ * <p>Two equal fingerprints mean that all properties that only depend on the
+ * git database (and not on the working tree) are the same. The {@code index} is
+ * deliberately not part of the fingerprint: staging changes only affects the properties
+ * that depend on the working tree, so those are the only ones that need to be recomputed.
+ */
+final class GitStateFingerprint {
+    /**
+     * The coarsest timestamp granularity of the common file systems (FAT has two seconds).
+     */
+    static final long RACY_INTERVAL_MS = 2_000L;
+
+    private static final String SHALLOW = "shallow";
+
+    private final Map<String, String> components;
+    private final boolean racy;
+
+    private GitStateFingerprint(@Nonnull Map<String, String> components, boolean racy) {
+        this.components = Collections.unmodifiableMap(components);
+        this.racy = racy;
+    }
+
+    /**
+     * Computes the fingerprint of the given git directory.
+     *
+     * @param dotGitDirectory The {@code .git} directory of the repository
+     * @param settings A description of all settings that influence the generated properties
+     * @return The fingerprint
+     * @throws IOException if the repository state could not be read
+     */
+    static GitStateFingerprint of(
+            @Nonnull File dotGitDirectory,
+            @Nonnull String settings) throws IOException {
+        File gitDir = dotGitDirectory.getCanonicalFile();
+        Map<String, String> components = new TreeMap<>();
+        components.put("gitDir", gitDir.getPath());
+        components.put("settings", settings);
+
+        File commonDir = GitStateFiles.commonDirOf(gitDir);
+        String head = readTrimmed(new File(gitDir, Constants.HEAD));
+        components.put(Constants.HEAD, head);
+        if (head.startsWith("ref: ")) {
+            String refName = head.substring("ref: ".length());
+            components.put(refName, readTrimmed(new File(commonDir, refName)));
+        }
+        long[] newestTimestamp = new long[1];
+        components.put(Constants.PACKED_REFS,
+            statOf(new File(commonDir, Constants.PACKED_REFS), newestTimestamp));
+        components.put(SHALLOW, statOf(new File(commonDir, SHALLOW), newestTimestamp));
+        components.put(Constants.CONFIG,
+            statOf(new File(commonDir, Constants.CONFIG), newestTimestamp));
+        // Every ref update of the reftable format rewrites the list of tables
+        components.put(RefLookup.REFTABLE_TABLES_LIST,
+            statOf(new File(commonDir, RefLookup.REFTABLE_TABLES_LIST), newestTimestamp));
+        StringBuilder refDirectories = new StringBuilder();
+        collectDirectoryTimestamps(new File(commonDir, Constants.R_REFS), Constants.R_REFS,
+            refDirectories, newestTimestamp);
+        components.put(Constants.R_REFS, refDirectories.toString());
+        // Timestamps in the future are as untrustworthy as recent ones
+        boolean racy = System.currentTimeMillis() - newestTimestamp[0] < RACY_INTERVAL_MS;
+        return new GitStateFingerprint(components, racy);
+    }
+
+    /**
+     * The individual parts of this fingerprint.
+     *
+     * @return An unmodifiable view of the fingerprint components
+     */
+    Map<String, String> getComponents() {
+        return components;
+    }
+
+    /**
+     * Whether one of the timestamps of this fingerprint is too recent to be trusted, i.e.
+     * whether the repository might still change without changing the fingerprint.
+     *
+     * @return {@code true} if results must not be cached for this fingerprint
+     */
+    boolean isRacy() {
+        return racy;
+    }
+
+    private static String readTrimmed(@Nonnull File file) throws IOException {
+        if (!file.isFile()) {
+            return "";
+        }
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+    }
+
+    private static String statOf(@Nonnull File file, @Nonnull long[] newestTimestamp) {
+        long lastModified = file.lastModified();
+        newestTimestamp[0] = Math.max(newestTimestamp[0], lastModified);
+        return lastModified + ":" + file.length();
+    }
+
+    private static void collectDirectoryTimestamps(
+            @Nonnull File dir,
+            @Nonnull String name,
+            @Nonnull StringBuilder timestamps,
+            @Nonnull long[] newestTimestamp) {
+        File[] children = dir.listFiles(File::isDirectory);
+        if (children == null) {
+            return;
+        }
+        Arrays.sort(children);
+        long lastModified = dir.lastModified();
+        newestTimestamp[0] = Math.max(newestTimestamp[0], lastModified);
+        timestamps.append(name).append('=').append(lastModified).append(';');
+        for (File child : children) {
+            collectDirectoryTimestamps(
+                child, name + child.getName() + "/", timestamps, newestTimestamp);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GitStateFingerprint)) {
+            return false;
+        }
+        return components.equals(((GitStateFingerprint) o).components);
+    }
+
+    @Override
+    public int hashCode() {
+        return components.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "GitStateFingerprint" + components;
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * Reads individual refs or single namespaces (e.g. {@code refs/tags/}) from
+ * {@code packed-refs} without parsing the whole file.
+ *
+ * <p>Repositories with hundreds of thousands of refs (e.g. a ref per pull request) keep
+ * most of them in {@code packed-refs}. JGit parses the complete file before it answers
+ * the first lookup. Git writes the file sorted by ref name (announced by the {@code sorted}
+ * trait in the header), so the start of a ref or namespace is found by a binary search
+ * over the lines instead, the same way git itself does it (reading only a few blocks,
+ * refer to {@link FileBlocks}). Files without that trait are scanned linearly.
+ * The peeled target of annotated tags is stored on the line following the tag
+ * ({@code ^<object-id>}).
+ *
+ * <p>Loose refs take precedence over packed ones, this class only knows about the
+ * packed ones. The file is kept open until the packed refs are {@link #close() closed}.
+ */
+final class PackedRefs implements Closeable {
+    private static final String HEADER_PREFIX = "# pack-refs with:";
+    private static final String SORTED_TRAIT = " sorted ";
+    private static final String FULLY_PEELED_TRAIT = " fully-peeled ";
+    private static final byte PEELED_LINE_PREFIX = '^';
+    private static final byte NEW_LINE = '\n';
+    // The object id and a space precede the name of the ref
+    private static final int NAME_OFFSET = Constants.OBJECT_ID_STRING_LENGTH + 1;
+
+    private static final PackedRefs EMPTY = new PackedRefs(null, 0, true, true);
+
+    /**
+     * Receives the refs of a namespace.
+     */
+    @FunctionalInterface
+    interface Visitor {
+        /**
+         * Called for every ref in the order of the file.
+         *
+         * @param name The full name of the ref
+         * @param objectId The object the ref points to
+         * @param peeledObjectId The peeled target of an annotated tag, {@code null} if the ref
+         *     does not point to an annotated tag or if the file does not tell
+         *     (refer to {@link #isFullyPeeled()})
+         */
+        void visit(@Nonnull String name, @Nonnull ObjectId objectId,
+                   @Nullable ObjectId peeledObjectId);
+    }
+
+    private final FileBlocks content;
+    private final int limit;
+    private final int recordsStart;
+    private final boolean sorted;
+    private final boolean fullyPeeled;
+
+    private PackedRefs(
+            @Nullable FileBlocks content,
+            int recordsStart,
+            boolean sorted,
+            boolean fullyPeeled) {
+        this.content = content;
+        this.limit = content == null ? 0 : (int) content.size();
+        this.recordsStart = recordsStart;
+        this.sorted = sorted;
+        this.fullyPeeled = fullyPeeled;
+    }
+
+    /**
+     * Opens the given {@code packed-refs} file.
+     *
+     * @param packedRefs The {@code packed-refs} file, might not exist
+     * @return The packed refs, empty if the file does not exist, must be closed
+     * @throws IOException if the file could not be read
+     */
+    static PackedRefs open(@Nonnull File packedRefs) throws IOException {
+        if (!packedRefs.isFile() || packedRefs.length() == 0) {
+            return EMPTY;
+        }
+        FileBlocks content = FileBlocks.open(packedRefs);
+        try {
+            if (content.size() > Integer.MAX_VALUE) {
+                throw new IOException("Unsupported size of " + packedRefs);
+            }
+            int limit = (int) content.size();
+            int recordsStart = 0;
+            boolean sorted = false;
+            boolean fullyPeeled = false;
+            if (limit > 0 && content.get(0) == '#') {
+                recordsStart = endOfLine(content, limit, 0);
+                String header = new String(
+                    content.bytes(0, recordsStart), StandardCharsets.UTF_8).trim() + " ";
+                if (header.startsWith(HEADER_PREFIX)) {
+                    sorted = header.contains(SORTED_TRAIT);
+                    fullyPeeled = header.contains(FULLY_PEELED_TRAIT);
+                }
+            }
+            return new PackedRefs(content, recordsStart, sorted, fullyPeeled);
+        } catch (IOException | RuntimeException e) {
+            content.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Whether every annotated tag is followed by its peeled target, i.e. a tag without a
+     * peeled target is a lightweight tag.
+     *
+     * @return {@code true} if the refs are fully peeled
+     */
+    boolean isFullyPeeled() {
+        return fullyPeeled;
+    }
+
+    /**
+     * Looks up a single ref.
+     *
+     * @param name The full name of the ref, e.g. {@code refs/remotes/origin/main}
+     * @return The object the ref points to, {@code null} if it's not packed
+     * @throws IOException if the file could not be read
+     */
+    @Nullable
+    ObjectId exactRef(@Nonnull String name) throws IOException {
+        ObjectId[] found = new ObjectId[1];
+        forEach(name, true, (refName, objectId, peeled) -> found[0] = objectId);
+        return found[0];
+    }
+
+    /**
+     * Visits all refs whose name starts with the given prefix.
+     *
+     * @param prefix The namespace, e.g. {@code refs/tags/}
+     * @param visitor Receives the refs
+     * @throws IOException if the file could not be read
+     */
+    void forEachWithPrefix(
+            @Nonnull String prefix,
+            @Nonnull Visitor visitor) throws IOException {
+        forEach(prefix, false, visitor);
+    }
+
+    private void forEach(
+            @Nonnull String key,
+            boolean exact,
+            @Nonnull Visitor visitor) throws IOException {
+        if (content == null) {
+            return;
+        }
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        int position = sorted ? lowerBound(rawKey) : recordsStart;
+        while (position < limit) {
+            int end = endOfLine(content, limit, position);
+            if (content.get(position) == PEELED_LINE_PREFIX || end - position <= NAME_OFFSET) {
+                position = end;
+                continue;
+            }
+            int nameEnd = end > position && content.get(end - 1) == NEW_LINE ? end - 1 : end;
+            int comparison = compareName(position, nameEnd, rawKey, !exact);
+            if (comparison == 0) {
+                String name = new String(content.bytes(position + NAME_OFFSET, nameEnd),
+                    StandardCharsets.UTF_8);
+                ObjectId peeled = null;
+                if (end < limit && content.get(end) == PEELED_LINE_PREFIX) {
+                    peeled = ObjectId.fromString(content.bytes(end + 1, end + NAME_OFFSET), 0);
+                }
+                ObjectId objectId = ObjectId.fromString(
+                    content.bytes(position, position + Constants.OBJECT_ID_STRING_LENGTH), 0);
+                visitor.visit(name, objectId, peeled);
+                if (exact) {
+                    return;
+                }
+            } else if (sorted && comparison > 0) {
+                // Past the namespace
+                return;
+            }
+            position = end;
+        }
+    }
+
+    /**
+     * The start of the first record whose name is not less than the given key.
+     */
+    private int lowerBound(@Nonnull byte[] rawKey) throws IOException {
+        int low = recordsStart;
+        int high = limit;
+        while (low < high) {
+            int middle = startOfRecord(low, low + (high - low) / 2);
+            int end = endOfLine(content, limit, middle);
+            int nameEnd = end > middle && content.get(end - 1) == NEW_LINE ? end - 1 : end;
+            if (end - middle <= NAME_OFFSET
+                    || compareName(middle, nameEnd, rawKey, false) < 0) {
+                low = end;
+                // Skip the peeled line that belongs to the record
+                if (low < high && content.get(low) == PEELED_LINE_PREFIX) {
+                    low = endOfLine(content, limit, low);
+                }
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The start of the record that contains the given position (but not before the lower
+     * bound), a peeled line belongs to the record in the line above.
+     */
+    private int startOfRecord(int lowerBound, int position) throws IOException {
+        int start = position;
+        while (start > lowerBound && content.get(start - 1) != NEW_LINE) {
+            start--;
+        }
+        if (start > lowerBound && content.get(start) == PEELED_LINE_PREFIX) {
+            start--;
+            while (start > lowerBound && content.get(start - 1) != NEW_LINE) {
+                start--;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Compares the name of the record with the key like {@code strcmp}. With
+     * {@code prefixMatch} a name that starts with the key is considered equal.
+     */
+    private int compareName(int recordStart, int nameEnd, @Nonnull byte[] rawKey,
+                            boolean prefixMatch) throws IOException {
+        int nameStart = recordStart + NAME_OFFSET;
+        int length = nameEnd - nameStart;
+        int common = Math.min(length, rawKey.length);
+        for (int i = 0; i < common; i++) {
+            int difference = (content.get(nameStart + i) & 0xff) - (rawKey[i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        if (prefixMatch && length >= rawKey.length) {
+            return 0;
+        }
+        return length - rawKey.length;
+    }
+
+    /**
+     * The position after the end of the line (including the line break) that contains the
+     * given position.
+     */
+    private static int endOfLine(
+            @Nonnull FileBlocks content,
+            int limit,
+            int position) throws IOException {
+        int end = position;
+        while (end < limit && content.get(end) != NEW_LINE) {
+            end++;
+        }
+        return end < limit ? end + 1 : end;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (content != null) {
+            content.close();
+        }
+    }
+}
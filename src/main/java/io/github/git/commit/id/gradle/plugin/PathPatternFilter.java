@@ -0,0 +1,195 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Decides which paths (relative to the root of the working tree, separated by {@code /})
+ * take part in the {@link WorkingTreeDirtyCheck}.
+ *
+ * <p>The patterns follow the conventions of {@code .gitignore}: {@code *} matches anything
+ * but a {@code /}, {@code ?} matches a single character but a {@code /} and {@code **}
+ * matches across directories. A pattern that does not contain a {@code /} (except for a
+ * trailing one) matches on any level, e.g. {@code node_modules/} excludes every
+ * directory of that name. A pattern that matches a directory matches everything below it.
+ *
+ * <p>Directories are pruned before they are read: excluded directories as well as
+ * directories that can't contain any path matching the includes are never entered.
+ */
+final class PathPatternFilter {
+    /**
+     * A filter that accepts every path.
+     */
+    static final PathPatternFilter ALL =
+        new PathPatternFilter(Collections.emptyList(), Collections.emptyList());
+
+    private final List<Pattern> includes;
+    private final List<String> includePrefixes;
+    private final List<Pattern> excludes;
+
+    private PathPatternFilter(@Nonnull List<String> includes, @Nonnull List<String> excludes) {
+        this.includes = new ArrayList<>();
+        this.includePrefixes = new ArrayList<>();
+        for (String include : includes) {
+            String normalized = normalize(include);
+            if (!normalized.isEmpty()) {
+                this.includes.add(toRegex(normalized));
+                this.includePrefixes.add(literalDirectoryPrefixOf(normalized));
+            }
+        }
+        this.excludes = new ArrayList<>();
+        for (String exclude : excludes) {
+            String normalized = normalize(exclude);
+            if (!normalized.isEmpty()) {
+                this.excludes.add(toRegex(normalized));
+            }
+        }
+    }
+
+    /**
+     * Creates a filter for the given patterns.
+     *
+     * @param includes The patterns of the paths that should be considered, all paths are
+     *                 considered if this is {@code null} or empty
+     * @param excludes The patterns of the paths that should not be considered
+     * @return The filter
+     */
+    static PathPatternFilter of(@Nullable List<String> includes, @Nullable List<String> excludes) {
+        if ((includes == null || includes.isEmpty()) && (excludes == null || excludes.isEmpty())) {
+            return ALL;
+        }
+        return new PathPatternFilter(
+            includes == null ? Collections.emptyList() : includes,
+            excludes == null ? Collections.emptyList() : excludes);
+    }
+
+    /**
+     * Whether the directory with the given path should not be entered.
+     *
+     * @param path The path of the directory
+     * @return {@code true} if nothing below the directory should be considered
+     */
+    boolean isDirectoryPruned(@Nonnull String path) {
+        if (isExcluded(path)) {
+            return true;
+        }
+        if (includes.isEmpty()) {
+            return false;
+        }
+        String directory = path + "/";
+        for (String prefix : includePrefixes) {
+            if (prefix.startsWith(directory) || directory.startsWith(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the file with the given path should be considered.
+     *
+     * @param path The path of the file
+     * @return {@code true} if the file should be considered
+     */
+    boolean isFileIncluded(@Nonnull String path) {
+        if (isExcluded(path)) {
+            return false;
+        }
+        if (includes.isEmpty()) {
+            return true;
+        }
+        for (Pattern include : includes) {
+            if (include.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isExcluded(@Nonnull String path) {
+        for (Pattern exclude : excludes) {
+            if (exclude.matcher(path).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(@Nonnull String pattern) {
+        String normalized = pattern.trim().replace('\\', '/');
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (!normalized.contains("/")) {
+            // Like .gitignore, a plain name matches on any level
+            return normalized.isEmpty() ? normalized : "**/" + normalized;
+        }
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        return normalized;
+    }
+
+    /**
+     * The directories (ending with {@code /}) that precede the first wildcard.
+     */
+    private static String literalDirectoryPrefixOf(@Nonnull String pattern) {
+        int wildcard = 0;
+        while (wildcard < pattern.length() && "*?".indexOf(pattern.charAt(wildcard)) < 0) {
+            wildcard++;
+        }
+        if (wildcard == pattern.length()) {
+            // A literal path might still be a directory
+            return pattern + "/";
+        }
+        return pattern.substring(0, pattern.lastIndexOf('/', wildcard) + 1);
+    }
+
+    private static Pattern toRegex(@Nonnull String pattern) {
+        StringBuilder regex = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '*' && pattern.startsWith("**/", i)) {
+                regex.append("(?:.*/)?");
+                i += 3;
+            } else if (c == '*' && pattern.startsWith("**", i)) {
+                regex.append(".*");
+                i += 2;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+                i++;
+            } else if (c == '?') {
+                regex.append("[^/]");
+                i++;
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+                i++;
+            }
+        }
+        // Everything below a matching directory matches as well
+        regex.append("(?:/.*)?");
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * An index of all tags in a repository keyed by the object they (fully peeled) point to.
+ *
+ * <p>Repositories with a large amount of tags make it expensive to find the tags that
+ * point to a given commit, since every tag ref would need to be resolved and peeled.
+ * Most of those tags are usually stored in {@code packed-refs} which already contains
+ * the peeled target of annotated tags (the {@code ^<object-id>} lines), so the index is built
+ * from there and only the few loose tags need to be peeled with the object database.
+ * Only the {@code refs/tags/} namespace of {@code packed-refs} is read
+ * (refer to {@link PackedRefs}), other refs (e.g. one per pull request) are skipped.
+ *
+ * <p>The tags are read from the common directory of the repository, so all worktrees share
+ * one index (refer to {@link GitStateFiles#commonDirOf(File)}).
+ *
+ * <p>Indexes are kept for the lifetime of the gradle daemon and are only rebuilt when
+ * {@code packed-refs} or any directory below {@code refs/tags} was modified. At most
+ * {@link #MAX_INDEXES} indexes are kept (least recently used indexes are evicted first),
+ * so a long-lived daemon that builds many checkouts does not retain the tags of all of them.
+ */
+final class PeeledTagIndex {
+    /**
+     * The maximum number of repositories whose index is kept
+     * (the same as the number of repositories in the {@link RepositoryPool}).
+     */
+    static final int MAX_INDEXES = RepositoryPool.MAX_REPOSITORIES;
+
+    private static final Map<File, PeeledTagIndex> INDEXES =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, PeeledTagIndex> eldest) {
+                return size() > MAX_INDEXES;
+            }
+        };
+
+    private final Map<String, Long> snapshot;
+    private final Map<ObjectId, List<String>> tagsByTarget;
+    private final Map<String, Boolean> annotatedByName;
+    private volatile String digest;
+
+    private PeeledTagIndex(
+            @Nonnull Map<String, Long> snapshot,
+            @Nonnull Map<ObjectId, List<String>> tagsByTarget,
+            @Nonnull Map<String, Boolean> annotatedByName) {
+        this.snapshot = snapshot;
+        this.tagsByTarget = tagsByTarget;
+        this.annotatedByName = annotatedByName;
+    }
+
+    /**
+     * Returns the index for the given repository, rebuilding it only when the tag refs
+     * have changed since it was built.
+     *
+     * @param repository The repository that should be indexed
+     * @return The (potentially cached) index
+     * @throws IOException if the refs could not be read
+     */
+    static PeeledTagIndex forRepository(@Nonnull Repository repository) throws IOException {
+        // Tags are shared by all worktrees, so they live in the common directory
+        File commonDir =
+            GitStateFiles.commonDirOf(repository.getDirectory()).getCanonicalFile();
+        Map<String, Long> currentSnapshot = snapshotOf(commonDir);
+        PeeledTagIndex index;
+        synchronized (INDEXES) {
+            index = INDEXES.get(commonDir);
+        }
+        if (index != null && index.snapshot.equals(currentSnapshot)) {
+            return index;
+        }
+        // Concurrent tasks wait for the index that is being built instead of building it again
+        ReentrantLock lock = StripedLocks.REPOSITORIES.forKey(commonDir);
+        lock.lock();
+        try {
+            synchronized (INDEXES) {
+                index = INDEXES.get(commonDir);
+            }
+            if (index == null || !index.snapshot.equals(currentSnapshot)) {
+                index = build(repository, commonDir, currentSnapshot);
+                synchronized (INDEXES) {
+                    INDEXES.put(commonDir, index);
+                }
+            }
+            return index;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The names (without {@code refs/tags/}) of all tags that point to the given object,
+     * sorted by name.
+     *
+     * @param objectId The object the tags should point to
+     * @return The names of the tags, might be empty
+     */
+    List<String> tagsPointingAt(@Nonnull ObjectId objectId) {
+        return tagsByTarget.getOrDefault(objectId, Collections.emptyList());
+    }
+
+    /**
+     * Whether the tag with the given name (without {@code refs/tags/}) is an annotated tag.
+     *
+     * @param tagName The name of the tag
+     * @return {@code true} if the tag is known and annotated
+     */
+    boolean isAnnotated(@Nonnull String tagName) {
+        return annotatedByName.getOrDefault(tagName, false);
+    }
+
+    /**
+     * A digest of the names and (peeled) targets of all tags, which changes whenever a tag
+     * is created, moved or deleted.
+     *
+     * @return The hex digest of the tags
+     */
+    String digest() {
+        String result = digest;
+        if (result == null) {
+            Map<String, ObjectId> targets = new TreeMap<>();
+            for (Map.Entry<ObjectId, List<String>> e : tagsByTarget.entrySet()) {
+                for (String name : e.getValue()) {
+                    targets.put(name, e.getKey());
+                }
+            }
+            MessageDigest messageDigest = Constants.newMessageDigest();
+            for (Map.Entry<String, ObjectId> e : targets.entrySet()) {
+                messageDigest.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+                messageDigest.update((byte) 0);
+                messageDigest.update(e.getValue().name().getBytes(StandardCharsets.US_ASCII));
+                messageDigest.update((byte) '\n');
+            }
+            result = ObjectId.fromRaw(messageDigest.digest()).name();
+            digest = result;
+        }
+        return result;
+    }
+
+    /**
+     * The number of tags that are part of the index.
+     *
+     * @return The number of indexed tags
+     */
+    int size() {
+        return annotatedByName.size();
+    }
+
+    private static Map<String, Long> snapshotOf(@Nonnull File commonDir) {
+        Map<String, Long> snapshot = new HashMap<>();
+        File packedRefs = new File(commonDir, Constants.PACKED_REFS);
+        snapshot.put(Constants.PACKED_REFS, packedRefs.lastModified());
+        snapshot.put(Constants.PACKED_REFS + "#length", packedRefs.length());
+        // Creating, updating or deleting a loose ref always (re-)links a file
+        // in its directory, which is what updates the directory timestamp.
+        collectDirectoryTimestamps(
+            new File(commonDir, Constants.R_TAGS), Constants.R_TAGS, snapshot);
+        File reftable = new File(commonDir, RefLookup.REFTABLE_TABLES_LIST);
+        snapshot.put(RefLookup.REFTABLE_TABLES_LIST, reftable.lastModified());
+        return snapshot;
+    }
+
+    private static void collectDirectoryTimestamps(
+            @Nonnull File dir,
+            @Nonnull String name,
+            @Nonnull Map<String, Long> snapshot) {
+        File[] children = dir.listFiles(File::isDirectory);
+        if (children == null) {
+            return;
+        }
+        snapshot.put(name, dir.lastModified());
+        for (File child : children) {
+            collectDirectoryTimestamps(child, name + child.getName() + "/", snapshot);
+        }
+    }
+
+    private static PeeledTagIndex build(
+            @Nonnull Repository repository,
+            @Nonnull File commonDir,
+            @Nonnull Map<String, Long> snapshot) throws IOException {
+        // tag name -> peeled target, sorted by name
+        Map<String, ObjectId> targets = new TreeMap<>();
+        Map<String, Boolean> annotated = new HashMap<>();
+        Set<String> needsPeeling = new HashSet<>();
+        readPackedRefs(
+            new File(commonDir, Constants.PACKED_REFS), targets, annotated, needsPeeling);
+
+        // Loose tags take precedence over packed ones, there usually are only a few of them
+        Map<String, ObjectId> toPeel = new HashMap<>();
+        for (String name : needsPeeling) {
+            toPeel.put(name, targets.get(name));
+        }
+        if (RefLookup.usesReftable(commonDir)) {
+            // Without loose files and packed-refs the ref database needs to be asked
+            for (Ref ref : repository.getRefDatabase().getRefsByPrefix(Constants.R_TAGS)) {
+                toPeel.put(ref.getName().substring(Constants.R_TAGS.length()), ref.getObjectId());
+            }
+        } else {
+            readLooseTags(repository, new File(commonDir, Constants.R_TAGS), "", toPeel);
+        }
+        try (RevWalk walk = new RevWalk(repository)) {
+            for (Map.Entry<String, ObjectId> e : toPeel.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Indexing the tags was interrupted");
+                }
+                if (e.getValue() == null) {
+                    continue;
+                }
+                RevObject object = walk.parseAny(e.getValue());
+                targets.put(e.getKey(), walk.peel(object).copy());
+                annotated.put(e.getKey(), object.getType() == Constants.OBJ_TAG);
+            }
+        }
+
+        Map<ObjectId, List<String>> tagsByTarget = new HashMap<>();
+        for (Map.Entry<String, ObjectId> e : targets.entrySet()) {
+            tagsByTarget.computeIfAbsent(e.getValue(), ignore -> new ArrayList<>(1))
+                .add(e.getKey());
+        }
+        return new PeeledTagIndex(snapshot, tagsByTarget, annotated);
+    }
+
+    private static void readLooseTags(
+            @Nonnull Repository repository,
+            @Nonnull File dir,
+            @Nonnull String namePrefix,
+            @Nonnull Map<String, ObjectId> looseTags) throws IOException {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Indexing the tags was interrupted");
+            }
+            String name = namePrefix + child.getName();
+            if (child.isDirectory()) {
+                readLooseTags(repository, child, name + "/", looseTags);
+                continue;
+            }
+            if (name.endsWith(".lock")) {
+                continue;
+            }
+            String content = new String(
+                Files.readAllBytes(child.toPath()), StandardCharsets.UTF_8).trim();
+            if (ObjectId.isId(content)) {
+                looseTags.put(name, ObjectId.fromString(content));
+            } else {
+                // e.g. a symbolic ref, leave the resolution to the ref database
+                Ref ref = repository.exactRef(Constants.R_TAGS + name);
+                if (ref != null) {
+                    looseTags.put(name, ref.getObjectId());
+                }
+            }
+        }
+    }
+
+    private static void readPackedRefs(
+            @Nonnull File packedRefs,
+            @Nonnull Map<String, ObjectId> targets,
+            @Nonnull Map<String, Boolean> annotated,
+            @Nonnull Set<String> needsPeeling) throws IOException {
+        try (PackedRefs refs = PackedRefs.open(packedRefs)) {
+            refs.forEachWithPrefix(Constants.R_TAGS, (refName, objectId, peeledObjectId) -> {
+                String name = refName.substring(Constants.R_TAGS.length());
+                targets.put(name, peeledObjectId != null ? peeledObjectId : objectId);
+                annotated.put(name, peeledObjectId != null);
+                if (peeledObjectId == null && !refs.isFullyPeeled()) {
+                    // Without the trait a missing peeled line does not
+                    // tell that the tag is a lightweight one.
+                    needsPeeling.add(name);
+                }
+            });
+        }
+    }
+}
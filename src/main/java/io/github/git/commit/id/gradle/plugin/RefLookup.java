@@ -0,0 +1,131 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Resolves individual refs without loading the whole ref database.
+ *
+ * <p>For the files based ref storage a ref is either a loose file below {@code refs/} or a
+ * line in {@code packed-refs}, which is looked up via {@link PackedRefs} (JGit would parse
+ * all packed refs for the first lookup). Repositories that use git's {@code reftable}
+ * format are left to JGit, whose reftable reader seeks the ref by the index of the
+ * sorted tables.
+ */
+final class RefLookup {
+    /**
+     * The directory of the {@code reftable} ref storage.
+     */
+    static final String REFTABLE_DIRECTORY = "reftable";
+
+    /**
+     * The file that lists the tables of the {@code reftable} ref storage, rewritten on
+     * every ref update.
+     */
+    static final String REFTABLE_TABLES_LIST = REFTABLE_DIRECTORY + "/tables.list";
+
+    private static final String SYMREF_PREFIX = "ref: ";
+    private static final int MAX_SYMREF_DEPTH = 5;
+
+    private RefLookup() {
+    }
+
+    /**
+     * Whether the repository stores its refs in the {@code reftable} format.
+     *
+     * @param commonDir The (common) git directory of the repository
+     * @return {@code true} if the refs are stored as reftable
+     */
+    static boolean usesReftable(@Nonnull File commonDir) {
+        return new File(commonDir, REFTABLE_TABLES_LIST).isFile();
+    }
+
+    /**
+     * The name of the ref the given symbolic ref points to, e.g. {@code refs/heads/main}
+     * for {@code HEAD}.
+     *
+     * @param repository The repository
+     * @param symbolicRefName The name of the symbolic ref, e.g. {@code HEAD}
+     * @return The name of the target, {@code null} if the ref is not symbolic (e.g. detached)
+     * @throws IOException if the ref could not be read
+     */
+    @Nullable
+    static String symbolicTarget(
+            @Nonnull Repository repository,
+            @Nonnull String symbolicRefName) throws IOException {
+        File gitDir = repository.getDirectory();
+        if (usesReftable(GitStateFiles.commonDirOf(gitDir))) {
+            Ref ref = repository.exactRef(symbolicRefName);
+            return ref != null && ref.isSymbolic() ? ref.getTarget().getName() : null;
+        }
+        String content = readTrimmed(new File(gitDir, symbolicRefName));
+        return content.startsWith(SYMREF_PREFIX)
+            ? content.substring(SYMREF_PREFIX.length()).trim() : null;
+    }
+
+    /**
+     * Resolves the given ref to the object it points to.
+     *
+     * @param repository The repository
+     * @param refName The full name of the ref, e.g. {@code refs/remotes/origin/main}
+     * @return The object id, {@code null} if the ref does not exist
+     * @throws IOException if the ref could not be read
+     */
+    @Nullable
+    static ObjectId resolve(
+            @Nonnull Repository repository,
+            @Nonnull String refName) throws IOException {
+        File commonDir = GitStateFiles.commonDirOf(repository.getDirectory());
+        if (usesReftable(commonDir)) {
+            Ref ref = repository.exactRef(refName);
+            return ref == null ? null : ref.getObjectId();
+        }
+        String name = refName;
+        for (int depth = 0; depth < MAX_SYMREF_DEPTH; depth++) {
+            String content = readTrimmed(new File(commonDir, name));
+            if (content.isEmpty()) {
+                try (PackedRefs packedRefs =
+                         PackedRefs.open(new File(commonDir, Constants.PACKED_REFS))) {
+                    return packedRefs.exactRef(name);
+                }
+            }
+            if (!content.startsWith(SYMREF_PREFIX)) {
+                return ObjectId.isId(content) ? ObjectId.fromString(content) : null;
+            }
+            name = content.substring(SYMREF_PREFIX.length()).trim();
+        }
+        return null;
+    }
+
+    private static String readTrimmed(@Nonnull File file) throws IOException {
+        if (!file.isFile()) {
+            return "";
+        }
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+/**
+ * A pool of open JGit {@link Repository} handles that lives as long as the gradle daemon.
+ *
+ * <p>Opening a repository means re-reading the pack indexes and starting with cold caches.
+ * Since the same repository is usually accessed over and over again (by every build and
+ * every project) the handles are kept open and shared.
+ * A handle is replaced as soon as packs were added to or removed from the repository
+ * (e.g. after a {@code git fetch} or {@code git gc}).
+ *
+ * <p>The handles are reference counted with JGit's own use count: every
+ * {@link #acquire(File)} must be paired with a {@link Repository#close()} of the returned
+ * repository (e.g. by using try-with-resources). A replaced handle is only really closed
+ * once the last user released it, so it is safe to use the pool from multiple threads.
+ */
+final class RepositoryPool {
+    /**
+     * The maximum number of repositories that are kept open
+     * (large enough for a repository with a few dozen submodules).
+     */
+    static final int MAX_REPOSITORIES = 32;
+
+    private static final Map<File, PooledRepository> POOL =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, PooledRepository> eldest) {
+                if (size() > MAX_REPOSITORIES) {
+                    eldest.getValue().repository.close();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+    private static WindowCacheConfig installedWindowCacheConfig;
+
+    private static final class PooledRepository {
+        private final Repository repository;
+        private final String packs;
+
+        private PooledRepository(@Nonnull Repository repository, @Nonnull String packs) {
+            this.repository = repository;
+            this.packs = packs;
+        }
+    }
+
+    private RepositoryPool() {
+    }
+
+    /**
+     * Returns an open repository for the given {@code .git} directory.
+     * The caller must {@link Repository#close()} the repository once it's done.
+     *
+     * @param dotGitDirectory The {@code .git} directory of the repository
+     * @return The shared repository
+     * @throws IOException if the repository could not be opened
+     */
+    static Repository acquire(@Nonnull File dotGitDirectory) throws IOException {
+        File gitDir = dotGitDirectory.getCanonicalFile();
+        String packs = packsOf(gitDir);
+        synchronized (POOL) {
+            PooledRepository pooled = POOL.get(gitDir);
+            if (pooled != null && pooled.packs.equals(packs)) {
+                pooled.repository.incrementOpen();
+                return pooled.repository;
+            }
+        }
+        // Only repositories that share the stripe wait while the repository is opened
+        ReentrantLock lock = StripedLocks.REPOSITORIES.forKey(gitDir);
+        lock.lock();
+        try {
+            synchronized (POOL) {
+                PooledRepository pooled = POOL.get(gitDir);
+                if (pooled != null && pooled.packs.equals(packs)) {
+                    // Opened by another thread in the meantime
+                    pooled.repository.incrementOpen();
+                    return pooled.repository;
+                }
+            }
+            Repository repository = new FileRepositoryBuilder()
+                .setGitDir(gitDir)
+                .setMustExist(true)
+                .build();
+            synchronized (POOL) {
+                PooledRepository replaced =
+                    POOL.put(gitDir, new PooledRepository(repository, packs));
+                if (replaced != null) {
+                    replaced.repository.close();
+                }
+                repository.incrementOpen();
+                return repository;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Configures the JGit window cache that is shared by all repositories of the JVM.
+     * Settings that are {@code null} keep the JGit defaults. The cache is only
+     * re-installed when the configuration actually changed, since installing it
+     * discards everything that is cached.
+     *
+     * @param packedGitLimit The maximum number of bytes of pack files held in memory
+     * @param packedGitMmap Whether pack files should be accessed via memory mapping
+     * @param deltaBaseCacheLimit The maximum number of bytes used to cache delta bases
+     */
+    static void configureWindowCache(
+            @Nullable Long packedGitLimit,
+            @Nullable Boolean packedGitMmap,
+            @Nullable Integer deltaBaseCacheLimit) {
+        if (packedGitLimit == null && packedGitMmap == null && deltaBaseCacheLimit == null) {
+            return;
+        }
+        WindowCacheConfig config = new WindowCacheConfig();
+        if (packedGitLimit != null) {
+            config.setPackedGitLimit(packedGitLimit);
+        }
+        if (packedGitMmap != null) {
+            config.setPackedGitMMAP(packedGitMmap);
+        }
+        if (deltaBaseCacheLimit != null) {
+            config.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+        }
+        synchronized (POOL) {
+            if (installedWindowCacheConfig != null
+                    && installedWindowCacheConfig.getPackedGitLimit() == config.getPackedGitLimit()
+                    && installedWindowCacheConfig.isPackedGitMMAP() == config.isPackedGitMMAP()
+                    && installedWindowCacheConfig.getDeltaBaseCacheLimit()
+                        == config.getDeltaBaseCacheLimit()) {
+                return;
+            }
+            config.install();
+            installedWindowCacheConfig = config;
+        }
+    }
+
+    private static String packsOf(@Nonnull File gitDir) {
+        // The objects of a linked worktree are stored in the common git directory
+        String[] packs = new File(GitStateFiles.commonDirOf(gitDir), "objects/pack")
+            .list((dir, name) -> name.endsWith(".pack"));
+        if (packs == null) {
+            return "";
+        }
+        Arrays.sort(packs);
+        return String.join(",", packs);
+    }
+}
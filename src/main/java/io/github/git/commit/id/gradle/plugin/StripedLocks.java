@@ -0,0 +1,59 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nonnull;
+
+/**
+ * A fixed number of locks that are assigned to keys (e.g. repositories) by their hash.
+ *
+ * <p>With {@code --parallel} many tasks access the state that is shared across the gradle
+ * daemon at the same time. A single lock for all of that state would serialize work on
+ * unrelated repositories, whereas a lock per key would grow without bounds. Keys that share
+ * a stripe merely wait for each other, which is always correct.
+ */
+final class StripedLocks {
+    /**
+     * The locks that guard the state kept per repository, keyed by the canonical
+     * {@code .git} directory.
+     */
+    static final StripedLocks REPOSITORIES = new StripedLocks(64);
+
+    private final ReentrantLock[] locks;
+
+    StripedLocks(int stripes) {
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Returns the lock that guards the given key.
+     *
+     * @param key The key
+     * @return The lock of the stripe the key belongs to
+     */
+    ReentrantLock forKey(@Nonnull Object key) {
+        int hash = key.hashCode();
+        // Spread the bits, like HashMap does
+        hash ^= hash >>> 16;
+        return locks[Math.floorMod(hash, locks.length)];
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.submodule.SubmoduleWalk;
+
+/**
+ * Collects the commit id, the branch and the dirty state of all submodules of a repository.
+ *
+ * <p>The submodules are discovered from the gitlinks in the {@code index} of the superproject
+ * (and named by {@code .gitmodules}), nested submodules are not considered. Every submodule
+ * is inspected on its own thread. The commit id and the branch are cached per submodule with
+ * the {@link GitStateFingerprint} of its git directory, so only submodules whose
+ * {@code HEAD} (or refs) changed are read again. The dirty state depends on the working
+ * tree and is always checked, since an edited file changes neither the refs nor the
+ * {@code index} of the submodule. A submodule that is not checked out only reports the commit
+ * recorded in the superproject.
+ */
+final class SubmoduleMetadata {
+    /**
+     * Common start (without the prefix of the generated properties) of all submodule
+     * properties, followed by the path of the submodule,
+     * e.g. {@code git.submodules.libs/core.commit.id.full}.
+     */
+    static final String PROPERTIES_PREFIX = "submodules.";
+
+    /**
+     * The maximum number of submodules for which the commit id and branch are cached.
+     */
+    static final int MAX_ENTRIES = 256;
+
+    private static final Map<File, CachedHead> HEADS =
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<File, CachedHead> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    private static final class CachedHead {
+        private final GitStateFingerprint fingerprint;
+        private final String commitId;
+        private final String abbreviatedCommitId;
+        private final String branch;
+
+        private CachedHead(
+                @Nonnull GitStateFingerprint fingerprint,
+                @Nonnull String commitId,
+                @Nonnull String abbreviatedCommitId,
+                @Nonnull String branch) {
+            this.fingerprint = fingerprint;
+            this.commitId = commitId;
+            this.abbreviatedCommitId = abbreviatedCommitId;
+            this.branch = branch;
+        }
+    }
+
+    /**
+     * A submodule as it was found in the index of the superproject.
+     */
+    private static final class Gitlink {
+        private final String path;
+        private final ObjectId recordedCommitId;
+        private final File gitDirectory;
+
+        private Gitlink(
+                @Nonnull String path,
+                @Nonnull ObjectId recordedCommitId,
+                @Nullable File gitDirectory) {
+            this.path = path;
+            this.recordedCommitId = recordedCommitId;
+            this.gitDirectory = gitDirectory;
+        }
+    }
+
+    /**
+     * The metadata of a single submodule.
+     */
+    static final class Submodule {
+        private final String path;
+        private final String commitId;
+        private final String abbreviatedCommitId;
+        private final String branch;
+        private final Boolean dirty;
+
+        private Submodule(
+                @Nonnull String path,
+                @Nonnull String commitId,
+                @Nullable String abbreviatedCommitId,
+                @Nullable String branch,
+                @Nullable Boolean dirty) {
+            this.path = path;
+            this.commitId = commitId;
+            this.abbreviatedCommitId = abbreviatedCommitId;
+            this.branch = branch;
+            this.dirty = dirty;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        /**
+         * The checked out commit, or the commit recorded in the superproject if the submodule
+         * is not checked out.
+         */
+        String getCommitId() {
+            return commitId;
+        }
+
+        /**
+         * {@code null} if the submodule is not checked out.
+         */
+        @Nullable
+        String getAbbreviatedCommitId() {
+            return abbreviatedCommitId;
+        }
+
+        /**
+         * The checked out branch or the commit id if the {@code HEAD} is detached,
+         * {@code null} if the submodule is not checked out.
+         */
+        @Nullable
+        String getBranch() {
+            return branch;
+        }
+
+        /**
+         * {@code null} if the submodule is not checked out.
+         */
+        @Nullable
+        Boolean getDirty() {
+            return dirty;
+        }
+
+        boolean isCheckedOut() {
+            return branch != null;
+        }
+    }
+
+    private SubmoduleMetadata() {
+    }
+
+    /**
+     * Returns the git directories of all submodules that are checked out.
+     *
+     * @param superproject The repository that contains the submodules
+     * @return The git directories
+     * @throws IOException if the index of the superproject could not be read
+     */
+    static List<File> gitDirectoriesOf(@Nonnull Repository superproject) throws IOException {
+        List<File> gitDirectories = new ArrayList<>();
+        for (Gitlink gitlink : discover(superproject)) {
+            if (gitlink.gitDirectory != null) {
+                gitDirectories.add(gitlink.gitDirectory);
+            }
+        }
+        return gitDirectories;
+    }
+
+    /**
+     * Collects the metadata of all submodules in parallel.
+     *
+     * @param superproject The repository that contains the submodules
+     * @param abbrevLength The minimum length of the abbreviated commit ids
+     * @param abbreviationMode How to make sure the abbreviated commit ids are unique
+     * @param parallelism The maximum number of submodules that are inspected concurrently
+     * @return The submodules in the order of their paths
+     * @throws IOException if a repository could not be read
+     */
+    static List<Submodule> collect(
+            @Nonnull Repository superproject,
+            int abbrevLength,
+            @Nonnull AbbreviationMode abbreviationMode,
+            int parallelism) throws IOException {
+        List<Gitlink> gitlinks = discover(superproject);
+        if (gitlinks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Callable<Submodule>> tasks = new ArrayList<>();
+        for (Gitlink gitlink : gitlinks) {
+            tasks.add(() -> collect(gitlink, abbrevLength, abbreviationMode));
+        }
+        ForkJoinPool pool =
+            new ForkJoinPool(Math.max(1, Math.min(parallelism, gitlinks.size())));
+        try {
+            List<Submodule> submodules = new ArrayList<>();
+            for (Future<Submodule> future : pool.invokeAll(tasks)) {
+                submodules.add(future.get());
+            }
+            return submodules;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The collection of the submodules was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    static void clear() {
+        synchronized (HEADS) {
+            HEADS.clear();
+        }
+    }
+
+    private static List<Gitlink> discover(@Nonnull Repository superproject) throws IOException {
+        List<Gitlink> gitlinks = new ArrayList<>();
+        if (superproject.isBare()) {
+            return gitlinks;
+        }
+        try (SubmoduleWalk walk = SubmoduleWalk.forIndex(superproject)) {
+            while (walk.next()) {
+                File directory = walk.getDirectory();
+                File gitDirectory = null;
+                if (new File(directory, Constants.DOT_GIT).exists()) {
+                    // Follows the "gitdir:" of the .git file of absorbed submodules
+                    FileRepositoryBuilder builder = new FileRepositoryBuilder();
+                    builder.setWorkTree(directory);
+                    builder.setup();
+                    gitDirectory = builder.getGitDir();
+                }
+                gitlinks.add(new Gitlink(walk.getPath(), walk.getObjectId(), gitDirectory));
+            }
+        }
+        return gitlinks;
+    }
+
+    private static Submodule collect(
+            @Nonnull Gitlink gitlink,
+            int abbrevLength,
+            @Nonnull AbbreviationMode abbreviationMode) throws IOException {
+        if (gitlink.gitDirectory == null) {
+            return new Submodule(gitlink.path, gitlink.recordedCommitId.name(), null, null, null);
+        }
+        try (Repository repository = RepositoryPool.acquire(gitlink.gitDirectory)) {
+            GitStateFingerprint fingerprint = GitStateFingerprint.of(
+                gitlink.gitDirectory, abbrevLength + "|" + abbreviationMode.name());
+            File key = gitlink.gitDirectory.getCanonicalFile();
+            CachedHead head;
+            synchronized (HEADS) {
+                head = HEADS.get(key);
+            }
+            if (head == null || fingerprint.isRacy() || !head.fingerprint.equals(fingerprint)) {
+                ObjectId commitId = repository.resolve(Constants.HEAD);
+                if (commitId == null) {
+                    // Nothing committed yet
+                    return new Submodule(
+                        gitlink.path, gitlink.recordedCommitId.name(), null, null, null);
+                }
+                head = new CachedHead(
+                    fingerprint,
+                    commitId.name(),
+                    CommitIdAbbreviation.abbreviate(
+                        repository, commitId, abbrevLength, abbreviationMode),
+                    repository.getBranch());
+                if (!fingerprint.isRacy()) {
+                    synchronized (HEADS) {
+                        HEADS.put(key, head);
+                    }
+                }
+            }
+            // Submodules are already inspected concurrently
+            boolean dirty = WorkingTreeDirtyCheck.isDirty(repository, 1, PathPatternFilter.ALL);
+            return new Submodule(
+                gitlink.path, head.commitId, head.abbreviatedCommitId, head.branch, dirty);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Reader} that replaces all {@code ${name}} tokens of known properties while
+ * streaming, e.g. {@code ${git.commit.id.abbrev}}. Tokens of unknown properties are kept
+ * as they are.
+ *
+ * <p>All tokens share the {@code ${} start, so the properties are matched with a single
+ * lookup once the closing brace was found. Since no token can be longer than the longest
+ * property name, at most that many characters are held back at any time, which keeps the
+ * memory constant regardless of the size of the file. Text without a {@code $} is passed
+ * through in bulk.
+ */
+final class TokenReplacingReader extends FilterReader {
+    private static final char TOKEN_START = '$';
+    private static final char TOKEN_OPEN = '{';
+    private static final char TOKEN_CLOSE = '}';
+
+    /**
+     * The properties that can be replaced, precompiled for {@link TokenReplacingReader}s.
+     */
+    static final class Tokens {
+        private final Map<String, String> values;
+        private final int maxNameLength;
+
+        Tokens(@Nonnull Map<String, String> properties) {
+            this.values = new HashMap<>(properties);
+            int max = 0;
+            for (String name : properties.keySet()) {
+                max = Math.max(max, name.length());
+            }
+            this.maxNameLength = max;
+        }
+    }
+
+    private final Tokens tokens;
+    /** Characters that were read ahead and still need to be returned. */
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingPosition;
+    private boolean containsTokens;
+
+    TokenReplacingReader(@Nonnull Reader in, @Nonnull Tokens tokens) {
+        super(in);
+        this.tokens = tokens;
+    }
+
+    /**
+     * Whether at least one <code>${</code> was read so far, no matter whether it started the token
+     * of a known property. Other properties might contain a value for it.
+     *
+     * @return {@code true} if the text contains a token
+     */
+    boolean hasTokens() {
+        return containsTokens;
+    }
+
+    @Override
+    public int read() throws IOException {
+        char[] c = new char[1];
+        return read(c, 0, 1) < 0 ? -1 : c[0];
+    }
+
+    @Override
+    public int read(@Nonnull char[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int written = 0;
+        while (written < length) {
+            if (pendingPosition < pending.length()) {
+                int n = Math.min(length - written, pending.length() - pendingPosition);
+                pending.getChars(pendingPosition, pendingPosition + n, buffer, offset + written);
+                pendingPosition += n;
+                written += n;
+                continue;
+            }
+            pending.setLength(0);
+            pendingPosition = 0;
+            if (written > 0 && !in.ready()) {
+                break;
+            }
+            int n = in.read(buffer, offset + written, length - written);
+            if (n < 0) {
+                break;
+            }
+            int end = offset + written + n;
+            int start = indexOf(buffer, offset + written, end, TOKEN_START);
+            if (start < 0) {
+                written += n;
+                continue;
+            }
+            // Everything after the start of a potential token is processed char by char
+            pending.append(buffer, start, end - start);
+            written = start - offset;
+            resolvePending();
+        }
+        return written == 0 ? -1 : written;
+    }
+
+    /**
+     * Resolves the tokens at the start of {@link #pending}, reading ahead as needed.
+     */
+    private void resolvePending() throws IOException {
+        StringBuilder resolved = new StringBuilder();
+        int position = 0;
+        while (position < pending.length()) {
+            char c = pending.charAt(position);
+            if (c != TOKEN_START) {
+                resolved.append(c);
+                position++;
+                continue;
+            }
+            // Make sure the longest possible token is available
+            int tokenLength = tokens.maxNameLength + 3;
+            while (pending.length() - position < tokenLength) {
+                int next = in.read();
+                if (next < 0) {
+                    break;
+                }
+                pending.append((char) next);
+            }
+            int close = -1;
+            if (position + 1 < pending.length() && pending.charAt(position + 1) == TOKEN_OPEN) {
+                containsTokens = true;
+                int limit = Math.min(pending.length(), position + tokenLength);
+                for (int i = position + 2; i < limit; i++) {
+                    if (pending.charAt(i) == TOKEN_CLOSE) {
+                        close = i;
+                        break;
+                    }
+                }
+            }
+            String value = close < 0 ? null
+                : tokens.values.get(pending.substring(position + 2, close));
+            if (value == null) {
+                resolved.append(c);
+                position++;
+            } else {
+                resolved.append(value);
+                position = close + 1;
+            }
+        }
+        pending.setLength(0);
+        pending.append(resolved);
+        pendingPosition = 0;
+    }
+
+    private static int indexOf(@Nonnull char[] buffer, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip is not supported");
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * A small persistent cache that maps commit ids to the number of commits that are reachable
+ * from them (e.g. the {@code total.commit.count} property).
+ *
+ * <p>Counting all reachable commits is linear in the size of the history. With this cache
+ * a new commit only needs to be walked back to the first commit whose count is already known.
+ * The commits that are reachable from the new commit but not from that cached ancestor
+ * are then counted with a second walk that marks the ancestor as uninteresting, which keeps
+ * the result correct for merges that bring in history the cached ancestor does not know about.
+ * If no cached ancestor is found the first walk simply counted the entire history.
+ *
+ * <p>The cache keeps at most {@link #MAX_ENTRIES} entries (least recently used entries are
+ * evicted first), so both the memory and the disk footprint are bounded.
+ */
+final class TotalCommitCountCache {
+    /**
+     * The maximum number of commit ids that are retained in memory and on disk.
+     */
+    static final int MAX_ENTRIES = 128;
+
+    private static final String HEADER = "# git-commit-id total commit count cache v1";
+
+    private final File cacheFile;
+    private final Map<ObjectId, Long> counts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ObjectId, Long> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private TotalCommitCountCache(@Nonnull File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Loads the cache from the given file. A missing or unreadable file results
+     * in an empty cache, malformed lines are ignored.
+     *
+     * @param cacheFile The file that backs the cache
+     * @return The loaded cache
+     */
+    static TotalCommitCountCache load(@Nonnull File cacheFile) {
+        TotalCommitCountCache cache = new TotalCommitCountCache(cacheFile);
+        if (!cacheFile.isFile()) {
+            return cache;
+        }
+        try (BufferedReader reader =
+                 Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length != 2 || !ObjectId.isId(parts[0])) {
+                    continue;
+                }
+                try {
+                    cache.counts.put(ObjectId.fromString(parts[0]), Long.parseLong(parts[1]));
+                } catch (NumberFormatException ignore) {
+                    // skip the malformed entry
+                }
+            }
+        } catch (IOException ignore) {
+            cache.counts.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Determines the number of commits that are reachable from the given commit
+     * (including the commit itself).
+     *
+     * @param repository The repository the commit belongs to
+     * @param commitId The commit that should be counted from
+     * @return The number of reachable commits
+     * @throws IOException if the repository could not be read
+     */
+    long count(@Nonnull Repository repository, @Nonnull ObjectId commitId) throws IOException {
+        Long cached = counts.get(commitId);
+        if (cached != null) {
+            return cached;
+        }
+        long result;
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRetainBody(false);
+            walk.markStart(walk.parseCommit(commitId));
+            RevCommit cachedAncestor = null;
+            long walked = 0;
+            for (RevCommit commit : walk) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Counting the commits was interrupted");
+                }
+                if (counts.containsKey(commit)) {
+                    cachedAncestor = commit;
+                    break;
+                }
+                walked++;
+            }
+            if (cachedAncestor == null) {
+                result = walked;
+            } else {
+                walk.reset();
+                walk.markStart(walk.parseCommit(commitId));
+                walk.markUninteresting(cachedAncestor);
+                long notInAncestor = 0;
+                for (RevCommit ignore : walk) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("Counting the commits was interrupted");
+                    }
+                    notInAncestor++;
+                }
+                result = notInAncestor + counts.get(cachedAncestor);
+            }
+        }
+        counts.put(commitId.copy(), result);
+        return result;
+    }
+
+    /**
+     * Writes the cache back to its file. The file is replaced atomically so concurrent
+     * readers never observe a partially written cache.
+     *
+     * @throws IOException if the cache could not be written
+     */
+    void save() throws IOException {
+        File parent = cacheFile.getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+        try (BufferedWriter writer =
+                 Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (Map.Entry<ObjectId, Long> e : counts.entrySet()) {
+                writer.write(e.getKey().name());
+                writer.write(' ');
+                writer.write(Long.toString(e.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The number of entries that are currently held by the cache.
+     *
+     * @return The number of cached commit ids
+     */
+    int size() {
+        return counts.size();
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * This file is part of git-commit-id-gradle-plugin.
+ *
+ * git-commit-id-gradle-plugin is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * git-commit-id-gradle-plugin is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with git-commit-id-gradle-plugin.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.github.git.commit.id.gradle.plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nonnull;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.CoreConfig;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.TreeWalk.OperationType;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+
+/**
+ * Determines whether the working tree of a repository is dirty, i.e. whether there are
+ * staged or unstaged changes to tracked files. Untracked files are not considered, which
+ * matches the dirty check of the core (and its {@code -dirty} suffix of
+ * {@code git.commit.id.describe}).
+ *
+ * <p>The index, {@code HEAD} and the working tree are walked once, and most files are
+ * settled by comparing the stat data recorded in the index. Only when the stat data can't
+ * be trusted (a racily clean or smudged entry, which is the norm for fresh checkouts on CI
+ * or on volume mounts) the content of the file needs to be hashed. Those files are
+ * collected during the walk and hashed in parallel on a {@link ForkJoinPool}, split into
+ * shards of consecutive paths (so the files of one directory usually end up in the same
+ * shard). Files larger than {@link #MAPPED_READ_THRESHOLD} are read via memory mapping.
+ * Files that are subject to line ending conversion or clean filters are compared by JGit
+ * itself during the walk, since only JGit knows how to apply those.
+ *
+ * <p>As soon as one change is found, the remaining work is abandoned. Paths that are not
+ * accepted by the {@link PathPatternFilter} are not considered at all, directories that are
+ * pruned by the filter are not even read.
+ */
+final class WorkingTreeDirtyCheck {
+    /**
+     * Files with at least that many bytes are hashed via memory mapping.
+     */
+    static final long MAPPED_READ_THRESHOLD = 4L * 1024L * 1024L;
+
+    /**
+     * The maximum number of files that are hashed by a single task before it's split further.
+     */
+    static final int SHARD_SIZE = 64;
+
+    private static final int MAPPED_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A file whose content needs to be hashed and compared with the index.
+     */
+    private static final class PendingFile {
+        private final File file;
+        private final long length;
+        private final ObjectId expectedId;
+
+        private PendingFile(@Nonnull File file, long length, @Nonnull ObjectId expectedId) {
+            this.file = file;
+            this.length = length;
+            this.expectedId = expectedId;
+        }
+    }
+
+    private static final class HashShard extends RecursiveTask<Boolean> {
+        private final List<PendingFile> files;
+        private final int from;
+        private final int to;
+        private final AtomicBoolean dirty;
+
+        private HashShard(
+                @Nonnull List<PendingFile> files, int from, int to, @Nonnull AtomicBoolean dirty) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+            this.dirty = dirty;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from > SHARD_SIZE) {
+                int middle = (from + to) >>> 1;
+                HashShard left = new HashShard(files, from, middle, dirty);
+                left.fork();
+                boolean rightDirty = new HashShard(files, middle, to, dirty).compute();
+                return left.join() || rightDirty;
+            }
+            try {
+                MessageDigest digest = newDigest();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                for (int i = from; i < to && !dirty.get(); i++) {
+                    PendingFile pending = files.get(i);
+                    if (!pending.expectedId.equals(hash(pending, digest, buffer))) {
+                        dirty.set(true);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return dirty.get();
+        }
+    }
+
+    private WorkingTreeDirtyCheck() {
+    }
+
+    /**
+     * Checks whether the working tree of the given repository is dirty.
+     *
+     * @param repository The repository to check
+     * @param parallelism The number of threads used to hash files, with {@code 1} or less
+     *                    all files are hashed on the calling thread
+     * @param filter The filter for the paths that should be considered
+     * @return {@code true} if there are staged or unstaged changes to tracked files
+     * @throws IOException if the repository or the working tree could not be read
+     */
+    static boolean isDirty(
+            @Nonnull Repository repository,
+            int parallelism,
+            @Nonnull PathPatternFilter filter) throws IOException {
+        if (repository.isBare()) {
+            return false;
+        }
+        DirCache dirCache = repository.readDirCache();
+        ObjectId headTree = repository.resolve(Constants.HEAD + "^{tree}");
+        List<PendingFile> pendingFiles = new ArrayList<>();
+        try (ObjectReader reader = repository.newObjectReader();
+             TreeWalk walk = new TreeWalk(repository, reader)) {
+            walk.setOperationType(OperationType.CHECKIN_OP);
+            walk.setRecursive(false);
+            int headIndex = headTree == null
+                ? walk.addTree(new EmptyTreeIterator())
+                : walk.addTree(headTree);
+            int indexIndex = walk.addTree(new DirCacheIterator(dirCache));
+            FileTreeIterator workingTree = new FileTreeIterator(repository);
+            int workingTreeIndex = walk.addTree(workingTree);
+            workingTree.setDirCacheIterator(walk, indexIndex);
+
+            while (walk.next()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("The dirty check was interrupted");
+                }
+                FileMode headMode = walk.getFileMode(headIndex);
+                FileMode indexMode = walk.getFileMode(indexIndex);
+                FileMode workingTreeMode = walk.getFileMode(workingTreeIndex);
+                WorkingTreeIterator workingTreeEntry =
+                    walk.getTree(workingTreeIndex, WorkingTreeIterator.class);
+                String path = walk.getPathString();
+                if (walk.isSubtree()) {
+                    if (filter.isDirectoryPruned(path)) {
+                        continue;
+                    }
+                    if (!isTreeOrMissing(headMode) || !isTreeOrMissing(indexMode)
+                            || !isTreeOrMissing(workingTreeMode)) {
+                        // A directory replaced a file (or vice versa)
+                        return true;
+                    }
+                    if (headMode == FileMode.MISSING && indexMode == FileMode.MISSING) {
+                        // Untracked and ignored directories are never entered
+                        continue;
+                    }
+                    walk.enterSubtree();
+                    continue;
+                }
+                if (!filter.isFileIncluded(path)) {
+                    continue;
+                }
+                if (indexMode == FileMode.MISSING) {
+                    if (headMode != FileMode.MISSING) {
+                        // Staged deletion
+                        return true;
+                    }
+                    // Untracked or ignored file
+                    continue;
+                }
+                DirCacheIterator indexEntry = walk.getTree(indexIndex, DirCacheIterator.class);
+                DirCacheEntry dirCacheEntry = indexEntry.getDirCacheEntry();
+                if (dirCacheEntry.getStage() != DirCacheEntry.STAGE_0
+                        || headMode != indexMode
+                        || !walk.idEqual(headIndex, indexIndex)) {
+                    // Conflict or staged change
+                    return true;
+                }
+                if (indexMode == FileMode.GITLINK) {
+                    // Submodules are not inspected. Like for git and JGit's IndexDiff only a
+                    // missing submodule directory is a deletion: an uninitialized submodule
+                    // is an empty directory, which the working tree reports as a tree
+                    if (workingTreeMode == FileMode.MISSING
+                            && !new File(repository.getWorkTree(), path).isDirectory()) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (workingTreeMode == FileMode.MISSING) {
+                    return true;
+                }
+                switch (workingTreeEntry.compareMetadata(dirCacheEntry)) {
+                    case EQUAL:
+                        continue;
+                    case DIFFER_BY_METADATA:
+                        return true;
+                    default:
+                        // Racily clean or smudged, the content needs to be compared
+                        if (parallelism > 1 && isHashedDirectly(workingTreeEntry)) {
+                            pendingFiles.add(new PendingFile(
+                                new File(repository.getWorkTree(), path),
+                                workingTreeEntry.getEntryLength(),
+                                dirCacheEntry.getObjectId()));
+                        } else if (workingTreeEntry.isModified(dirCacheEntry, true, reader)) {
+                            return true;
+                        }
+                }
+            }
+        }
+        return !pendingFiles.isEmpty() && isAnyModified(pendingFiles, parallelism);
+    }
+
+    private static boolean isTreeOrMissing(@Nonnull FileMode mode) {
+        return mode == FileMode.TREE || mode == FileMode.MISSING;
+    }
+
+    private static boolean isHashedDirectly(
+            @Nonnull WorkingTreeIterator workingTreeEntry) throws IOException {
+        FileMode mode = workingTreeEntry.getEntryFileMode();
+        return (mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE)
+            && workingTreeEntry.getEolStreamType() == CoreConfig.EolStreamType.DIRECT
+            && workingTreeEntry.getCleanFilterCommand() == null;
+    }
+
+    private static boolean isAnyModified(
+            @Nonnull List<PendingFile> pendingFiles, int parallelism) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(
+                new HashShard(pendingFiles, 0, pendingFiles.size(), new AtomicBoolean()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Computes the id of the blob with the content of the given file.
+     */
+    private static ObjectId hash(
+            @Nonnull PendingFile pending,
+            @Nonnull MessageDigest digest,
+            @Nonnull byte[] buffer) throws IOException {
+        digest.reset();
+        try (FileChannel channel =
+                 FileChannel.open(pending.file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length != pending.length) {
+                // Changed since the walk, either way the content differs from the index
+                return ObjectId.zeroId();
+            }
+            digest.update(Constants.encodedTypeString(Constants.OBJ_BLOB));
+            digest.update((byte) ' ');
+            digest.update(String.valueOf(length).getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) 0);
+            if (length >= MAPPED_READ_THRESHOLD) {
+                for (long position = 0; position < length; position += MAPPED_CHUNK_SIZE) {
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAPPED_CHUNK_SIZE, length - position)));
+                }
+            } else {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                while (channel.read(byteBuffer) >= 0) {
+                    byteBuffer.flip();
+                    digest.update(byteBuffer);
+                    byteBuffer.clear();
+                }
+            }
+        }
+        return ObjectId.fromRaw(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
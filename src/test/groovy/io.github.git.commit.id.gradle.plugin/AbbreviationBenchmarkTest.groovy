@@ -0,0 +1,96 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+/**
+ * Measures the cost of the {@link AbbreviationMode}s on a repository with many packs
+ * and loose objects. Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class AbbreviationBenchmarkTest {
+    private static final int PACKS = 40
+    private static final int FILES_PER_PACK = 250
+    private static final int LOOSE_FILES = 2000
+    private static final int ITERATIONS = 5
+    private static final String UNCACHED = "${AbbreviationMode.PACK_INDEX} (uncached)"
+
+    @TempDir
+    File temporaryFolder
+
+    private static void runGit(File projectDir, String... args) {
+        def process = new ProcessBuilder(["git", "-c", "user.name=JUnitTest",
+                                          "-c", "user.email=example@example.com", *args])
+                .directory(projectDir)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+    }
+
+    private void commitFiles(String prefix, int count) {
+        def dir = new File(temporaryFolder, prefix)
+        dir.mkdirs()
+        count.times { index -> new File(dir, "file${index}.txt") << "${prefix} ${index}" }
+        runGit(temporaryFolder, "add", "-A")
+        runGit(temporaryFolder, "commit", "-q", "-m", "added ${prefix}")
+    }
+
+    private long measure(Closure<String> abbreviate) {
+        long best = Long.MAX_VALUE
+        ITERATIONS.times {
+            long start = System.nanoTime()
+            abbreviate()
+            best = Math.min(best, System.nanoTime() - start)
+        }
+        return best
+    }
+
+    @Test
+    void packIndexModeIsCheaperThanProbingTheObjectDatabase() {
+        given: "a repository with many packs and loose objects"
+        runGit(temporaryFolder, "init", "-q")
+        PACKS.times { pack ->
+            commitFiles("pack${pack}", FILES_PER_PACK)
+            runGit(temporaryFolder, "repack", "-d", "-q")
+        }
+        commitFiles("loose", LOOSE_FILES)
+        def gitDir = new File(temporaryFolder, Constants.DOT_GIT)
+        def objectsDirectory = new File(gitDir, Constants.OBJECTS)
+        ObjectId head
+        try (def repository = new FileRepositoryBuilder().setGitDir(gitDir).build()) {
+            head = repository.resolve(Constants.HEAD)
+        }
+
+        when: "the commit id is abbreviated in all modes"
+        def expected
+        Map<String, Long> timings = [:]
+        timings[AbbreviationMode.OBJECT_DATABASE.name()] = measure {
+            // A freshly opened repository, like after a fetch or gc added packs
+            try (def repository = new FileRepositoryBuilder().setGitDir(gitDir).build()) {
+                expected = CommitIdAbbreviation.abbreviate(
+                        repository, head, 7, AbbreviationMode.OBJECT_DATABASE)
+            }
+        }
+        timings[UNCACHED] = measure {
+            CommitIdAbbreviation.clear()
+            Assertions.assertEquals(expected, head.name().substring(
+                    0, Math.max(7, CommitIdAbbreviation.uniqueLengthOf(objectsDirectory, head))))
+        }
+        timings[AbbreviationMode.PACK_INDEX.name()] = measure {
+            CommitIdAbbreviation.uniqueLengthOf(objectsDirectory, head)
+        }
+        timings[AbbreviationMode.UNCHECKED.name()] = measure { head.name().substring(0, 7) }
+        println("packs=${PACKS} loose=${LOOSE_FILES} timings(ns)=${timings}")
+
+        then: "looking up the neighbours is cheaper than probing the object database"
+        Assertions.assertTrue(
+                timings[UNCACHED] < timings[AbbreviationMode.OBJECT_DATABASE.name()],
+                "timings were ${timings}")
+    }
+}
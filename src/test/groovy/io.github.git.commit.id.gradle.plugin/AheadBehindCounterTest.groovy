@@ -0,0 +1,105 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class AheadBehindCounterTest {
+    @TempDir
+    File temporaryFolder
+
+    private void runGit(String... args) {
+        def process = new ProcessBuilder([
+                "git", "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com", *args
+        ])
+                .directory(temporaryFolder)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+    }
+
+    private void commits(int count, String prefix = "local") {
+        count.times { index ->
+            runGit("commit", "-q", "--allow-empty", "-m", "${prefix} ${index}")
+        }
+    }
+
+    @BeforeEach
+    void initRepository() {
+        runGit("init", "-q", "-b", "main")
+        commits(2, "initial")
+        // Pretend the remote is where the branch was forked, but never fetch from it
+        runGit("remote", "add", "origin", "https://example.invalid/repository.git")
+        runGit("update-ref", "refs/remotes/origin/main", "HEAD")
+        runGit("config", "branch.main.remote", "origin")
+        runGit("config", "branch.main.merge", "refs/heads/main")
+    }
+
+    private void advanceUpstream(int count) {
+        runGit("checkout", "-q", "-b", "upstream", "origin/main")
+        commits(count, "upstream")
+        runGit("update-ref", "refs/remotes/origin/main", "HEAD")
+        runGit("checkout", "-q", "main")
+    }
+
+    private AheadBehindCounter.AheadBehind count(int maxDepth) {
+        try (Git git = Git.open(temporaryFolder)) {
+            return AheadBehindCounter.of(git.repository, maxDepth)
+        }
+    }
+
+    @Test
+    void countsWithinTheBound() {
+        given: "a branch that diverged from its remote-tracking ref"
+        commits(3)
+        advanceUpstream(2)
+
+        expect: "the exact counts"
+        def aheadBehind = count(10)
+        Assertions.assertEquals("3", aheadBehind.ahead, aheadBehind.toString())
+        Assertions.assertEquals("2", aheadBehind.behind, aheadBehind.toString())
+    }
+
+    @Test
+    void countsBeyondTheBoundAreCutOff() {
+        given: "a branch that is far ahead of its remote-tracking ref"
+        commits(25)
+        advanceUpstream(1)
+
+        when: "counting without commit-graph"
+        def walked = count(10)
+
+        then: "the walk stops at the bound"
+        Assertions.assertEquals("10+", walked.ahead, walked.toString())
+        Assertions.assertEquals("1", walked.behind, walked.toString())
+
+        when: "a commit-graph is written"
+        runGit("commit-graph", "write", "--reachable")
+        try (Git git = Git.open(temporaryFolder)) {
+            def commitGraph = CommitGraph.open(new File(temporaryFolder, ".git/objects"))
+            def head = git.repository.resolve("HEAD")
+            // 2 commits on the remote and 25 on top of them
+            Assertions.assertEquals(27, commitGraph.generationOf(head))
+        }
+
+        then: "the generation numbers yield the same counts"
+        def generations = count(10)
+        Assertions.assertEquals("10+", generations.ahead, generations.toString())
+        Assertions.assertEquals("1", generations.behind, generations.toString())
+        Assertions.assertEquals("25", count(100).ahead)
+    }
+
+    @Test
+    void branchWithoutUpstreamHasNoRemote() {
+        given: "a branch that does not track anything"
+        runGit("checkout", "-q", "-b", "feature")
+
+        expect: "no counts"
+        def aheadBehind = count(10)
+        Assertions.assertEquals(AheadBehindCounter.NO_REMOTE, aheadBehind.ahead)
+        Assertions.assertEquals(AheadBehindCounter.NO_REMOTE, aheadBehind.behind)
+    }
+}
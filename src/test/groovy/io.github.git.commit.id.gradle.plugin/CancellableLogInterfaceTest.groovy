@@ -0,0 +1,49 @@
+package io.github.git.commit.id.gradle.plugin
+
+import java.util.concurrent.CancellationException
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import pl.project13.core.log.LogInterface
+
+class CancellableLogInterfaceTest {
+    private final List<String> messages = []
+
+    private final LogInterface delegate = [
+            debug: { String msg -> messages << msg },
+            info : { String msg -> messages << msg },
+            warn : { String msg -> messages << msg },
+            error: { Object[] args -> messages << (String) args[0] },
+    ] as LogInterface
+
+    @Test
+    void delegatesUntilCancelled() {
+        given: "a log that was not cancelled"
+        def log = new CancellableLogInterface(delegate)
+
+        when: "messages are logged"
+        log.info("first")
+        log.cancel()
+
+        then: "only the messages before the cancellation are delegated"
+        Assertions.assertThrows(CancellationException.class, { log.info("second") })
+        Assertions.assertThrows(CancellationException.class, { log.checkCancelled() })
+        Assertions.assertEquals(["first"], messages)
+    }
+
+    @Test
+    void interruptedThreadIsTreatedAsCancelled() {
+        given: "a log that was not cancelled"
+        def log = new CancellableLogInterface(delegate)
+
+        when: "the current thread gets interrupted"
+        Thread.currentThread().interrupt()
+
+        then: "logging aborts"
+        try {
+            Assertions.assertThrows(CancellationException.class, { log.debug("message") })
+        } finally {
+            Thread.interrupted()
+        }
+        Assertions.assertTrue(messages.isEmpty())
+    }
+}
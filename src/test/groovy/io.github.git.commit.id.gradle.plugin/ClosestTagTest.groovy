@@ -0,0 +1,101 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.revwalk.RevWalk
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class ClosestTagTest {
+    @TempDir
+    File temporaryFolder
+
+    private int time = 1_600_000_000
+
+    private String runGit(String... args) {
+        def processBuilder = new ProcessBuilder([
+                "git", "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com", *args
+        ])
+                .directory(temporaryFolder)
+                .redirectErrorStream(true)
+        // Every commit is one minute newer than the previous one
+        time += 60
+        processBuilder.environment().put("GIT_AUTHOR_DATE", "@${time} +0000".toString())
+        processBuilder.environment().put("GIT_COMMITTER_DATE", "@${time} +0000".toString())
+        def process = processBuilder.start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+        return output.trim()
+    }
+
+    private void commits(int count, String prefix) {
+        count.times { index ->
+            runGit("commit", "-q", "--allow-empty", "-m", "${prefix} ${index}")
+        }
+    }
+
+    private ClosestTag find(String revision, boolean includeStart) {
+        try (Git git = Git.open(temporaryFolder); RevWalk walk = new RevWalk(git.repository)) {
+            def start = walk.parseCommit(git.repository.resolve(revision))
+            return ClosestTag.find(walk, start, includeStart,
+                    PeeledTagIndex.forRepository(git.repository), null, true)
+        }
+    }
+
+    @BeforeEach
+    void initRepository() {
+        runGit("init", "-q", "-b", "main")
+        commits(1, "root")
+    }
+
+    @Test
+    void newerTagOnMergedSideBranchIsFartherAway() {
+        given: "an old tag on the main branch after a few commits"
+        runGit("branch", "side")
+        commits(5, "main")
+        runGit("tag", "-a", "-m", "main", "main-tag")
+        commits(1, "main")
+
+        and: "a newer tag at the start of a side branch that is merged afterwards"
+        runGit("checkout", "-q", "side")
+        commits(1, "side")
+        runGit("tag", "-a", "-m", "side", "side-tag")
+        commits(1, "side")
+        runGit("checkout", "-q", "main")
+        runGit("merge", "-q", "--no-ff", "-m", "merge", "side")
+
+        when: "the merge is described"
+        def closest = find("HEAD", true)
+
+        then: "the closest tag wins even though the side tag is found first by date"
+        Assertions.assertEquals("main-tag", closest.tag)
+        // The merge, the commit after main-tag and both side commits
+        Assertions.assertEquals(4, closest.distance)
+        Assertions.assertEquals(runGit("describe", "--tags", "--abbrev=0", "HEAD"), closest.tag)
+        Assertions.assertEquals(
+                runGit("describe", "--tags", "HEAD").split("-")[-2] as int, closest.distance)
+    }
+
+    @Test
+    void tagOnTheStartCommitIsOnlyUsedWhenIncluded() {
+        given: "two tagged commits"
+        runGit("tag", "first")
+        commits(2, "next")
+        runGit("tag", "second")
+
+        expect: "the tag on the commit itself or the previous one"
+        def included = find("HEAD", true)
+        Assertions.assertEquals("second", included.tag)
+        Assertions.assertEquals(0, included.distance)
+        def excluded = find("HEAD", false)
+        Assertions.assertEquals("first", excluded.tag)
+        Assertions.assertEquals(2, excluded.distance)
+    }
+
+    @Test
+    void untaggedHistoryHasNoClosestTag() {
+        expect: "no tag"
+        Assertions.assertNull(find("HEAD", true))
+    }
+}
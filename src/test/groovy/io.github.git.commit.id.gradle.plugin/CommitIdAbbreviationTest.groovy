@@ -0,0 +1,98 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.ObjectInserter
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class CommitIdAbbreviationTest {
+    @TempDir
+    File temporaryFolder
+
+    private final List<ObjectId> objectIds = []
+
+    @BeforeEach
+    void initRepository() {
+        CommitIdAbbreviation.clear()
+        try (Git git = Git.init().setDirectory(temporaryFolder).call()) {
+            insertBlobs(git, "packed", 3000)
+            git.add().addFilepattern(".").call()
+            git.commit()
+                    .setAuthor("JUnitTest", "example@example.com")
+                    .setCommitter("JUnitTest", "example@example.com")
+                    .setMessage("packed blobs")
+                    .call()
+            // Bitmaps are not needed to look up the pack index
+            git.repository.config.setBoolean("pack", null, "buildbitmaps", false)
+            git.gc().call()
+            try (def inserter = git.repository.newObjectInserter()) {
+                300.times { index ->
+                    objectIds << inserter.insert(Constants.OBJ_BLOB, "loose ${index}".bytes)
+                }
+                inserter.flush()
+            }
+        }
+    }
+
+    private void insertBlobs(Git git, String prefix, int count) {
+        def dir = new File(temporaryFolder, prefix)
+        dir.mkdirs()
+        count.times { index ->
+            def file = new File(dir, "${index}.txt")
+            file << "${prefix} ${index}"
+            objectIds << new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, file.bytes)
+        }
+    }
+
+    @Test
+    void packIndexModeMatchesTheObjectDatabase() {
+        given: "a repository with packed and loose objects"
+        Assertions.assertTrue(
+                new File(temporaryFolder, ".git/objects/pack").list().any { it.endsWith(".idx") })
+        try (Git git = Git.open(temporaryFolder)) {
+            def repository = git.repository
+
+            expect: "the same abbreviations as when probing the whole object database"
+            try (def reader = repository.newObjectReader()) {
+                for (ObjectId id : objectIds) {
+                    Assertions.assertEquals(
+                            reader.abbreviate(id, 4).name(),
+                            CommitIdAbbreviation.abbreviate(
+                                    repository, id, 4, AbbreviationMode.PACK_INDEX),
+                            id.name())
+                }
+            }
+
+            and: "the unchecked mode to simply cut the id"
+            Assertions.assertEquals(
+                    objectIds[0].name().substring(0, 4),
+                    CommitIdAbbreviation.abbreviate(
+                            repository, objectIds[0], 4, AbbreviationMode.UNCHECKED))
+        }
+    }
+
+    @Test
+    void cachedLengthIsInvalidatedByNewObjects() {
+        given: "an abbreviation that was cached"
+        def objectsDirectory = new File(temporaryFolder, ".git/objects")
+        def id = objectIds[0]
+        def uniqueLength = CommitIdAbbreviation.uniqueLengthOf(objectsDirectory, id)
+
+        when: "a loose object that shares a longer prefix is added"
+        def neighbour = ObjectId.fromString(
+                id.name().substring(0, 30) + (id.name().charAt(30) == '0' as char ? '1' : '0')
+                        + id.name().substring(31))
+        def looseDirectory = new File(objectsDirectory, neighbour.name().substring(0, 2))
+        looseDirectory.mkdirs()
+        new File(looseDirectory, neighbour.name().substring(2)) << ""
+        looseDirectory.setLastModified(looseDirectory.lastModified() + 1000)
+
+        then: "the unique length is computed again"
+        Assertions.assertTrue(uniqueLength < 31)
+        Assertions.assertEquals(31, CommitIdAbbreviation.uniqueLengthOf(objectsDirectory, id))
+    }
+}
@@ -0,0 +1,50 @@
+package io.github.git.commit.id.gradle.plugin
+
+import java.nio.ByteBuffer
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class FileBlocksTest {
+    @TempDir
+    File temporaryFolder
+
+    @Test
+    void readsAcrossBlockBoundaries() {
+        given: "a file of a few blocks with random content"
+        def content = new byte[FileBlocks.BLOCK_SIZE * 3 + 17]
+        new Random(42).nextBytes(content)
+        def file = new File(temporaryFolder, "content")
+        file.bytes = content
+        def expected = ByteBuffer.wrap(content)
+
+        expect: "the same values as read from memory, in any order"
+        FileBlocks.open(file).withCloseable { blocks ->
+            Assertions.assertEquals(content.length, blocks.size())
+            for (int position = content.length - 8; position >= 0; position -= 997) {
+                Assertions.assertEquals(expected.get(position), blocks.get(position))
+                Assertions.assertEquals(expected.getInt(position), blocks.getInt(position))
+                Assertions.assertEquals(expected.getLong(position), blocks.getLong(position))
+            }
+            def boundary = FileBlocks.BLOCK_SIZE - 3
+            Assertions.assertEquals(expected.getLong(boundary), blocks.getLong(boundary))
+            Assertions.assertArrayEquals(
+                    Arrays.copyOfRange(content, boundary, boundary + 100),
+                    blocks.bytes(boundary, boundary + 100))
+        }
+    }
+
+    @Test
+    void readsBeyondTheEndFail() {
+        given: "a small file"
+        def file = new File(temporaryFolder, "content")
+        file.bytes = [1, 2, 3] as byte[]
+
+        expect: "reads beyond its end to fail"
+        FileBlocks.open(file).withCloseable { blocks ->
+            Assertions.assertEquals(3 as byte, blocks.get(2))
+            Assertions.assertThrows(EOFException.class, { blocks.get(3) })
+            Assertions.assertThrows(EOFException.class, { blocks.getInt(1) })
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.gradle.testkit.runner.GradleRunner
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+
+/**
+ * Validates the heuristic of {@link GitBackendSelector} by measuring both backends
+ * on repositories of different sizes. Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class GitBackendBenchmarkTest extends AbstractGradleTest {
+    private static final int ITERATIONS = 3
+    // Measurements include the constant overhead of gradle itself
+    private static final double TOLERANCE = 1.25d
+
+    private GradleRunner createRunner(File projectDir, GitBackend backend) {
+        GradleRunner.create()
+                .withPluginClasspath()
+                .withArguments(
+                        ":${GitCommitIdPluginGenerationTask.NAME}", "--rerun-tasks", "--info",
+                        "-PgitBackend=${backend.name()}"
+                )
+                .withProjectDir(projectDir)
+    }
+
+    private long measure(File projectDir, GitBackend backend) {
+        def runner = createRunner(projectDir, backend)
+        // warm up the daemon
+        runner.build()
+        long best = Long.MAX_VALUE
+        ITERATIONS.times {
+            long start = System.nanoTime()
+            runner.build()
+            best = Math.min(best, System.nanoTime() - start)
+        }
+        return best
+    }
+
+    private static void runGit(File projectDir, String... args) {
+        def process = new ProcessBuilder(["git", *args])
+                .directory(projectDir)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = [10, 150_000])
+    void autoSelectsTheFasterBackend(int numberOfFiles) {
+        given: "a repository with the given number of files"
+        def projectDir = temporaryFolder
+        def sources = new File(projectDir, "files")
+        numberOfFiles.times { index ->
+            def dir = new File(sources, "dir${index % 1000}")
+            dir.mkdirs()
+            new File(dir, "file${index}.txt") << "content ${index}"
+        }
+        runGit(projectDir, "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com",
+                "add", "-A")
+        runGit(projectDir, "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com",
+                "commit", "-q", "-m", "added ${numberOfFiles} files")
+
+        and: "the backend is configurable from the command line"
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    ${GitCommitIdPluginExtension.NAME} {
+                        ${GitCommitIdPluginGitSettingsExtension.NAME} {
+                            gitBackend.set(${GitBackend.name}.valueOf(project.property('gitBackend')))
+                        }
+                    }
+                    """.stripIndent()
+            )
+        }
+
+        when: "the plugin lets the heuristic choose"
+        def result = createRunner(projectDir, GitBackend.AUTO).build()
+        def selectionLine = result.output.readLines().find { it.contains("Selected the") }
+        Assertions.assertNotNull(selectionLine, result.output)
+        def selected = selectionLine.contains("Selected the ${GitBackend.NATIVE} backend") ?
+                GitBackend.NATIVE : GitBackend.JGIT
+
+        and: "both backends are measured"
+        def timings = [
+                (GitBackend.JGIT)  : measure(projectDir, GitBackend.JGIT),
+                (GitBackend.NATIVE): measure(projectDir, GitBackend.NATIVE),
+        ]
+
+        then: "the selected backend is not meaningfully slower than the other one"
+        def other = selected == GitBackend.JGIT ? GitBackend.NATIVE : GitBackend.JGIT
+        Assertions.assertTrue(
+                timings[selected] <= timings[other] * TOLERANCE,
+                "${selectionLine} but timings were ${timings}"
+        )
+    }
+}
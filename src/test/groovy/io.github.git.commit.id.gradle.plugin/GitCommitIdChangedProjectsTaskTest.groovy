@@ -0,0 +1,37 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class GitCommitIdChangedProjectsTaskTest {
+    @TempDir
+    File temporaryFolder
+
+    @Test
+    void projectsAreMappedRelativeToTheWorkTree() {
+        given: "projects inside the work tree and in a sibling directory with the same prefix"
+        def workTree = new File(temporaryFolder, "repo")
+        def projectDirectories = [
+                (workTree.path)                                   : ":",
+                (new File(workTree, "app").path)                  : ":app",
+                (new File(workTree, "libs/core").path)            : ":libs:core",
+                (new File(temporaryFolder, "repo-other/lib").path): ":other",
+        ]
+        projectDirectories.keySet().each { new File(it).mkdirs() }
+
+        when: "the projects are mapped"
+        def projectsByDirectory = GitCommitIdChangedProjectsTask.projectsByDirectory(
+                workTree, projectDirectories)
+
+        then: "only the projects inside the work tree are considered"
+        Assertions.assertEquals(["": ":", "app/": ":app", "libs/core/": ":libs:core"],
+                projectsByDirectory)
+
+        and: "files are attributed to the innermost project"
+        Assertions.assertEquals(":libs:core",
+                GitCommitIdChangedProjectsTask.projectOf(projectsByDirectory, "libs/core/a.txt"))
+        Assertions.assertEquals(":",
+                GitCommitIdChangedProjectsTask.projectOf(projectsByDirectory, "libs/b.txt"))
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.git.commit.id.gradle.plugin
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicBoolean
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import pl.project13.core.GitCommitIdExecutionException
+import pl.project13.core.log.LogInterface
+
+class GitCommitIdPluginGenerationTaskTest {
+    private final CancellableLogInterface log = new CancellableLogInterface([
+            debug: {}, info: {}, warn: {}, error: { Object[] args -> }
+    ] as LogInterface)
+
+    private final AtomicBoolean abandoned = new AtomicBoolean()
+
+    private void run(long timeBudgetInMs, GitCommitIdPluginGenerationTask.Collection collection) {
+        GitCommitIdPluginGenerationTask.runWithinTimeBudget(
+                log, collection, timeBudgetInMs, 2_000, { abandoned.set(true) })
+    }
+
+    @Test
+    void collectionWithinTheBudgetCompletes() {
+        given: "a quick collection"
+        def collected = new AtomicBoolean()
+
+        when: "it is run with a budget"
+        run(10_000) { collected.set(true) }
+
+        then: "it completed and was not abandoned"
+        Assertions.assertTrue(collected.get())
+        Assertions.assertFalse(abandoned.get())
+    }
+
+    @Test
+    void failuresArePropagated() {
+        expect: "the failure of the collection"
+        def e = Assertions.assertThrows(GitCommitIdExecutionException) {
+            run(10_000) { throw new GitCommitIdExecutionException("broken") }
+        }
+        Assertions.assertEquals("broken", e.message)
+    }
+
+    @Test
+    void collectionOverBudgetIsCancelled() {
+        given: "a collection that only stops when it gets cancelled"
+        def stopped = new CountDownLatch(1)
+        GitCommitIdPluginGenerationTask.Collection collection = {
+            try {
+                while (true) {
+                    log.checkCancelled()
+                    Thread.onSpinWait()
+                }
+            } finally {
+                stopped.countDown()
+            }
+        }
+
+        when: "it exceeds its budget"
+        long start = System.nanoTime()
+        Assertions.assertThrows(TimeoutException) { run(100, collection) }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+        then: "it stopped before the timeout was reported"
+        Assertions.assertEquals(0, stopped.count)
+        Assertions.assertTrue(elapsedMs < 2_000, "took ${elapsedMs} ms")
+        Assertions.assertFalse(abandoned.get())
+    }
+
+    @Test
+    void collectionThatIgnoresCancellationIsAbandoned() {
+        given: "a collection that neither logs nor reacts to interrupts"
+        def release = new CountDownLatch(1)
+        GitCommitIdPluginGenerationTask.Collection collection = {
+            while (release.count > 0) {
+                try {
+                    release.await()
+                } catch (InterruptedException ignore) {
+                    // e.g. a blocking call that swallows the interrupt
+                }
+            }
+        }
+
+        when: "it exceeds its budget"
+        Assertions.assertThrows(TimeoutException) { run(100, collection) }
+
+        then: "it is abandoned after the grace period"
+        Assertions.assertTrue(abandoned.get())
+        release.countDown()
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class GitPropertiesResultCacheTest {
+    private static final long NOW = 1_700_000_000_000L
+
+    @TempDir
+    File temporaryFolder
+
+    @BeforeEach
+    void clearCache() {
+        GitPropertiesResultCache.clear()
+    }
+
+    private GitStateFingerprint fingerprintOf(String settings) {
+        return GitStateFingerprint.of(temporaryFolder, settings)
+    }
+
+    private static Properties propertiesOf(Map<String, String> values) {
+        def properties = new Properties()
+        values.each { key, value -> properties.setProperty(key, value) }
+        return properties
+    }
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvicted() {
+        given: "more fingerprints than entries are kept"
+        def fingerprints = (0..GitPropertiesResultCache.MAX_ENTRIES).collect {
+            fingerprintOf("settings-${it}")
+        }
+
+        when: "the properties of the first one are cached and used again"
+        GitPropertiesResultCache.put(fingerprints[0], "git.",
+                propertiesOf(["git.branch": "main"]), NOW)
+        GitPropertiesResultCache.put(fingerprints[1], "git.",
+                propertiesOf(["git.branch": "main"]), NOW)
+        Assertions.assertNotNull(GitPropertiesResultCache.get(fingerprints[0], NOW))
+
+        and: "the properties of all other ones are cached"
+        fingerprints.drop(2).each {
+            GitPropertiesResultCache.put(it, "git.", propertiesOf(["git.branch": "main"]), NOW)
+        }
+
+        then: "the least recently used one was evicted"
+        Assertions.assertNull(GitPropertiesResultCache.get(fingerprints[1], NOW))
+        Assertions.assertEquals("main",
+                GitPropertiesResultCache.get(fingerprints[0], NOW).get("git.branch"))
+        fingerprints.drop(2).each {
+            Assertions.assertNotNull(GitPropertiesResultCache.get(it, NOW))
+        }
+    }
+
+    @Test
+    void expiredEntriesAreDiscarded() {
+        given: "cached properties"
+        def fingerprint = fingerprintOf("settings")
+        GitPropertiesResultCache.put(fingerprint, "git.",
+                propertiesOf(["git.branch": "main"]), NOW)
+
+        expect: "they are used up to the maximum age"
+        Assertions.assertNotNull(GitPropertiesResultCache.get(
+                fingerprint, NOW + GitPropertiesResultCache.MAX_AGE_MILLIS))
+
+        and: "discarded afterwards"
+        Assertions.assertNull(GitPropertiesResultCache.get(
+                fingerprint, NOW + GitPropertiesResultCache.MAX_AGE_MILLIS + 1))
+        Assertions.assertNull(GitPropertiesResultCache.get(fingerprint, NOW))
+    }
+
+    @Test
+    void onlyPropertiesOfTheRepositoryAreCached() {
+        given: "properties that depend on the working tree, the build and submodules"
+        def properties = propertiesOf([
+                "custom.branch"              : "main",
+                "custom.commit.id.full"      : "0123456789",
+                "custom.build.time"          : "now",
+                "custom.build.user.name"     : "JUnitTest",
+                "custom.submodules.lib.dirty": "false",
+                "other.property"             : "value",
+        ])
+        GitPropertiesResultCache.WORKING_TREE_PROPERTIES.each {
+            properties.setProperty("custom.${it}", "value")
+        }
+
+        when: "they are cached"
+        def cached = GitPropertiesResultCache.put(fingerprintOf("settings"), "custom.", properties)
+
+        then: "only the properties of the git database are kept"
+        def expected = ["custom.branch": "main", "custom.commit.id.full": "0123456789"]
+        Assertions.assertEquals(expected, new HashMap<>(cached))
+        Assertions.assertEquals(expected,
+                new HashMap<>(GitPropertiesResultCache.get(fingerprintOf("settings"))))
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class GitPropertiesSnapshotTest {
+    private static Properties generatedProperties() {
+        def properties = new Properties()
+        properties.setProperty("git.commit.id.full", "6fcf8294b2b5bb1a4c1e25e0ce3bd7d6a5b0c3e1")
+        properties.setProperty("git.commit.id.abbrev", "6fcf829")
+        properties.setProperty("git.branch", "main")
+        properties.setProperty("git.dirty", "false")
+        properties.setProperty("git.build.time", "2024-01-01T00:00:00+0000")
+        properties.setProperty("git.submodules.libs/core.branch", "main")
+        return properties
+    }
+
+    @Test
+    void behavesLikeASortedMap() {
+        given: "a snapshot of generated properties"
+        def properties = generatedProperties()
+        def snapshot = GitPropertiesSnapshot.of(properties)
+
+        expect: "the same entries in sorted order"
+        Assertions.assertEquals(new TreeMap<>(properties), snapshot)
+        Assertions.assertEquals(
+                new TreeMap<>(properties).keySet().toList(), snapshot.keySet().toList())
+
+        and: "lookups of present and missing keys"
+        Assertions.assertEquals("6fcf829", snapshot.get("git.commit.id.abbrev"))
+        Assertions.assertEquals("main", snapshot.get("git.submodules.libs/core.branch"))
+        Assertions.assertNull(snapshot.get("git.commit.id"))
+        Assertions.assertNull(snapshot.get("git.commit.id.full.x"))
+        Assertions.assertFalse(snapshot.containsKey("git."))
+
+        and: "no way to modify it"
+        Assertions.assertThrows(UnsupportedOperationException) { snapshot.put("git.tags", "") }
+
+        and: "a round trip to the properties of the core"
+        Assertions.assertEquals(properties, snapshot.toProperties())
+    }
+
+    @Test
+    void equalSnapshotsAreShared() {
+        given: "two projects that generated the same properties"
+        def first = GitPropertiesSnapshot.of(generatedProperties())
+        def second = GitPropertiesSnapshot.of(new HashMap<String, String>(generatedProperties()))
+
+        expect: "both hold the same instance"
+        Assertions.assertSame(first, second)
+
+        when: "the properties that change with every build are removed"
+        def normalized = first.without { it == "git.build.time" }
+
+        then: "only those are gone"
+        Assertions.assertEquals(first.size() - 1, normalized.size())
+        Assertions.assertFalse(normalized.containsKey("git.build.time"))
+        Assertions.assertSame(normalized, normalized.without { false })
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.Constants
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class GitStateFilesTest {
+    @TempDir
+    File temporaryFolder
+
+    private File gitDir
+
+    @BeforeEach
+    void initRepository() {
+        try (Git git = Git.init().setDirectory(temporaryFolder).call()) {
+            gitDir = git.repository.directory
+            git.commit()
+                    .setAuthor("JUnitTest", "example@example.com")
+                    .setCommitter("JUnitTest", "example@example.com")
+                    .setMessage("initial commit")
+                    .call()
+        }
+        def remoteRefs = new File(gitDir, "refs/remotes/origin")
+        remoteRefs.mkdirs()
+        new File(remoteRefs, "main").text = new File(gitDir, "refs/heads/master").text
+        new File(remoteRefs, Constants.HEAD).text = "ref: refs/remotes/origin/main\n"
+    }
+
+    private Set<String> relativePathsOf(String evaluateOnCommit) {
+        return GitStateFiles.of(gitDir, evaluateOnCommit)
+                .collect { gitDir.toPath().relativize(it.toPath()).toString().replace('\\', '/') }
+                .toSet()
+    }
+
+    @Test
+    void revisionsRelativeToHeadOnlyDependOnHead() {
+        expect: "no ref files in addition to the ones of HEAD"
+        def head = relativePathsOf(Constants.HEAD)
+        Assertions.assertTrue(head.contains("refs/heads/master"), head.toString())
+        Assertions.assertEquals(head, relativePathsOf("HEAD~1"))
+        Assertions.assertEquals(head, relativePathsOf("@"))
+        Assertions.assertEquals(head, relativePathsOf("0123456789012345678901234567890123456789"))
+    }
+
+    @Test
+    void otherRefsAreInputs() {
+        expect: "the file of the remote tracking branch"
+        Assertions.assertTrue(relativePathsOf("origin/main~2").contains("refs/remotes/origin/main"))
+
+        and: "the files of a tag"
+        Assertions.assertTrue(relativePathsOf("v1.0^{commit}").contains("refs/tags/v1.0"))
+
+        and: "the target of a symbolic ref"
+        def remote = relativePathsOf("origin")
+        Assertions.assertTrue(remote.contains("refs/remotes/origin/HEAD"), remote.toString())
+        Assertions.assertTrue(remote.contains("refs/remotes/origin/main"), remote.toString())
+
+        and: "packed-refs for refs that are not stored as individual files"
+        Assertions.assertTrue(remote.contains(Constants.PACKED_REFS))
+    }
+}
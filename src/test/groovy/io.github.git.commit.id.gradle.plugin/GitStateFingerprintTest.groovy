@@ -0,0 +1,73 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class GitStateFingerprintTest {
+    @TempDir
+    File temporaryFolder
+
+    private File repositoryDir
+
+    private static void runGit(File dir, String... args) {
+        def process = new ProcessBuilder(["git", "-c", "user.name=JUnitTest",
+                                          "-c", "user.email=example@example.com", *args])
+                .directory(dir)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+    }
+
+    /**
+     * Moves all timestamps of the git directory into the past, so they can be trusted.
+     */
+    private static void settle(File gitDir) {
+        long timestamp = System.currentTimeMillis() - 60_000
+        gitDir.eachFileRecurse { it.setLastModified(timestamp) }
+        gitDir.setLastModified(timestamp)
+    }
+
+    @BeforeEach
+    void initRepository() {
+        repositoryDir = new File(temporaryFolder, "repository")
+        repositoryDir.mkdirs()
+        runGit(repositoryDir, "init", "-q")
+        runGit(repositoryDir, "commit", "-q", "--allow-empty", "-m", "initial commit")
+    }
+
+    @Test
+    void recentModificationsAreRacy() {
+        def gitDir = new File(repositoryDir, ".git")
+
+        expect: "a fingerprint of a repository that was just modified to be racy"
+        Assertions.assertTrue(GitStateFingerprint.of(gitDir, "").isRacy())
+
+        when: "the modifications are old enough"
+        settle(gitDir)
+
+        then: "the fingerprint can be trusted"
+        Assertions.assertFalse(GitStateFingerprint.of(gitDir, "").isRacy())
+    }
+
+    @Test
+    void commitsInLinkedWorkTreesChangeTheFingerprint() {
+        given: "a linked work tree"
+        def workTree = new File(temporaryFolder, "worktree")
+        runGit(repositoryDir, "worktree", "add", "-q", "-b", "feature", workTree.path)
+        def gitDir = new File(repositoryDir, ".git/worktrees/worktree")
+        Assertions.assertTrue(gitDir.isDirectory())
+        def before = GitStateFingerprint.of(gitDir, "")
+
+        when: "a commit is made in the work tree"
+        runGit(workTree, "commit", "-q", "--allow-empty", "-m", "second commit")
+
+        then: "the fingerprint of the work tree changed"
+        def after = GitStateFingerprint.of(gitDir, "")
+        Assertions.assertNotEquals(before, after)
+        Assertions.assertNotEquals(
+                before.components["refs/heads/feature"], after.components["refs/heads/feature"])
+    }
+}
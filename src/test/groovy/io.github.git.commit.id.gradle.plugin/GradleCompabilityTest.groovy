@@ -34,6 +34,13 @@ class GradleCompabilityTest extends AbstractGradleTest {
         assertPluginSkipped(result)
     }
 
+    /**
+     * The supported gradle versions, also used by {@link GradlePerformanceTest}.
+     */
+    static Stream<String> getGradleVersions() {
+        return getGradleTestParams().map { it.get()[0] as String }
+    }
+
     private static Stream<Arguments> getGradleTestParams() {
         return Stream.of(
                 Arguments.of("9.4.1", Arrays.asList("${GitCommitIdPluginGenerationTask.NAME}")),
@@ -1,5 +1,11 @@
 package io.github.git.commit.id.gradle.plugin
 
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.api.MergeCommand
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.ObjectInserter
+import org.eclipse.jgit.lib.PersonIdent
 import org.gradle.testkit.runner.GradleRunner
 import org.gradle.testkit.runner.TaskOutcome
 import org.junit.jupiter.api.Assertions
@@ -72,6 +78,533 @@ class GradleIntegrationTest extends AbstractGradleTest {
         assertPluginExecuted(result)
     }
 
+    @Test
+    void upToDateChecksShouldIgnoreTheObjectDatabase() {
+        given: "a dummy project"
+        def projectDir = temporaryFolder
+
+        when: "running the plugin"
+        def runner = createRunner(projectDir)
+
+        then: "the execution should run the plugin"
+        def result = runner.build()
+        assertPluginExecuted(result)
+
+        when: "objects are written to the git database (e.g. by a fetch or a gc)"
+        try (final Git git = Git.open(projectDir)) {
+            try (ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+                inserter.insert(Constants.OBJ_BLOB, "unrelated".getBytes("UTF-8"))
+                inserter.flush()
+            }
+        }
+
+        then: "the plugin should not run again"
+        result = runner.build()
+        assertPluginSkipped(result)
+
+        when: "a tag is created"
+        try (final Git git = Git.open(projectDir)) {
+            git.tag().setName("v1.0.0").setAnnotated(false).call()
+        }
+
+        then: "the plugin get's executed again"
+        result = runner.build()
+        assertPluginExecuted(result)
+    }
+
+    @Test
+    void batchGenerationShouldWriteOneLinePerCommit() {
+        given: "a dummy project with a tagged history"
+        def projectDir = temporaryFolder
+        def firstCommit = runGitCommit(projectDir, "first release")
+        try (final Git git = Git.open(projectDir)) {
+            git.tag().setName("v1.0.0").setAnnotated(false).call()
+        }
+        def secondCommit = runGitCommit(projectDir, "fix, with a comma")
+        def thirdCommit = runGitCommit(projectDir, "second release")
+        try (final Git git = Git.open(projectDir)) {
+            git.tag().setName("v2.0.0").setMessage("annotated").call()
+        }
+
+        and: "the batch task is configured"
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    tasks.named('${GitCommitIdBatchGenerationTask.NAME}') {
+                        revisions = ['refs/tags/*', 'v1.0.0..v2.0.0']
+                        format = ${BatchOutputFormat.name}.CSV
+                    }
+                    """.stripIndent()
+            )
+        }
+
+        when: "running the batch task"
+        def runner = createRunner(projectDir, [":${GitCommitIdBatchGenerationTask.NAME}"])
+        def result = runner.build()
+
+        then: "the execution should be successfull"
+        assertTaskOutcome(
+                result, TaskOutcome.SUCCESS, ":${GitCommitIdBatchGenerationTask.NAME}")
+
+        and: "every commit is written in order"
+        def lines = new File(projectDir, "build/git-batch.csv").readLines()
+        Assertions.assertEquals(5, lines.size(), lines.join("\n"))
+        Assertions.assertTrue(lines[0].startsWith("revision,git.commit.id.full,"), lines[0])
+        Assertions.assertTrue(lines[1].startsWith("refs/tags/*,${firstCommit},"), lines[1])
+        Assertions.assertTrue(lines[2].startsWith("refs/tags/*,${thirdCommit},"), lines[2])
+        Assertions.assertTrue(lines[3].startsWith("v1.0.0..v2.0.0,${secondCommit},"), lines[3])
+        Assertions.assertTrue(lines[3].contains(",\"fix, with a comma\","), lines[3])
+        Assertions.assertTrue(lines[3].endsWith(",3"), lines[3])
+        Assertions.assertTrue(lines[4].startsWith("v1.0.0..v2.0.0,${thirdCommit},"), lines[4])
+        Assertions.assertTrue(lines[4].endsWith(",v2.0.0,4"), lines[4])
+    }
+
+    @Test
+    void changelogShouldOnlyWalkNewCommits() {
+        given: "a dummy project with a release tag"
+        def projectDir = temporaryFolder
+        try (final Git git = Git.open(projectDir)) {
+            git.tag().setName("v1.0.0").setMessage("release").call()
+        }
+        runGitCommit(projectDir, "first change")
+
+        and: "the changelog task is configured"
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    tasks.named('${GitCommitIdChangelogTask.NAME}') {
+                        template = '- \${git.commit.message.short}'
+                    }
+                    """.stripIndent()
+            )
+        }
+        def changelog = new File(projectDir, "build/git-changelog.md")
+
+        when: "running the changelog task"
+        def runner = createRunner(projectDir, [":${GitCommitIdChangelogTask.NAME}"])
+        def result = runner.build()
+
+        then: "the changelog contains the commits since the tag"
+        assertTaskOutcome(result, TaskOutcome.SUCCESS, ":${GitCommitIdChangelogTask.NAME}")
+        Assertions.assertEquals(["- first change"], changelog.readLines())
+
+        when: "another commit is added"
+        runGitCommit(projectDir, "second change")
+        result = runner.build()
+
+        then: "only the new commit is walked"
+        Assertions.assertTrue(result.output.contains("Reusing the changelog up to"), result.output)
+        Assertions.assertEquals(["- second change", "- first change"], changelog.readLines())
+    }
+
+    @Test
+    void incrementalChangelogShouldMatchAFreshOne() {
+        given: "a dummy project with a release tag and an old side branch"
+        def projectDir = temporaryFolder
+        String mainBranch
+        try (final Git git = Git.open(projectDir)) {
+            mainBranch = git.repository.branch
+            git.tag().setName("v1.0.0").setMessage("release").call()
+            git.checkout().setCreateBranch(true).setName("feature").call()
+            def longAgo = new PersonIdent("JUnitTest", "example@example.com",
+                    new Date(946684800000L), TimeZone.getTimeZone("UTC"))
+            git.commit().setAllowEmpty(true).setAuthor(longAgo).setCommitter(longAgo)
+                    .setMessage("old change").call()
+            git.checkout().setName(mainBranch).call()
+        }
+        def firstChange = runGitCommit(projectDir, "first change")
+
+        and: "the changelog task lists the tags"
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    tasks.named('${GitCommitIdChangelogTask.NAME}') {
+                        from = 'v1.0.0'
+                        template = '- \${git.commit.message.short} [\${git.tags}]'
+                    }
+                    """.stripIndent()
+            )
+        }
+        def changelog = new File(projectDir, "build/git-changelog.md")
+        def runner = createRunner(projectDir, [":${GitCommitIdChangelogTask.NAME}"])
+        runner.build()
+
+        when: "the old branch is merged, a listed commit is tagged and the task runs again"
+        try (final Git git = Git.open(projectDir)) {
+            git.merge().include(git.repository.resolve("feature"))
+                    .setFastForward(MergeCommand.FastForwardMode.NO_FF)
+                    .setMessage("merge old change").call()
+            git.tag().setName("v1.1.0").setMessage("release")
+                    .setObjectId(git.repository.parseCommit(ObjectId.fromString(firstChange)))
+                    .call()
+        }
+        def result = runner.build()
+        def incremental = changelog.readLines()
+
+        and: "the changelog is generated from scratch"
+        changelog.delete()
+        runner.build()
+
+        then: "both changelogs are the same"
+        Assertions.assertFalse(result.output.contains("Reusing the changelog up to"), result.output)
+        Assertions.assertEquals(changelog.readLines(), incremental)
+        Assertions.assertEquals(
+                ["- merge old change []", "- first change [v1.1.0]", "- old change []"],
+                incremental)
+    }
+
+    @Test
+    void changedProjectsShouldBeDetected() {
+        given: "a multi project build"
+        def projectDir = temporaryFolder
+        new File(projectDir, "settings.gradle") << "include 'app', 'lib', 'lib:nested'"
+        ["app", "lib", "lib/nested"].each { dir ->
+            new File(projectDir, "${dir}/src").mkdirs()
+            new File(projectDir, "${dir}/src/File.txt") << "initial"
+        }
+
+        and: "a consumer of the changed projects"
+        def marker = "==============MARKER=============="
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    task printChangedProjects {
+                        def changedProjects = project.ext.gitChangedProjects
+                        dependsOn '${GitCommitIdChangedProjectsTask.NAME}'
+                        doLast {
+                            println("${marker}\${changedProjects.get()}${marker}")
+                        }
+                    }
+                    """.stripIndent()
+            )
+        }
+
+        and: "everything is committed"
+        runGitAdd(projectDir)
+        runGitCommit(projectDir, "added projects")
+
+        when: "files of two projects are changed"
+        new File(projectDir, "app/src/File.txt") << "changed"
+        new File(projectDir, "lib/nested/src/Other.txt") << "added"
+        runGitAdd(projectDir)
+        runGitCommit(projectDir, "changed projects")
+
+        and: "the changed projects are printed"
+        def result = createRunner(projectDir, [":printChangedProjects"]).build()
+
+        then: "only the changed projects are reported"
+        assertTaskOutcome(
+                result, TaskOutcome.SUCCESS, ":${GitCommitIdChangedProjectsTask.NAME}")
+        def markerLine = result.output.readLines().find { it.contains(marker) }
+        Assertions.assertTrue(markerLine.contains("${marker}[:app, :lib:nested]${marker}"), markerLine)
+        Assertions.assertEquals(
+                [":app", ":lib:nested"],
+                new File(projectDir, "build/git-changed-projects.txt").readLines())
+    }
+
+    @Test
+    void normalizedPropertiesShouldKeepConsumersUpToDate() {
+        given: "a dummy project"
+        def projectDir = temporaryFolder
+
+        and: "a task that consumes the normalized properties"
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    task writeManifest {
+                        def gitProperties = tasks.named('${GitCommitIdPluginGenerationTask.NAME}')
+                            .flatMap { it.normalizedProperties }
+                        def manifest = layout.buildDirectory.file("manifest.txt").get().asFile
+                        inputs.property('gitProperties', gitProperties)
+                        outputs.file(manifest)
+                        dependsOn '${GitCommitIdPluginGenerationTask.NAME}'
+                        doLast {
+                            manifest.text = gitProperties.get().toString()
+                        }
+                    }
+                    """.stripIndent()
+            )
+        }
+
+        when: "running the consumer"
+        def runner = createRunner(projectDir, [":writeManifest"])
+        def result = runner.build()
+
+        then: "the plugin and the consumer are executed"
+        assertPluginExecuted(result)
+        assertTaskOutcome(result, TaskOutcome.SUCCESS, ":writeManifest")
+        def manifest = new File(projectDir, "build/manifest.txt").text
+        Assertions.assertTrue(manifest.contains("git.commit.id.full="), manifest)
+        Assertions.assertFalse(manifest.contains("git.build.time="), manifest)
+
+        when: "the plugin runs again"
+        new File(projectDir, "build/generated/resources/gitCommitId/git.properties").delete()
+        Thread.sleep(1000)
+        result = runner.build()
+
+        then: "the consumer is up-to-date nevertheless"
+        assertPluginExecuted(result)
+        assertTaskOutcome(result, TaskOutcome.UP_TO_DATE, ":writeManifest")
+    }
+
+    @Test
+    void generatedPropertiesArePackagedAsResource() {
+        given: "a dummy project"
+        def projectDir = temporaryFolder
+
+        when: "processing the resources"
+        def result = createRunner(projectDir, [":processResources"]).build()
+
+        then: "the plugin runs before the resources are processed"
+        assertPluginExecuted(result)
+        assertTaskOutcome(result, TaskOutcome.SUCCESS, ":processResources")
+
+        and: "the generated properties are part of the resources"
+        def generated = new File(projectDir, "build/generated/resources/gitCommitId/git.properties")
+        def packaged = new File(projectDir, "build/resources/main/git.properties")
+        Assertions.assertTrue(packaged.exists(), "Does not exists $packaged")
+        Assertions.assertEquals(generated.readLines(), packaged.readLines())
+    }
+
+    @Test
+    void resourceTemplatesAreProcessedIncrementally() {
+        given: "a dummy project with resource templates"
+        def projectDir = temporaryFolder
+        def templates = new File(projectDir, "src/main/resourceTemplates")
+        templates.mkdirs()
+        new File(templates, "version.txt") << 'commit=${git.commit.id.abbrev} other=${unknown}'
+        def staticTemplate = new File(templates, "static.txt")
+        staticTemplate << "no tokens"
+
+        when: "processing the resources"
+        def result = createRunner(projectDir, [":processResources", "--info"]).build()
+
+        then: "the tokens are replaced in the packaged resources"
+        assertTaskOutcome(result, TaskOutcome.SUCCESS, ":${GitCommitIdResourceTemplatesTask.NAME}")
+        Assertions.assertEquals(
+                "commit=${getAbbrevCommit(projectDir)} other=\${unknown}".toString(),
+                new File(projectDir, "build/resources/main/version.txt").text)
+        Assertions.assertEquals(
+                "no tokens", new File(projectDir, "build/resources/main/static.txt").text)
+        Assertions.assertTrue(result.output.contains("Processed 2 templates"), result.output)
+
+        when: "processing the resources again"
+        result = createRunner(projectDir, [":processResources"]).build()
+
+        then: "the templates are up-to-date"
+        assertTaskOutcome(
+                result, TaskOutcome.UP_TO_DATE, ":${GitCommitIdResourceTemplatesTask.NAME}")
+
+        when: "only one template changed"
+        staticTemplate.text = "still no tokens"
+        result = createRunner(projectDir, [":processResources", "--info"]).build()
+
+        then: "only the changed template is processed"
+        Assertions.assertTrue(
+                result.output.contains("Processed 1 templates, 1 templates were up-to-date"),
+                result.output)
+        Assertions.assertEquals(
+                "still no tokens", new File(projectDir, "build/resources/main/static.txt").text)
+    }
+
+    @Test
+    void propertiesAreInjectedIntoForkedJvms() {
+        given: "a dummy project with a main class"
+        def projectDir = temporaryFolder
+        def marker = "==============MARKER=============="
+        new File(projectDir, "src/main/java").mkdirs()
+        new File(projectDir, "src/main/java/Main.java") << """
+            public class Main {
+                public static void main(String[] args) {
+                    System.out.println("${marker}" + System.getProperty("git.commit.id.abbrev")
+                        + "|" + System.getenv("GIT_COMMIT_ID_ABBREV")
+                        + "|" + System.getProperty("git.build.time") + "${marker}");
+                }
+            }
+        """.stripIndent()
+
+        and: "the properties are injected into the run task"
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    ${GitCommitIdPluginExtension.NAME} {
+                        injectIntoSysPropertiesOf.add('printGit')
+                        injectIntoEnvironmentOf.add('printGit')
+                    }
+                    tasks.register('printGit', JavaExec) {
+                        classpath = sourceSets.main.runtimeClasspath
+                        mainClass = 'Main'
+                    }
+                    """.stripIndent()
+            )
+        }
+
+        when: "running the task"
+        def result = createRunner(projectDir, [":printGit"]).build()
+
+        then: "the forked JVM sees the properties"
+        def expectedAbbrevCommit = getAbbrevCommit(projectDir)
+        def markerLine = result.output.readLines().find { it.contains(marker) }
+        Assertions.assertTrue(
+                markerLine.contains(
+                        "${marker}${expectedAbbrevCommit}|${expectedAbbrevCommit}|null${marker}"),
+                markerLine)
+    }
+
+    @Test
+    void settingsPluginShouldServeAllProjects() {
+        given: "a multi project build that applies the settings plugin"
+        def projectDir = temporaryFolder
+        def marker = "==============MARKER=============="
+        new File(projectDir, "settings.gradle").text = """
+            plugins {
+                id('io.github.git-commit-id.git-commit-id-gradle-plugin.settings')
+            }
+            include('sub')
+        """.stripIndent()
+        new File(projectDir, "build.gradle").text = ""
+        new File(projectDir, "sub").mkdirs()
+        new File(projectDir, "sub/build.gradle") << """
+            tasks.register('printGit') {
+                dependsOn(':${GitCommitIdPluginGenerationTask.NAME}')
+                doLast {
+                    println("${marker}\${gitProperties.get('git.commit.id.abbrev')}${marker}")
+                }
+            }
+        """.stripIndent()
+
+        when: "a task of the subproject reads the properties"
+        def result = createRunner(projectDir, [":sub:printGit"]).build()
+
+        then: "the properties were generated once by the root project"
+        assertPluginExecuted(result)
+        Assertions.assertNull(result.task(":sub:${GitCommitIdPluginGenerationTask.NAME}"))
+
+        and: "the subproject sees them"
+        def markerLine = result.output.readLines().find { it.contains(marker) }
+        Assertions.assertTrue(
+                markerLine.contains("${marker}${getAbbrevCommit(projectDir)}${marker}"),
+                result.output)
+    }
+
+    @Test
+    void settingsPluginShouldServeJavaSubprojects() {
+        given: "a multi project build that applies the settings plugin"
+        def projectDir = temporaryFolder
+        def marker = "==============MARKER=============="
+        new File(projectDir, "settings.gradle").text = """
+            plugins {
+                id('io.github.git-commit-id.git-commit-id-gradle-plugin.settings')
+            }
+            include('sub')
+        """.stripIndent()
+        new File(projectDir, "build.gradle").text = """
+            ${GitCommitIdPluginExtension.NAME} {
+                injectIntoSysPropertiesOf.add('printGit')
+            }
+        """.stripIndent()
+
+        and: "a java subproject with a main class"
+        new File(projectDir, "sub/src/main/java").mkdirs()
+        new File(projectDir, "sub/src/main/java/Main.java") << """
+            public class Main {
+                public static void main(String[] args) {
+                    System.out.println(
+                        "${marker}" + System.getProperty("git.commit.id.abbrev") + "${marker}");
+                }
+            }
+        """.stripIndent()
+        new File(projectDir, "sub/build.gradle") << """
+            plugins {
+                id('java')
+            }
+            tasks.register('printGit', JavaExec) {
+                classpath = sourceSets.main.runtimeClasspath
+                mainClass = 'Main'
+            }
+            tasks.register('printNormalized') {
+                def properties = gitNormalizedProperties
+                doLast {
+                    println("${marker}\${properties.get()['git.commit.id.abbrev']}${marker}")
+                }
+            }
+        """.stripIndent()
+
+        when: "the resources of the subproject are processed and its JVM is forked"
+        def result = createRunner(projectDir,
+                [":sub:processResources", ":sub:printGit", ":sub:printNormalized"]).build()
+
+        then: "the properties were generated once by the root project"
+        assertPluginExecuted(result)
+        Assertions.assertNull(result.task(":sub:${GitCommitIdPluginGenerationTask.NAME}"))
+
+        and: "the subproject packages them"
+        def generated = new File(projectDir, "build/generated/resources/gitCommitId/git.properties")
+        def packaged = new File(projectDir, "sub/build/resources/main/git.properties")
+        Assertions.assertTrue(packaged.exists(), "Does not exists $packaged")
+        Assertions.assertEquals(generated.readLines(), packaged.readLines())
+
+        and: "they are injected and exposed as provider"
+        def expected = "${marker}${getAbbrevCommit(projectDir)}${marker}"
+        def markerLines = result.output.readLines().findAll { it.contains(marker) }
+        Assertions.assertEquals(2, markerLines.size(), result.output)
+        markerLines.each { Assertions.assertTrue(it.contains(expected), result.output) }
+    }
+
+    @Test
+    void describeVersionShouldReuseTheConfigurationCache() {
+        given: "a dummy project that derives its version from git describe"
+        def projectDir = temporaryFolder
+        def marker = "==============MARKER=============="
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    version = ${GitCommitIdPluginExtension.NAME}.describeVersion.get()
+                    def describedVersion = version
+                    tasks.register('printVersion') {
+                        doLast {
+                            println("${marker}\${describedVersion}${marker}")
+                        }
+                    }
+                    """.stripIndent()
+            )
+        }
+        runGitAdd(projectDir)
+        runGitCommit(projectDir)
+        try (final Git git = Git.open(projectDir)) {
+            git.tag().setName("v1.0").setAnnotated(true).setMessage("v1.0").call()
+        }
+        def runner = GradleRunner.create()
+                .withPluginClasspath()
+                .withArguments(":printVersion", "--configuration-cache")
+                .withProjectDir(projectDir)
+
+        when: "the version is printed"
+        def result = runner.build()
+
+        then: "the version is the tag"
+        Assertions.assertTrue(result.output.contains("${marker}v1.0${marker}"), result.output)
+
+        when: "the version is printed again"
+        result = runner.build()
+
+        then: "the configuration cache is reused"
+        Assertions.assertTrue(result.output.contains("Reusing configuration cache"), result.output)
+        Assertions.assertTrue(result.output.contains("${marker}v1.0${marker}"), result.output)
+
+        when: "a new commit was made"
+        new File(projectDir, "file.txt") << "content"
+        runGitAdd(projectDir)
+        runGitCommit(projectDir)
+        result = runner.build()
+
+        then: "the configuration is computed again with the new version"
+        Assertions.assertFalse(result.output.contains("Reusing configuration cache"), result.output)
+        Assertions.assertTrue(
+                result.output.contains("${marker}v1.0-1-g${getAbbrevCommit(projectDir)}${marker}"),
+                result.output)
+    }
+
     @Test
     void cachingShouldWork() {
         given: "a dummy project"
@@ -89,7 +622,8 @@ class GradleIntegrationTest extends AbstractGradleTest {
         assertPluginExecuted(result)
 
         and: "output exists"
-        def expectedGenerated = projectDir.toPath().resolve("build/git.properties").toFile()
+        def expectedGenerated = projectDir.toPath()
+                .resolve("build/generated/resources/gitCommitId/git.properties").toFile()
         Assertions.assertTrue(expectedGenerated.exists(), "Does not exists $expectedGenerated")
         def originalLines = expectedGenerated.readLines()
 
@@ -159,4 +693,48 @@ class GradleIntegrationTest extends AbstractGradleTest {
         markerLine = result.output.readLines().find {it.contains(marker)}
         Assertions.assertTrue(markerLine.contains("${marker}${expectedAbbrevCommit}${marker}"), markerLine)
     }
+
+    @Test
+    void exceededTimeBudgetMarksExpensivePropertiesUnavailable() {
+        given: "a dummy project with a time budget nothing fits into"
+        def projectDir = temporaryFolder
+        new File(projectDir, "build.gradle").withWriterAppend("UTF-8") {
+            it.write(
+                    """
+                    gitCommitId {
+                        gitSettings {
+                            timeBudgetInMs = 1L
+                            shouldFailOnUnableToExtractRepoInfo = false
+                        }
+                    }
+                    """.stripIndent()
+            )
+        }
+
+        when: "running the plugin"
+        def runner = createRunner(projectDir)
+        def result = runner.build()
+
+        then: "the execution should be successfull"
+        assertPluginExecuted(result)
+        Assertions.assertTrue(
+                result.output.contains("Unable to extract the information from the git repository"),
+                result.output)
+
+        and: "only the cheap properties were collected"
+        def properties = new Properties()
+        new File(projectDir, "build/generated/resources/gitCommitId/git.properties")
+                .withInputStream { properties.load(it) }
+        Assertions.assertEquals(
+                GitCommitIdPluginGenerationTask.UNAVAILABLE_PROPERTY_VALUE,
+                properties.getProperty("git.dirty"))
+        Assertions.assertEquals(
+                GitCommitIdPluginGenerationTask.UNAVAILABLE_PROPERTY_VALUE,
+                properties.getProperty("git.total.commit.count"))
+        try (final Git git = Git.open(projectDir)) {
+            Assertions.assertEquals(
+                    git.repository.resolve("HEAD").name(),
+                    properties.getProperty("git.commit.id.full"))
+        }
+    }
 }
@@ -0,0 +1,283 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.gradle.testkit.runner.BuildResult
+import org.gradle.testkit.runner.GradleRunner
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.MethodSource
+
+/**
+ * Runs the same scenarios on every supported gradle version against a generated large
+ * repository, and compares the configuration and execution times with the checked-in
+ * baseline ({@code src/test/resources/performance-baseline.properties}).
+ * Run with {@code ./gradlew performanceTest}.
+ *
+ * <p>Scenarios without a baseline are only recorded. To (re-)create the baseline on the
+ * reference machine run {@code ./gradlew performanceTest -PupdatePerformanceBaseline}.
+ * Independent of the baseline, the scenarios that should not do any git work (the task is
+ * up-to-date or the configuration cache is reused) are compared with a control build in
+ * the same daemon that excludes the task, so that they can regress on any machine.
+ * The allowed regression is {@link #DEFAULT_THRESHOLD} and can be changed with
+ * {@code -PperformanceThreshold=0.5}.
+ */
+@Tag("performance")
+class GradlePerformanceTest extends AbstractGradleTest {
+    private static final int COMMITS = 20_000
+    private static final int FILES = 20_000
+    private static final int TAGS = 2_000
+    private static final int SUBPROJECTS = 100
+    private static final int ITERATIONS = 5
+    private static final int COLD_ITERATIONS = 3
+    private static final double DEFAULT_THRESHOLD = 0.25d
+    // Absolute slack for scenarios that only take a few milliseconds
+    private static final long NOISE_MILLIS = 50
+    private static final String TIMING_MARKER = "GIT_COMMIT_ID_PERFORMANCE configuration="
+    // Scenarios that should not take longer than the control build
+    private static final List<String> CONTROLLED_SCENARIOS = ["upToDate", "configurationCache"]
+
+    private static final File BASELINE = new File(System.getProperty(
+            "performance.baseline", "src/test/resources/performance-baseline.properties"))
+    private static final File RESULTS = new File(System.getProperty(
+            "performance.results", "build/reports/performance"))
+
+    /**
+     * The median times of a scenario in milliseconds.
+     */
+    private static final class Timing {
+        final long configuration
+        final long execution
+
+        Timing(long configuration, long execution) {
+            this.configuration = configuration
+            this.execution = execution
+        }
+
+        long getTotal() {
+            return configuration + execution
+        }
+
+        @Override
+        String toString() {
+            return "configuration=${configuration}ms execution=${execution}ms"
+        }
+    }
+
+    private static void runGit(File projectDir, String... args) {
+        def process = new ProcessBuilder(["git", "-c", "user.name=JUnitTest",
+                                          "-c", "user.email=example@example.com", *args])
+                .directory(projectDir)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+    }
+
+    /**
+     * Adds {@link #FILES} files, {@link #COMMITS} commits and {@link #TAGS} tags on top
+     * of the current branch with {@code git fast-import}.
+     */
+    private static void generateLargeRepository(File projectDir) {
+        String branch
+        String head
+        try (Git git = Git.open(projectDir)) {
+            branch = git.repository.fullBranch
+            head = git.repository.resolve("HEAD").name()
+        }
+        def process = new ProcessBuilder(["git", "fast-import", "--quiet"])
+                .directory(projectDir)
+                .redirectErrorStream(true)
+                .start()
+        def output = new StringBuilder()
+        def reader = Thread.start { output.append(process.inputStream.text) }
+        process.outputStream.withWriter("UTF-8") { writer ->
+            long time = 1_600_000_000L
+            COMMITS.times { commit ->
+                def message = "commit ${commit}"
+                writer << "commit ${branch}\nmark :${commit + 1}\n"
+                writer << "committer JUnitTest <example@example.com> ${time + commit} +0000\n"
+                writer << "data ${message.length()}\n${message}\n"
+                writer << "from ${commit == 0 ? head : ":${commit}"}\n"
+                (commit == 0 ? (0..<FILES) : [commit % FILES]).each { file ->
+                    def content = "file ${file} in commit ${commit}\n"
+                    writer << "M 100644 inline files/dir${file % 100}/file${file}.txt\n"
+                    writer << "data ${content.length()}\n${content}\n"
+                }
+                writer << "\n"
+            }
+            TAGS.times { tag ->
+                int commit = (tag + 1) * COMMITS.intdiv(TAGS)
+                writer << "reset refs/tags/v${tag}\nfrom :${commit}\n\n"
+            }
+        }
+        Assertions.assertEquals(0, process.waitFor(), output.toString())
+        reader.join()
+        runGit(projectDir, "reset", "-q", "--hard")
+    }
+
+    private static GradleRunner createRunner(
+            File projectDir, File testKitDir, String gradleVersion, String... args) {
+        return GradleRunner.create()
+                .withGradleVersion(gradleVersion)
+                .withTestKitDir(testKitDir)
+                .withPluginClasspath()
+                .withArguments(
+                        "--init-script", new File(projectDir, "timing.gradle").absolutePath,
+                        GitCommitIdPluginGenerationTask.NAME, *args)
+                .withProjectDir(projectDir)
+    }
+
+    private static Timing timingOf(Closure<BuildResult> build) {
+        long start = System.nanoTime()
+        def result = build()
+        long total = (System.nanoTime() - start).intdiv(1_000_000L)
+        // Missing when the configuration was reused from the configuration cache
+        def line = result.output.readLines().find { it.startsWith(TIMING_MARKER) }
+        long configuration = line == null ? 0 : line.substring(TIMING_MARKER.length()) as long
+        return new Timing(configuration, Math.max(0, total - configuration))
+    }
+
+    private static Timing median(List<Timing> timings) {
+        def configurations = timings*.configuration.sort()
+        def executions = timings*.execution.sort()
+        int middle = timings.size().intdiv(2)
+        return new Timing(configurations[middle], executions[middle])
+    }
+
+    private static Timing measure(int iterations, Closure<BuildResult> build) {
+        return median((1..iterations).collect { timingOf(build) })
+    }
+
+    @ParameterizedTest
+    @MethodSource("io.github.git.commit.id.gradle.plugin.GradleCompabilityTest#getGradleVersions")
+    void scenariosShouldNotRegress(String gradleVersion) {
+        given: "a large repository"
+        def projectDir = temporaryFolder
+        generateLargeRepository(projectDir)
+
+        and: "an init script that reports the configuration time"
+        new File(projectDir, "timing.gradle").text = """
+            def start = System.currentTimeMillis()
+            gradle.taskGraph.whenReady {
+                println "${TIMING_MARKER}\${System.currentTimeMillis() - start}"
+            }
+        """.stripIndent()
+        def testKitDir = new File(projectDir, "testkit")
+        Map<String, Timing> timings = [:]
+
+        when: "every build starts its own daemon"
+        int coldRun = 0
+        timings["cold"] = measure(COLD_ITERATIONS) {
+            createRunner(projectDir, new File(projectDir, "testkit-cold-${coldRun++}"),
+                    gradleVersion, "--rerun-tasks").build()
+        }
+
+        and: "the daemon is warm"
+        def warm = createRunner(projectDir, testKitDir, gradleVersion, "--rerun-tasks")
+        warm.build()
+        timings["warm"] = measure(ITERATIONS) { warm.build() }
+
+        and: "the same build excludes the task"
+        def control = createRunner(projectDir, testKitDir, gradleVersion,
+                "-x", GitCommitIdPluginGenerationTask.NAME)
+        control.build()
+        timings["control"] = measure(ITERATIONS) { control.build() }
+
+        and: "the task is up-to-date"
+        def upToDate = createRunner(projectDir, testKitDir, gradleVersion)
+        upToDate.build()
+        timings["upToDate"] = measure(ITERATIONS) { upToDate.build() }
+
+        and: "the configuration is reused from the configuration cache"
+        def configurationCache =
+                createRunner(projectDir, testKitDir, gradleVersion, "--configuration-cache")
+        configurationCache.build()
+        timings["configurationCache"] = measure(ITERATIONS) { configurationCache.build() }
+
+        and: "a build with many projects runs the plugin in every project"
+        def settings = new StringBuilder()
+        SUBPROJECTS.times { index ->
+            settings.append("include('project${index}')\n")
+            new File(projectDir, "project${index}").mkdirs()
+        }
+        new File(projectDir, "settings.gradle").text = settings.toString()
+        new File(projectDir, "build.gradle").text = """
+            plugins {
+                id('io.github.git-commit-id.git-commit-id-gradle-plugin')
+            }
+            subprojects {
+                apply plugin: 'io.github.git-commit-id.git-commit-id-gradle-plugin'
+                ${GitCommitIdPluginExtension.NAME} {
+                    ${GitCommitIdPluginGitSettingsExtension.NAME} {
+                        dotGitDirectory.set(rootProject.layout.projectDirectory.dir('.git'))
+                    }
+                }
+            }
+        """.stripIndent()
+        def subprojects = createRunner(projectDir, testKitDir, gradleVersion, "--rerun-tasks")
+        subprojects.build()
+        timings["subprojects"] = measure(ITERATIONS) { subprojects.build() }
+
+        then: "the times are recorded"
+        def results = new Properties()
+        timings.each { scenario, timing ->
+            def prefix = "${gradleVersion}.${scenario}"
+            results.setProperty("${prefix}.configuration", "${timing.configuration}")
+            results.setProperty("${prefix}.execution", "${timing.execution}")
+        }
+        RESULTS.mkdirs()
+        new File(RESULTS, "gradle-${gradleVersion}.properties").withWriter("UTF-8") {
+            results.store(it, "Median times in milliseconds")
+        }
+        println("gradle=${gradleVersion} timings=${timings}")
+
+        and: "none of them regressed beyond the threshold"
+        double threshold = Double.parseDouble(
+                System.getProperty("performance.threshold", "${DEFAULT_THRESHOLD}"))
+        def controlTiming = timings["control"]
+        def slowerThanControl = CONTROLLED_SCENARIOS.findAll { scenario ->
+            timings[scenario].total > controlTiming.total * (1 + threshold) + NOISE_MILLIS
+        }.collect { scenario ->
+            "${gradleVersion}.${scenario}: ${timings[scenario].total}ms " +
+                    "(control ${controlTiming.total}ms)"
+        }
+        Assertions.assertTrue(slowerThanControl.isEmpty(),
+                "Slower than the control build by more than ${threshold * 100}%:\n" +
+                        slowerThanControl.join('\n'))
+        if (Boolean.getBoolean("performance.updateBaseline")) {
+            updateBaseline(results)
+            return
+        }
+        def baseline = loadBaseline()
+        def regressions = results.stringPropertyNames().sort().findAll { key ->
+            def expected = baseline.getProperty(key)
+            expected != null && (results.getProperty(key) as long) >
+                    (expected as long) * (1 + threshold) + NOISE_MILLIS
+        }.collect { key ->
+            "${key}: ${results.getProperty(key)}ms (baseline ${baseline.getProperty(key)}ms)"
+        }
+        Assertions.assertTrue(regressions.isEmpty(),
+                "Regressed by more than ${threshold * 100}%:\n${regressions.join('\n')}")
+    }
+
+    private static Properties loadBaseline() {
+        def baseline = new Properties()
+        if (BASELINE.isFile()) {
+            BASELINE.withReader("UTF-8") { baseline.load(it) }
+        }
+        return baseline
+    }
+
+    private static synchronized void updateBaseline(Properties results) {
+        def baseline = loadBaseline()
+        baseline.putAll(results)
+        // Sorted, so that updates of the checked-in file are easy to review
+        def lines = ["# Median times in milliseconds, refer to GradlePerformanceTest"]
+        baseline.stringPropertyNames().sort().each {
+            lines << "${it}=${baseline.getProperty(it)}"
+        }
+        BASELINE.parentFile.mkdirs()
+        BASELINE.setText(lines.join("\n") + "\n", "UTF-8")
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.git.commit.id.gradle.plugin
+
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import org.eclipse.jgit.api.Git
+import org.gradle.testkit.runner.GradleRunner
+import org.gradle.testkit.runner.TaskOutcome
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+
+/**
+ * Runs the plugin in hundreds of projects on parallel workers while the refs of the
+ * repository are modified concurrently. Run with {@code ./gradlew stressTest}.
+ */
+@Tag("stress")
+class GradleStressTest extends AbstractGradleTest {
+    private static final int PROJECTS = 200
+    private static final int WORKERS = 32
+
+    @Test
+    void parallelExecutionsShouldBeConsistent() {
+        given: "a build with many projects that all apply the plugin"
+        def projectDir = temporaryFolder
+        def settings = new StringBuilder()
+        PROJECTS.times { index ->
+            settings.append("include('project${index}')\n")
+            new File(projectDir, "project${index}").mkdirs()
+        }
+        new File(projectDir, "settings.gradle").text = settings.toString()
+        new File(projectDir, "build.gradle").text = """
+            plugins {
+                id('io.github.git-commit-id.git-commit-id-gradle-plugin') apply false
+            }
+            subprojects {
+                apply plugin: 'io.github.git-commit-id.git-commit-id-gradle-plugin'
+                ${GitCommitIdPluginExtension.NAME} {
+                    ${GitCommitIdPluginGitSettingsExtension.NAME} {
+                        dotGitDirectory.set(rootProject.layout.projectDirectory.dir('.git'))
+                    }
+                }
+            }
+        """.stripIndent()
+        runGitAdd(projectDir)
+        def commitId = runGitCommit(projectDir, "many projects")
+        def branch
+        try (Git git = Git.open(projectDir)) {
+            branch = git.repository.branch
+        }
+
+        and: "refs that are modified while the build is running"
+        def building = new AtomicBoolean(true)
+        def modifications = new AtomicInteger()
+        def modifier = Thread.start {
+            while (building.get()) {
+                int index = modifications.incrementAndGet()
+                try (Git git = Git.open(projectDir)) {
+                    git.tag().setName("stress-${index}").setAnnotated(index % 2 == 0)
+                            .setMessage("stress").call()
+                    git.branchCreate().setName("stress-${index}").call()
+                    if (index > 1) {
+                        git.tagDelete().setTags("stress-${index - 1}").call()
+                    }
+                }
+            }
+        }
+
+        when: "the properties are generated on parallel workers"
+        long start = System.nanoTime()
+        def result
+        try {
+            result = GradleRunner.create()
+                    .withPluginClasspath()
+                    .withArguments(
+                            GitCommitIdPluginGenerationTask.NAME, "--parallel",
+                            "--max-workers=${WORKERS}", "--stacktrace")
+                    .withProjectDir(projectDir)
+                    .build()
+        } finally {
+            building.set(false)
+            modifier.join()
+        }
+        println("projects=${PROJECTS} workers=${WORKERS} modifications=${modifications.get()} "
+                + "duration(ms)=${(System.nanoTime() - start).intdiv(1_000_000)}")
+
+        then: "every project generated the properties of the same commit"
+        PROJECTS.times { index ->
+            assertTaskOutcome(
+                    result, TaskOutcome.SUCCESS,
+                    ":project${index}:${GitCommitIdPluginGenerationTask.NAME}")
+            def properties = new Properties()
+            new File(projectDir,
+                    "project${index}/build/generated/resources/gitCommitId/git.properties")
+                    .withInputStream { properties.load(it) }
+            Assertions.assertEquals(commitId, properties.getProperty("git.commit.id.full"))
+            Assertions.assertEquals(branch, properties.getProperty("git.branch"))
+        }
+    }
+}
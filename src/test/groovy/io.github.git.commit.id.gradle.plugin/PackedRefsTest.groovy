@@ -0,0 +1,144 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.Constants
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.ObjectInserter
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class PackedRefsTest {
+    private static final int PULL_REQUESTS = 500_000
+    private static final int TAGS = 100
+    private static final String HEADER = "# pack-refs with: peeled fully-peeled sorted \n"
+
+    @TempDir
+    File temporaryFolder
+
+    private File packedRefs
+    // name -> [object id, peeled object id or null]
+    private final Map<String, List<ObjectId>> refs = new TreeMap<>()
+
+    private static ObjectId idOf(String name) {
+        return new ObjectInserter.Formatter().idFor(Constants.OBJ_BLOB, name.bytes)
+    }
+
+    @BeforeEach
+    void initRepository() {
+        try (Git git = Git.init().setDirectory(temporaryFolder).call()) {
+            packedRefs = new File(git.repository.directory, Constants.PACKED_REFS)
+        }
+        PULL_REQUESTS.times { refs["refs/pull/${it}/head".toString()] = [idOf("pull ${it}"), null] }
+        TAGS.times { index ->
+            // Every other tag is an annotated one
+            refs["refs/tags/v${index}".toString()] = [
+                    idOf("tag ${index}"), index % 2 == 0 ? idOf("commit ${index}") : null]
+        }
+        refs["refs/heads/main"] = [idOf("main"), null]
+        refs["refs/remotes/origin/main"] = [idOf("origin/main"), null]
+    }
+
+    private void writePackedRefs(String header, Collection<String> names) {
+        packedRefs.withWriter("UTF-8") { writer ->
+            writer << header
+            names.each { name ->
+                writer << "${refs[name][0].name()} ${name}\n"
+                if (refs[name][1] != null) {
+                    writer << "^${refs[name][1].name()}\n"
+                }
+            }
+        }
+    }
+
+    private static List<String> lookedUpNames() {
+        return ["refs/heads/main", "refs/remotes/origin/main", "refs/pull/0/head",
+                "refs/pull/99999/head", "refs/pull/${PULL_REQUESTS - 1}/head".toString(),
+                "refs/tags/v0", "refs/tags/v1", "refs/tags/v${TAGS - 1}".toString()]
+    }
+
+    private static List<String> missingNames() {
+        return ["refs/a", "refs/pull/5/merge", "refs/pull/5", "refs/tags/v", "refs/zzz"]
+    }
+
+    private void assertLookups(PackedRefs packed) {
+        lookedUpNames().each { name ->
+            Assertions.assertEquals(refs[name][0], packed.exactRef(name), name)
+        }
+        missingNames().each { name -> Assertions.assertNull(packed.exactRef(name), name) }
+
+        def tags = [:]
+        packed.forEachWithPrefix(Constants.R_TAGS) { name, objectId, peeled ->
+            tags[name] = [objectId, peeled]
+        }
+        def expectedTags = refs.findAll { it.key.startsWith(Constants.R_TAGS) }
+        Assertions.assertEquals(expectedTags.keySet(), tags.keySet())
+        expectedTags.each { name, ids -> Assertions.assertEquals(ids, tags[name], name) }
+    }
+
+    @Test
+    void lookupsInSortedPackedRefsMatchJGit() {
+        given: "a sorted packed-refs file with hundreds of thousands of refs"
+        writePackedRefs(HEADER, refs.keySet())
+
+        when: "the refs are looked up by binary search"
+        long start = System.nanoTime()
+        def packed = PackedRefs.open(packedRefs)
+        assertLookups(packed)
+        long binarySearch = System.nanoTime() - start
+
+        then: "JGit resolves the same refs"
+        start = System.nanoTime()
+        try (Git git = Git.open(temporaryFolder)) {
+            lookedUpNames().each { name ->
+                Assertions.assertEquals(
+                        git.repository.exactRef(name).objectId, packed.exactRef(name), name)
+            }
+            def jgitTags = git.repository.refDatabase.getRefsByPrefix(Constants.R_TAGS)
+            Assertions.assertEquals(TAGS, jgitTags.size())
+            jgitTags.each { ref ->
+                Assertions.assertEquals(refs[ref.name][1], ref.peeledObjectId, ref.name)
+            }
+
+            and: "the tag index only contains the tags"
+            Assertions.assertEquals(TAGS, PeeledTagIndex.forRepository(git.repository).size())
+        }
+        long jgit = System.nanoTime() - start
+        packed.close()
+        println("refs=${refs.size()} binarySearch(ns)=${binarySearch} jgit(ns)=${jgit}")
+    }
+
+    @Test
+    void unsortedPackedRefsAreScanned() {
+        given: "a packed-refs file without the sorted trait"
+        def shuffled = new ArrayList<>(refs.keySet())
+        Collections.shuffle(shuffled, new Random(42))
+        writePackedRefs("# pack-refs with: peeled fully-peeled \n", shuffled)
+
+        expect: "the same results"
+        PackedRefs.open(packedRefs).withCloseable { assertLookups(it) }
+    }
+
+    @Test
+    void looseRefsTakePrecedence() {
+        given: "a packed ref that was updated as loose ref"
+        writePackedRefs(HEADER, refs.keySet())
+        def updated = idOf("updated")
+        def loose = new File(packedRefs.parentFile, "refs/remotes/origin/main")
+        loose.parentFile.mkdirs()
+        loose.text = "${updated.name()}\n"
+
+        expect: "the loose ref wins, other refs are taken from packed-refs"
+        try (Git git = Git.open(temporaryFolder)) {
+            Assertions.assertEquals(
+                    updated, RefLookup.resolve(git.repository, "refs/remotes/origin/main"))
+            Assertions.assertEquals(refs["refs/heads/main"][0],
+                    RefLookup.resolve(git.repository, "refs/heads/main"))
+            Assertions.assertNull(RefLookup.resolve(git.repository, "refs/heads/missing"))
+            Assertions.assertEquals(
+                    Constants.R_HEADS + "master",
+                    RefLookup.symbolicTarget(git.repository, Constants.HEAD))
+        }
+    }
+}
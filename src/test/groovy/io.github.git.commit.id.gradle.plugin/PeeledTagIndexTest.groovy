@@ -0,0 +1,166 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.ObjectId
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class PeeledTagIndexTest {
+    @TempDir
+    File temporaryFolder
+
+    private String runGit(File directory = temporaryFolder, String... args) {
+        def process = new ProcessBuilder([
+                "git", "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com", *args
+        ])
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+        return output.trim()
+    }
+
+    private void initRepository() {
+        runGit("init", "-q", "-b", "main")
+        runGit("commit", "-q", "--allow-empty", "-m", "first")
+    }
+
+    private ObjectId resolve(String revision) {
+        return ObjectId.fromString(runGit("rev-parse", revision))
+    }
+
+    private PeeledTagIndex indexOf(File directory = temporaryFolder) {
+        try (Git git = Git.open(directory)) {
+            return PeeledTagIndex.forRepository(git.repository)
+        }
+    }
+
+    @Test
+    void leastRecentlyUsedIndexesAreEvicted() {
+        given: "more tagged repositories than indexes are kept"
+        def directories = (0..PeeledTagIndex.MAX_INDEXES).collect { index ->
+            def directory = new File(temporaryFolder, "repository-${index}")
+            try (Git git = Git.init().setDirectory(directory).setInitialBranch("main").call()) {
+                git.commit()
+                        .setAuthor("JUnitTest", "example@example.com")
+                        .setCommitter("JUnitTest", "example@example.com")
+                        .setMessage("initial")
+                        .call()
+                git.tag().setName("v${index}").call()
+            }
+            return directory
+        }
+
+        when: "the first index is built and used again"
+        def first = indexOf(directories[0])
+        Assertions.assertSame(first, indexOf(directories[0]))
+
+        and: "the indexes of all other repositories are built"
+        directories.drop(1).each { indexOf(it) }
+
+        then: "the first index was evicted and is built again"
+        def rebuilt = indexOf(directories[0])
+        Assertions.assertNotEquals(first, rebuilt)
+        Assertions.assertEquals(["v0"], rebuilt.tagsPointingAt(
+                Git.open(directories[0]).withCloseable { it.repository.resolve("HEAD") }))
+    }
+
+    @Test
+    void packedPeeledLinesAreUsed() {
+        given: "an annotated and a lightweight tag in packed-refs"
+        initRepository()
+        runGit("tag", "-a", "-m", "annotated", "annotated")
+        runGit("tag", "lightweight")
+        runGit("pack-refs", "--all")
+        def tagObject = runGit("rev-parse", "annotated")
+
+        when: "the tag object is no longer available"
+        def objects = new File(temporaryFolder, ".git/objects")
+        new File(objects, "${tagObject.substring(0, 2)}/${tagObject.substring(2)}").delete()
+
+        then: "the peeled line still yields the target and that the tag is annotated"
+        def index = indexOf()
+        Assertions.assertEquals(["annotated", "lightweight"], index.tagsPointingAt(resolve("HEAD")))
+        Assertions.assertTrue(index.isAnnotated("annotated"))
+        Assertions.assertFalse(index.isAnnotated("lightweight"))
+    }
+
+    @Test
+    void tagsAreOnlyPeeledWithoutTheFullyPeeledTrait() {
+        given: "packed-refs with an annotated tag that lacks its peeled line"
+        initRepository()
+        runGit("tag", "-a", "-m", "annotated", "annotated")
+        def tagObject = runGit("rev-parse", "annotated")
+        runGit("tag", "-d", "annotated")
+        def packedRefs = new File(temporaryFolder, ".git/packed-refs")
+
+        when: "the file does not claim to be fully peeled"
+        packedRefs.text = "# pack-refs with: peeled sorted \n${tagObject} refs/tags/annotated\n"
+
+        then: "the tag is peeled with the object database"
+        def peeled = indexOf()
+        Assertions.assertEquals(["annotated"], peeled.tagsPointingAt(resolve("HEAD")))
+        Assertions.assertTrue(peeled.isAnnotated("annotated"))
+
+        when: "the file claims to be fully peeled"
+        packedRefs.text =
+                "# pack-refs with: peeled fully-peeled sorted \n${tagObject} refs/tags/annotated\n"
+        packedRefs.setLastModified(packedRefs.lastModified() + 2_000)
+
+        then: "the missing peeled line is trusted to mean a lightweight tag"
+        def trusted = indexOf()
+        Assertions.assertEquals(["annotated"], trusted.tagsPointingAt(ObjectId.fromString(tagObject)))
+        Assertions.assertFalse(trusted.isAnnotated("annotated"))
+    }
+
+    @Test
+    void looseTagsOverridePackedOnes() {
+        given: "a packed tag"
+        initRepository()
+        def first = resolve("HEAD")
+        runGit("tag", "-a", "-m", "first", "moved")
+        runGit("tag", "packed")
+        runGit("pack-refs", "--all")
+
+        when: "the tag is moved to a new commit as a loose lightweight tag"
+        runGit("commit", "-q", "--allow-empty", "-m", "second")
+        runGit("tag", "-f", "moved")
+
+        then: "the loose tag wins"
+        def index = indexOf()
+        Assertions.assertEquals(["packed"], index.tagsPointingAt(first))
+        Assertions.assertEquals(["moved"], index.tagsPointingAt(resolve("HEAD")))
+        Assertions.assertFalse(index.isAnnotated("moved"))
+        Assertions.assertEquals(2, index.size())
+    }
+
+    @Test
+    void worktreesUseTheTagsOfTheCommonDirectory() {
+        given: "packed and loose tags in the main checkout"
+        initRepository()
+        runGit("tag", "-a", "-m", "v1", "v1")
+        runGit("tag", "v2")
+        runGit("pack-refs", "--all")
+        runGit("tag", "-a", "-m", "v3", "v3")
+
+        when: "a linked worktree is added"
+        def worktree = new File(temporaryFolder, "worktree")
+        runGit("worktree", "add", "-q", "--detach", worktree.absolutePath)
+
+        then: "its index contains all tags"
+        def index = indexOf(worktree)
+        Assertions.assertEquals(3, index.size())
+        Assertions.assertEquals(["v1", "v2", "v3"], index.tagsPointingAt(resolve("HEAD")))
+        Assertions.assertTrue(index.isAnnotated("v3"))
+        Assertions.assertSame(indexOf(), index)
+
+        when: "a tag is created in the main checkout"
+        runGit("tag", "v4")
+
+        then: "the worktree sees it as well"
+        Assertions.assertEquals(
+                ["v1", "v2", "v3", "v4"], indexOf(worktree).tagsPointingAt(resolve("HEAD")))
+    }
+}
@@ -0,0 +1,67 @@
+package io.github.git.commit.id.gradle.plugin
+
+import java.lang.management.ManagementFactory
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Tag
+import org.junit.jupiter.api.Test
+
+/**
+ * Measures the heap used to keep the generated properties of many projects in memory,
+ * once as {@link Properties} and once as {@link GitPropertiesSnapshot}.
+ * Run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class PropertiesFootprintBenchmarkTest {
+    private static final int PROJECTS = 500
+    private static final int SUBMODULES = 25
+
+    private static Properties generatedProperties(int project) {
+        def properties = new Properties()
+        // Every project reads the file on its own, so even equal values are distinct strings
+        def read = { String value -> new String(value.toCharArray()) }
+        properties.setProperty(read("git.commit.id.full"),
+                read("6fcf8294b2b5bb1a4c1e25e0ce3bd7d6a5b0c3e1"))
+        properties.setProperty(read("git.commit.id.abbrev"), read("6fcf829"))
+        properties.setProperty(read("git.commit.message.full"), read("Bump the version " * 20))
+        properties.setProperty(read("git.build.version"), read("1.0.${project}"))
+        SUBMODULES.times { index ->
+            def prefix = "git.submodules.libs/module${index}."
+            properties.setProperty(read(prefix + "commit.id.full"),
+                    read("d87d174${index}".padRight(40, "0")))
+            properties.setProperty(read(prefix + "branch"), read("main"))
+            properties.setProperty(read(prefix + "dirty"), read("false"))
+        }
+        return properties
+    }
+
+    private static long usedHeap() {
+        def memory = ManagementFactory.memoryMXBean
+        5.times {
+            System.gc()
+            Thread.sleep(50)
+        }
+        return memory.heapMemoryUsage.used
+    }
+
+    private static long measure(Closure<Object> retain) {
+        long before = usedHeap()
+        def retained = retain()
+        long after = usedHeap()
+        Assertions.assertNotNull(retained)
+        return after - before
+    }
+
+    @Test
+    void snapshotsNeedLessHeapThanProperties() {
+        when: "the properties of all projects are kept"
+        long properties = measure { (0..<PROJECTS).collect { generatedProperties(it) } }
+        long snapshots = measure {
+            (0..<PROJECTS).collect { GitPropertiesSnapshot.of(generatedProperties(it)) }
+        }
+        println("projects=${PROJECTS} heap(bytes): properties=${properties} snapshots=${snapshots}")
+
+        then: "the snapshots need less heap"
+        Assertions.assertTrue(snapshots < properties,
+                "properties=${properties} snapshots=${snapshots}")
+    }
+}
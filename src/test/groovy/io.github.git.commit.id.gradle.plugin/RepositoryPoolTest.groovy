@@ -0,0 +1,164 @@
+package io.github.git.commit.id.gradle.plugin
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.Repository
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class RepositoryPoolTest {
+    @TempDir
+    File temporaryFolder
+
+    private String runGit(File directory = temporaryFolder, String... args) {
+        def process = new ProcessBuilder([
+                "git", "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com", *args
+        ])
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+        return output.trim()
+    }
+
+    private void initRepository() {
+        runGit("init", "-q", "-b", "main")
+        runGit("commit", "-q", "--allow-empty", "-m", "first")
+    }
+
+    private File dotGitDirectory() {
+        return new File(temporaryFolder, ".git")
+    }
+
+    private static int useCountOf(Repository repository) {
+        def field = Repository.getDeclaredField("useCnt")
+        field.accessible = true
+        return (field.get(repository) as AtomicInteger).get()
+    }
+
+    @Test
+    void handlesAreSharedAndReferenceCounted() {
+        given: "a repository"
+        initRepository()
+
+        when: "it is acquired twice"
+        def first = RepositoryPool.acquire(dotGitDirectory())
+        def second = RepositoryPool.acquire(dotGitDirectory())
+
+        then: "both users share the handle that is also held by the pool"
+        Assertions.assertSame(first, second)
+        Assertions.assertEquals(3, useCountOf(first))
+
+        when: "both users release it"
+        first.close()
+        second.close()
+
+        then: "the pool keeps it open"
+        Assertions.assertEquals(1, useCountOf(first))
+        RepositoryPool.acquire(dotGitDirectory()).withCloseable {
+            Assertions.assertSame(first, it)
+            Assertions.assertEquals(ObjectId.fromString(runGit("rev-parse", "HEAD")),
+                    it.resolve("HEAD"))
+        }
+    }
+
+    @Test
+    void handlesAreReplacedWhenThePacksChange() {
+        given: "a repository that is in use"
+        initRepository()
+        def inUse = RepositoryPool.acquire(dotGitDirectory())
+
+        when: "its objects are packed"
+        runGit("commit", "-q", "--allow-empty", "-m", "second")
+        runGit("gc", "-q")
+        def replacement = RepositoryPool.acquire(dotGitDirectory())
+
+        then: "a new handle is opened"
+        Assertions.assertNotSame(inUse, replacement)
+        Assertions.assertEquals(ObjectId.fromString(runGit("rev-parse", "HEAD")),
+                replacement.resolve("HEAD"))
+
+        and: "the replaced one is only released by the pool, not closed for its user"
+        Assertions.assertEquals(1, useCountOf(inUse))
+        Assertions.assertNotNull(inUse.resolve("HEAD~1"))
+
+        when: "the packs stay the same"
+        replacement.close()
+
+        then: "the new handle is reused"
+        RepositoryPool.acquire(dotGitDirectory()).withCloseable {
+            Assertions.assertSame(replacement, it)
+        }
+        inUse.close()
+        Assertions.assertEquals(0, useCountOf(inUse))
+    }
+
+    @Test
+    void worktreesSeeThePacksOfTheCommonDirectory() {
+        given: "a linked worktree"
+        initRepository()
+        def worktree = new File(temporaryFolder, "worktree")
+        runGit("worktree", "add", "-q", "--detach", worktree.absolutePath)
+        def worktreeGitDir = new File(runGit(worktree, "rev-parse", "--absolute-git-dir"))
+        def first = RepositoryPool.acquire(worktreeGitDir)
+        first.close()
+
+        when: "the objects of the main checkout are packed"
+        runGit("gc", "-q")
+
+        then: "the handle of the worktree is replaced"
+        RepositoryPool.acquire(worktreeGitDir).withCloseable {
+            Assertions.assertNotSame(first, it)
+            Assertions.assertEquals(ObjectId.fromString(runGit(worktree, "rev-parse", "HEAD")),
+                    it.resolve("HEAD"))
+        }
+    }
+
+    @Test
+    void concurrentUsersAlwaysGetAnOpenHandle() {
+        given: "a repository"
+        initRepository()
+        def head = ObjectId.fromString(runGit("rev-parse", "HEAD"))
+        int threads = 8
+        def start = new CountDownLatch(1)
+        def executor = Executors.newFixedThreadPool(threads + 1)
+
+        when: "many threads acquire and close it while its packs change"
+        def users = (1..threads).collect {
+            executor.submit({
+                start.await()
+                200.times {
+                    RepositoryPool.acquire(dotGitDirectory()).withCloseable { repository ->
+                        Assertions.assertEquals(head, repository.resolve("HEAD"))
+                        Assertions.assertTrue(useCountOf(repository) > 0)
+                    }
+                }
+            } as Callable<Void>)
+        }
+        def repacker = executor.submit({
+            start.await()
+            5.times { index ->
+                def commit = runGit("commit-tree", "-m", "more ${index}", "HEAD^{tree}")
+                runGit("update-ref", "refs/heads/more-${index}", commit)
+                runGit("repack", "-q", "-a", "-d")
+            }
+        } as Callable<Void>)
+        start.countDown()
+
+        then: "none of them failed"
+        users.each { it.get(60, TimeUnit.SECONDS) }
+        repacker.get(60, TimeUnit.SECONDS)
+        executor.shutdown()
+
+        and: "only the pool holds the current handle"
+        def current = RepositoryPool.acquire(dotGitDirectory())
+        current.close()
+        Assertions.assertEquals(1, useCountOf(current))
+    }
+}
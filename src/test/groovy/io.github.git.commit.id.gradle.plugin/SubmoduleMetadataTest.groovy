@@ -0,0 +1,101 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class SubmoduleMetadataTest {
+    @TempDir
+    File temporaryFolder
+
+    private File superproject
+
+    private static String runGit(File directory, String... args) {
+        def process = new ProcessBuilder([
+                "git", "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com",
+                "-c", "protocol.file.allow=always", *args
+        ])
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+        return output.trim()
+    }
+
+    private File createRepository(String name) {
+        def directory = new File(temporaryFolder, name)
+        directory.mkdirs()
+        runGit(directory, "init", "-q", "-b", "main")
+        new File(directory, "README.md") << "${name}"
+        runGit(directory, "add", "README.md")
+        runGit(directory, "commit", "-q", "-m", "initial commit of ${name}")
+        return directory
+    }
+
+    @BeforeEach
+    void initRepositories() {
+        SubmoduleMetadata.clear()
+        superproject = createRepository("superproject")
+        ["core", "api", "ui"].each { name ->
+            def submodule = createRepository(name)
+            runGit(superproject, "submodule", "add", "-q", submodule.absolutePath, "libs/${name}")
+        }
+        runGit(superproject, "commit", "-q", "-m", "added submodules")
+    }
+
+    private List<SubmoduleMetadata.Submodule> collect() {
+        try (Git git = Git.open(superproject)) {
+            return SubmoduleMetadata.collect(git.repository, 7, AbbreviationMode.PACK_INDEX, 4)
+        }
+    }
+
+    @Test
+    void collectsAllSubmodules() {
+        when: "the submodules are collected"
+        def submodules = collect()
+
+        then: "every submodule reports its checked out commit"
+        Assertions.assertEquals(["libs/api", "libs/core", "libs/ui"], submodules*.path)
+        submodules.each { submodule ->
+            def directory = new File(superproject, submodule.path)
+            def head = runGit(directory, "rev-parse", "HEAD")
+            Assertions.assertEquals(head, submodule.commitId)
+            Assertions.assertEquals(head.substring(0, 7), submodule.abbreviatedCommitId)
+            Assertions.assertEquals("main", submodule.branch)
+            Assertions.assertFalse(submodule.dirty, submodule.path)
+        }
+
+        and: "the git directories are the absorbed ones of the superproject"
+        try (Git git = Git.open(superproject)) {
+            Assertions.assertEquals(
+                    ["api", "core", "ui"].collect {
+                        new File(superproject, ".git/modules/libs/${it}").canonicalFile
+                    },
+                    SubmoduleMetadata.gitDirectoriesOf(git.repository)*.canonicalFile)
+        }
+    }
+
+    @Test
+    void onlyChangedSubmodulesAreUpdated() {
+        given: "the submodules were collected before"
+        def before = collect()
+
+        when: "one submodule moves on and another one gets modified"
+        def core = new File(superproject, "libs/core")
+        runGit(core, "commit", "-q", "--allow-empty", "-m", "next commit")
+        new File(superproject, "libs/ui/README.md") << "modified"
+        def after = collect()
+
+        then: "the new commit and the modification are reported"
+        Assertions.assertEquals(runGit(core, "rev-parse", "HEAD"), after[1].commitId)
+        Assertions.assertNotEquals(before[1].commitId, after[1].commitId)
+        Assertions.assertTrue(after[2].dirty)
+
+        and: "the untouched submodule is unchanged"
+        Assertions.assertEquals(before[0].commitId, after[0].commitId)
+        Assertions.assertFalse(after[0].dirty)
+    }
+}
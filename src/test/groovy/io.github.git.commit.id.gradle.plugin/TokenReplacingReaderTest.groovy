@@ -0,0 +1,64 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class TokenReplacingReaderTest {
+    private static final TokenReplacingReader.Tokens TOKENS = new TokenReplacingReader.Tokens([
+            "git.branch"          : "main",
+            "git.commit.id.abbrev": "0123456",
+    ])
+
+    private static TokenReplacingReader readerOf(String text) {
+        return new TokenReplacingReader(new StringReader(text), TOKENS)
+    }
+
+    private static String readAll(TokenReplacingReader reader, int bufferSize) {
+        def result = new StringBuilder()
+        char[] buffer = new char[bufferSize]
+        int read
+        while ((read = reader.read(buffer, 0, bufferSize)) >= 0) {
+            result.append(buffer, 0, read)
+        }
+        return result.toString()
+    }
+
+    @Test
+    void knownTokensAreReplaced() {
+        given: "a text with known tokens"
+        def text = 'version ${git.commit.id.abbrev} on ${git.branch}, costs $5'
+
+        expect: "the tokens to be replaced with any buffer size"
+        [1, 3, 8192].each { bufferSize ->
+            def reader = readerOf(text)
+            Assertions.assertEquals("version 0123456 on main, costs \$5", readAll(reader, bufferSize))
+            Assertions.assertTrue(reader.hasTokens())
+        }
+    }
+
+    @Test
+    void unknownTokensAreKeptButReported() {
+        given: "a text with a token of a property that is not known (yet)"
+        def reader = readerOf('built from ${git.tags}')
+
+        when: "reading it"
+        def result = readAll(reader, 8192)
+
+        then: "the token is kept, but the text is known to contain tokens"
+        Assertions.assertEquals('built from ${git.tags}', result)
+        Assertions.assertTrue(reader.hasTokens())
+    }
+
+    @Test
+    void textWithoutTokensIsPassedThrough() {
+        given: "a text with dollars, but without tokens"
+        def reader = readerOf('costs $5 or $ {git.branch}')
+
+        when: "reading it"
+        def result = readAll(reader, 8192)
+
+        then: "nothing was replaced and no tokens were found"
+        Assertions.assertEquals('costs $5 or $ {git.branch}', result)
+        Assertions.assertFalse(reader.hasTokens())
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.eclipse.jgit.lib.ObjectId
+import org.eclipse.jgit.lib.Repository
+import org.eclipse.jgit.revwalk.RevWalk
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.CleanupMode
+import org.junit.jupiter.api.io.TempDir
+
+class TotalCommitCountCacheTest {
+    @TempDir(cleanup = CleanupMode.ALWAYS)
+    File temporaryFolder
+
+    private File repositoryDir
+    private File cacheFile
+
+    @BeforeEach
+    void initRepository() {
+        repositoryDir = new File(temporaryFolder, "repository")
+        cacheFile = new File(temporaryFolder, "cache/total-commit-count.cache")
+        Git.init().setDirectory(repositoryDir).call().close()
+    }
+
+    private ObjectId commit(String message = "dummy commit") {
+        try (final Git git = Git.open(repositoryDir)) {
+            return git.commit()
+                    .setAuthor("JUnitTest", "example@example.com")
+                    .setMessage(message)
+                    .setAllowEmpty(true)
+                    .call()
+                    .copy()
+        }
+    }
+
+    private long fullCount(Repository repository, ObjectId commitId) {
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.markStart(walk.parseCommit(commitId))
+            return walk.iterator().size()
+        }
+    }
+
+    @Test
+    void countsLinearHistoryIncrementally() {
+        given: "a linear history that was counted before"
+        5.times { commit() }
+        try (final Git git = Git.open(repositoryDir)) {
+            def repository = git.getRepository()
+            def cache = TotalCommitCountCache.load(cacheFile)
+            def first = repository.resolve("HEAD")
+            Assertions.assertEquals(5L, cache.count(repository, first))
+            cache.save()
+
+            when: "new commits are added"
+            3.times { commit() }
+            def head = repository.resolve("HEAD")
+
+            then: "the reloaded cache produces the same result as a full walk"
+            def reloaded = TotalCommitCountCache.load(cacheFile)
+            Assertions.assertEquals(1, reloaded.size())
+            Assertions.assertEquals(fullCount(repository, head), reloaded.count(repository, head))
+            Assertions.assertEquals(8L, reloaded.count(repository, head))
+        }
+    }
+
+    @Test
+    void countsMergedHistoryThatIsNotReachableFromTheCachedAncestor() {
+        given: "a history with a side branch"
+        commit()
+        try (final Git git = Git.open(repositoryDir)) {
+            def repository = git.getRepository()
+            def mainBranch = repository.getBranch()
+            git.branchCreate().setName("side").call()
+            def cache = TotalCommitCountCache.load(cacheFile)
+
+            and: "the main branch was counted before"
+            commit("main 1")
+            Assertions.assertEquals(2L, cache.count(repository, repository.resolve("HEAD")))
+
+            when: "the side branch with its own commits gets merged"
+            git.checkout().setName("side").call()
+            commit("side 1")
+            commit("side 2")
+            git.checkout().setName(mainBranch).call()
+            commit("main 2")
+            def merge = git.merge()
+                    .include(repository.resolve("side"))
+                    .setMessage("merge side")
+                    .call()
+                    .getNewHead()
+
+            then: "the commits of the side branch are part of the count"
+            Assertions.assertEquals(fullCount(repository, merge), cache.count(repository, merge))
+            Assertions.assertEquals(6L, cache.count(repository, merge))
+        }
+    }
+
+    @Test
+    void footprintIsBounded() {
+        given: "more commits than the cache may hold"
+        def commits = (1..(TotalCommitCountCache.MAX_ENTRIES + 20)).collect { commit() }
+
+        when: "every single commit was counted"
+        try (final Git git = Git.open(repositoryDir)) {
+            def cache = TotalCommitCountCache.load(cacheFile)
+            commits.eachWithIndex { ObjectId commitId, int index ->
+                Assertions.assertEquals(index + 1L, cache.count(git.getRepository(), commitId))
+            }
+            cache.save()
+
+            then: "neither memory nor disk hold more than the maximum entries"
+            Assertions.assertEquals(TotalCommitCountCache.MAX_ENTRIES, cache.size())
+            Assertions.assertEquals(TotalCommitCountCache.MAX_ENTRIES + 1, cacheFile.readLines().size())
+            Assertions.assertTrue(cacheFile.length() < TotalCommitCountCache.MAX_ENTRIES * 64L)
+
+            and: "the least recently used entries got evicted"
+            def reloaded = TotalCommitCountCache.load(cacheFile)
+            Assertions.assertEquals(TotalCommitCountCache.MAX_ENTRIES, reloaded.size())
+            Assertions.assertFalse(cacheFile.text.contains(commits.first().name()))
+            Assertions.assertTrue(cacheFile.text.contains(commits.last().name()))
+        }
+    }
+
+    @Test
+    void malformedCacheFileIsIgnored() {
+        given: "a corrupted cache file"
+        3.times { commit() }
+        cacheFile.parentFile.mkdirs()
+        cacheFile.text = "garbage\nnot-a-sha 12\n${ObjectId.zeroId().name()} not-a-number\n"
+
+        expect: "the count is still correct"
+        try (final Git git = Git.open(repositoryDir)) {
+            def repository = git.getRepository()
+            def cache = TotalCommitCountCache.load(cacheFile)
+            Assertions.assertEquals(0, cache.size())
+            Assertions.assertEquals(3L, cache.count(repository, repository.resolve("HEAD")))
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.github.git.commit.id.gradle.plugin
+
+import org.eclipse.jgit.api.Git
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+
+class WorkingTreeDirtyCheckTest {
+    private static final int NUMBER_OF_FILES = 200
+
+    @TempDir
+    File temporaryFolder
+
+    @BeforeEach
+    void initRepository() {
+        NUMBER_OF_FILES.times { index ->
+            def dir = new File(temporaryFolder, "dir${index % 10}")
+            dir.mkdirs()
+            new File(dir, "file${index}.txt") << "content ${index}"
+        }
+        new File(temporaryFolder, ".gitignore") << "ignored/\n"
+        try (Git git = Git.init().setDirectory(temporaryFolder).call()) {
+            git.add().addFilepattern(".").call()
+            git.commit()
+                    .setAuthor("JUnitTest", "example@example.com")
+                    .setCommitter("JUnitTest", "example@example.com")
+                    .setMessage("initial commit")
+                    .call()
+        }
+    }
+
+    private boolean isDirty(
+            int parallelism, PathPatternFilter filter = PathPatternFilter.ALL,
+            File directory = temporaryFolder) {
+        try (Git git = Git.open(directory)) {
+            return WorkingTreeDirtyCheck.isDirty(git.repository, parallelism, filter)
+        }
+    }
+
+    private static void runGit(File directory, String... args) {
+        def process = new ProcessBuilder([
+                "git", "-c", "user.name=JUnitTest", "-c", "user.email=example@example.com",
+                "-c", "protocol.file.allow=always", *args
+        ])
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start()
+        def output = process.inputStream.text
+        Assertions.assertEquals(0, process.waitFor(), output)
+    }
+
+    /**
+     * Moves the timestamps of all files, so the stat data of the index can't be trusted.
+     */
+    private void touchAllFiles() {
+        long timestamp = System.currentTimeMillis() + 60_000
+        temporaryFolder.eachFileRecurse { file ->
+            if (file.isFile() && !file.path.contains("${File.separator}.git${File.separator}")) {
+                file.setLastModified(timestamp)
+            }
+        }
+    }
+
+    @Test
+    void touchedFilesWithTheSameContentAreClean() {
+        when: "all files are touched"
+        touchAllFiles()
+
+        then: "the content is hashed and the working tree is clean"
+        Assertions.assertFalse(isDirty(1))
+        Assertions.assertFalse(isDirty(4))
+    }
+
+    @Test
+    void changedContentWithTheSameLengthIsDirty() {
+        given: "a file whose content changed without changing its length"
+        new File(temporaryFolder, "dir7/file177.txt").text = "CONTENT 177"
+
+        when: "all files are touched"
+        touchAllFiles()
+
+        then: "the change is found by hashing"
+        Assertions.assertTrue(isDirty(1))
+        Assertions.assertTrue(isDirty(4))
+    }
+
+    @Test
+    void untrackedAndIgnoredFilesAreClean() {
+        when: "an ignored file is added"
+        new File(temporaryFolder, "ignored").mkdirs()
+        new File(temporaryFolder, "ignored/file.txt") << "ignored"
+
+        then: "the working tree is clean"
+        Assertions.assertFalse(isDirty(4))
+
+        when: "untracked files are added"
+        new File(temporaryFolder, "dir3/untracked.txt") << "untracked"
+        new File(temporaryFolder, "untracked").mkdirs()
+        new File(temporaryFolder, "untracked/file.txt") << "untracked"
+
+        then: "the working tree is still clean, like the dirty check of the core"
+        Assertions.assertFalse(isDirty(4))
+
+        when: "the untracked file is staged"
+        try (Git git = Git.open(temporaryFolder)) {
+            git.add().addFilepattern("dir3/untracked.txt").call()
+        }
+
+        then: "the working tree is dirty"
+        Assertions.assertTrue(isDirty(4))
+    }
+
+    @Test
+    void stagedAndDeletedFilesAreDirty() {
+        when: "a file is deleted"
+        new File(temporaryFolder, "dir1/file1.txt").delete()
+
+        then: "the working tree is dirty"
+        Assertions.assertTrue(isDirty(4))
+
+        when: "the deletion is staged"
+        try (Git git = Git.open(temporaryFolder)) {
+            git.rm().addFilepattern("dir1/file1.txt").call()
+        }
+
+        then: "the working tree is still dirty"
+        Assertions.assertTrue(isDirty(4))
+    }
+
+    @Test
+    void filteredPathsAreNotConsidered() {
+        given: "untracked files in a generated directory and a changed file"
+        new File(temporaryFolder, "dir2/node_modules/module").mkdirs()
+        new File(temporaryFolder, "dir2/node_modules/module/index.js") << "generated"
+        new File(temporaryFolder, "dir5/file5.txt").text = "changed"
+
+        expect: "the working tree to be dirty without filters"
+        Assertions.assertTrue(isDirty(4))
+
+        and: "the excluded paths to be ignored"
+        Assertions.assertFalse(isDirty(4, PathPatternFilter.of(null, ["node_modules/", "dir5/*.txt"])))
+        Assertions.assertTrue(isDirty(4, PathPatternFilter.of(null, ["node_modules/"])))
+
+        and: "only the included paths to be considered"
+        Assertions.assertFalse(isDirty(4, PathPatternFilter.of(["dir1/**"], null)))
+        Assertions.assertTrue(isDirty(4, PathPatternFilter.of(["dir5"], null)))
+        Assertions.assertFalse(isDirty(4, PathPatternFilter.of(["dir2/**"], ["node_modules"])))
+    }
+
+    @Test
+    void uninitializedSubmodulesAreClean(@TempDir File otherFolder) {
+        given: "a superproject with a submodule"
+        def submodule = new File(otherFolder, "submodule")
+        submodule.mkdirs()
+        runGit(submodule, "init", "-q")
+        runGit(submodule, "commit", "-q", "--allow-empty", "-m", "submodule")
+        runGit(temporaryFolder, "submodule", "-q", "add", submodule.absolutePath, "sub")
+        runGit(temporaryFolder, "commit", "-q", "-m", "add submodule")
+
+        when: "it is cloned without its submodules"
+        def clone = new File(otherFolder, "clone")
+        runGit(otherFolder, "clone", "-q", temporaryFolder.absolutePath, clone.absolutePath)
+
+        then: "the empty submodule directory is clean, like for git status"
+        Assertions.assertTrue(new File(clone, "sub").isDirectory())
+        Assertions.assertFalse(isDirty(1, PathPatternFilter.ALL, clone))
+        Assertions.assertFalse(isDirty(4, PathPatternFilter.ALL, clone))
+
+        when: "the submodule directory is removed"
+        new File(clone, "sub").delete()
+
+        then: "the submodule is deleted and the working tree is dirty"
+        Assertions.assertTrue(isDirty(1, PathPatternFilter.ALL, clone))
+    }
+}